@@ -0,0 +1,131 @@
+package com.Acrobot.Breeze.Collection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A cache whose values expire a fixed time after they were loaded. Null values
+ * are cached too. Once the cache is full expired values are removed, and if
+ * that isn't enough everything is.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class ExpiringCache<K, V> {
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expires;
+
+        private Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return now - expires < 0;
+        }
+    }
+
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    /**
+     * @param ttlMillis For how many milliseconds a value is kept, 0 or less to not cache at all
+     * @param maxSize   How many values are kept at most
+     */
+    public ExpiringCache(long ttlMillis, int maxSize) {
+        this(ttlMillis, maxSize, System::nanoTime);
+    }
+
+    /**
+     * @param ttlMillis For how many milliseconds a value is kept, 0 or less to not cache at all
+     * @param maxSize   How many values are kept at most
+     * @param clock     The source of the current time in nanoseconds
+     */
+    public ExpiringCache(long ttlMillis, int maxSize, LongSupplier clock) {
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached value of a key or load it
+     *
+     * @param key    The key
+     * @param loader Loads the value if it isn't cached, may return null
+     * @return The value
+     */
+    public V get(K key, Supplier<? extends V> loader) {
+        return get(key, loader, value -> true);
+    }
+
+    /**
+     * Get the cached value of a key or load it, and only cache loaded values which match a filter
+     *
+     * @param key     The key
+     * @param loader  Loads the value if it isn't cached, may return null
+     * @param cacheIf Whether a loaded value should be cached
+     * @return The value
+     */
+    public V get(K key, Supplier<? extends V> loader, Predicate<? super V> cacheIf) {
+        if (ttlNanos <= 0) {
+            return loader.get();
+        }
+        long now = clock.getAsLong();
+        Entry<V> entry = map.get(key);
+        if (entry != null && entry.isValid(now)) {
+            return entry.value;
+        }
+        V value = loader.get();
+        if (!cacheIf.test(value)) {
+            map.remove(key);
+            return value;
+        }
+        if (map.size() >= maxSize) {
+            map.values().removeIf(e -> !e.isValid(now));
+            if (map.size() >= maxSize) {
+                map.clear();
+            }
+        }
+        map.put(key, new Entry<>(value, now + ttlNanos));
+        return value;
+    }
+
+    /**
+     * Forget the value of a key
+     *
+     * @param key The key
+     */
+    public void invalidate(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * Forget the values of all keys which match a filter
+     *
+     * @param filter The filter
+     */
+    public void invalidateIf(Predicate<? super K> filter) {
+        map.keySet().removeIf(filter);
+    }
+
+    /**
+     * Forget everything
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return How many values are cached, including expired ones
+     */
+    public int size() {
+        return map.size();
+    }
+}
@@ -0,0 +1,109 @@
+package com.Acrobot.Breeze.Collection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets.
+ * Bucket {@code i} holds durations below {@code 2^i} microseconds, so percentiles
+ * are reported as the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+    static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        buckets[bucketOf(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return How many durations were recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The mean duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getMeanNanos() {
+        long c = count.sum();
+        return c == 0 ? 0 : totalNanos.sum() / c;
+    }
+
+    /**
+     * Get an upper bound of a percentile of the recorded durations
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound of the percentile in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+        }
+        return getPercentileNanos(snapshot, percentile);
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds
+     * @return The bucket the duration falls into
+     */
+    static int bucketOf(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Get an upper bound of a percentile from the counts of each bucket
+     *
+     * @param snapshot   The count of each bucket
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound of the percentile in nanoseconds, or 0 if the buckets are empty
+     */
+    static long getPercentileNanos(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return (1L << i) * 1000;
+            }
+        }
+        return (1L << (BUCKETS - 1)) * 1000;
+    }
+
+    /**
+     * Forget all recorded durations
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+    }
+}
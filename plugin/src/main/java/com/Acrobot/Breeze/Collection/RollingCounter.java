@@ -0,0 +1,83 @@
+package com.Acrobot.Breeze.Collection;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counter over a sliding time window. The window is split into slices which are
+ * reused once they are older than the whole window, so the sum can be queried for
+ * the last few slices only. Adding does not lock unless a slice has to be reused.
+ */
+public class RollingCounter {
+    private final long sliceNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder[] slices;
+    private final AtomicLongArray sliceIds;
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * @param sliceNanos The length of one slice in nanoseconds
+     * @param sliceCount How many slices to keep, the longest window that can be queried is {@code sliceNanos * sliceCount}
+     * @param clock      The source of the current time in nanoseconds
+     */
+    public RollingCounter(long sliceNanos, int sliceCount, LongSupplier clock) {
+        this.sliceNanos = sliceNanos;
+        this.clock = clock;
+        this.slices = new LongAdder[sliceCount];
+        this.sliceIds = new AtomicLongArray(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new LongAdder();
+            sliceIds.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Add to the counter
+     *
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+        long id = Math.floorDiv(clock.getAsLong(), sliceNanos);
+        int index = (int) Math.floorMod(id, (long) slices.length);
+        if (sliceIds.get(index) != id) {
+            synchronized (this) {
+                if (sliceIds.get(index) != id) {
+                    slices[index].reset();
+                    sliceIds.set(index, id);
+                }
+            }
+        }
+        slices[index].add(amount);
+        total.add(amount);
+    }
+
+    /**
+     * @param windowNanos The length of the window in nanoseconds
+     * @return The sum of everything added in the window
+     */
+    public long getSum(long windowNanos) {
+        long current = Math.floorDiv(clock.getAsLong(), sliceNanos);
+        long oldest = current - Math.min(slices.length, Math.max(1, (windowNanos + sliceNanos - 1) / sliceNanos)) + 1;
+        long sum = 0;
+        for (int i = 0; i < slices.length; i++) {
+            long id = sliceIds.get(i);
+            if (id >= oldest && id <= current) {
+                sum += slices[i].sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return The sum of everything ever added, this never decreases
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+}
@@ -0,0 +1,92 @@
+package com.Acrobot.Breeze.Collection;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency histogram over a sliding time window. The window is split into slices
+ * which are reused once they are older than the whole window, so durations can be
+ * queried for the last few slices only. Uses the same buckets as {@link LatencyHistogram}.
+ */
+public class RollingLatencyHistogram {
+    private final long sliceNanos;
+    private final LongSupplier clock;
+
+    private final long[][] slices;
+    private final long[] sliceIds;
+
+    /**
+     * @param sliceNanos The length of one slice in nanoseconds
+     * @param sliceCount How many slices to keep, the longest window that can be queried is {@code sliceNanos * sliceCount}
+     * @param clock      The source of the current time in nanoseconds
+     */
+    public RollingLatencyHistogram(long sliceNanos, int sliceCount, LongSupplier clock) {
+        this.sliceNanos = sliceNanos;
+        this.clock = clock;
+        this.slices = new long[sliceCount][LatencyHistogram.BUCKETS];
+        this.sliceIds = new long[sliceCount];
+        Arrays.fill(sliceIds, Long.MIN_VALUE);
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        long id = Math.floorDiv(clock.getAsLong(), sliceNanos);
+        int index = (int) Math.floorMod(id, (long) slices.length);
+        if (sliceIds[index] != id) {
+            Arrays.fill(slices[index], 0);
+            sliceIds[index] = id;
+        }
+        slices[index][LatencyHistogram.bucketOf(nanos)]++;
+    }
+
+    /**
+     * @param windowNanos The length of the window in nanoseconds
+     * @return How many durations were recorded in the window
+     */
+    public synchronized long getCount(long windowNanos) {
+        long count = 0;
+        for (long bucket : snapshot(windowNanos)) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Get an upper bound of a percentile of the durations recorded in a window
+     *
+     * @param percentile  The percentile, between 0 and 100
+     * @param windowNanos The length of the window in nanoseconds
+     * @return The upper bound of the percentile in nanoseconds, or 0 if nothing was recorded
+     */
+    public synchronized long getPercentileNanos(double percentile, long windowNanos) {
+        return LatencyHistogram.getPercentileNanos(snapshot(windowNanos), percentile);
+    }
+
+    private long[] snapshot(long windowNanos) {
+        long current = Math.floorDiv(clock.getAsLong(), sliceNanos);
+        long oldest = current - Math.min(slices.length, Math.max(1, (windowNanos + sliceNanos - 1) / sliceNanos)) + 1;
+        long[] snapshot = new long[LatencyHistogram.BUCKETS];
+        for (int i = 0; i < slices.length; i++) {
+            if (sliceIds[i] >= oldest && sliceIds[i] <= current) {
+                for (int bucket = 0; bucket < snapshot.length; bucket++) {
+                    snapshot[bucket] += slices[i][bucket];
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forget all recorded durations
+     */
+    public synchronized void reset() {
+        for (long[] slice : slices) {
+            Arrays.fill(slice, 0);
+        }
+        Arrays.fill(sliceIds, Long.MIN_VALUE);
+    }
+}
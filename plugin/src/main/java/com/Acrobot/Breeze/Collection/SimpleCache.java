@@ -5,9 +5,12 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SimpleCache<K, V> {
     private final Map<K, V> map;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public SimpleCache(int cacheSize) {
         map = Collections.synchronizedMap(new LinkedHashMap<K, V>(cacheSize * 10/9, 0.7f, true) {
@@ -28,8 +31,10 @@ public class SimpleCache<K, V> {
 
     public V get(K key, Callable<? extends V> loader) throws ExecutionException {
         if (contains(key)) {
+            hits.increment();
             return map.get(key);
         }
+        misses.increment();
         try {
             V value = loader.call();
             if (value != null) {
@@ -44,4 +49,22 @@ public class SimpleCache<K, V> {
     public boolean contains(K key) {
         return map.containsKey(key);
     }
+
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return How often {@link #get(Object, Callable)} found the value in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How often {@link #get(Object, Callable)} had to load the value
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
 }
@@ -0,0 +1,92 @@
+package com.Acrobot.Breeze.Collection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket for each key. Every bucket holds up to {@code capacity} tokens and
+ * gets a new one every {@code nanosPerToken}. Instead of the amount of tokens only
+ * the time at which the bucket will be full again is stored, so taking a token is a
+ * single compare-and-set. Buckets which are full are forgotten from time to time.
+ *
+ * @param <K> The type of the keys
+ */
+public class TokenBuckets<K> {
+    /** How many tokens may be taken before full buckets are removed */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier clock;
+
+    private final Map<K, AtomicLong> fullAt = new ConcurrentHashMap<>();
+    private final AtomicInteger untilSweep = new AtomicInteger(SWEEP_INTERVAL);
+
+    /**
+     * @param capacity      How many tokens a bucket holds, at least 1
+     * @param nanosPerToken After how many nanoseconds a bucket gets a new token, 0 or less to never limit
+     * @param clock         The source of the current time in nanoseconds
+     */
+    public TokenBuckets(int capacity, long nanosPerToken, LongSupplier clock) {
+        this.nanosPerToken = nanosPerToken;
+        this.burstNanos = (Math.max(capacity, 1) - 1) * Math.max(nanosPerToken, 0);
+        this.clock = clock;
+    }
+
+    /**
+     * Take a token from the bucket of a key
+     *
+     * @param key The key
+     * @return false if the bucket is empty
+     */
+    public boolean tryAcquire(K key) {
+        if (nanosPerToken <= 0) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        if (untilSweep.decrementAndGet() <= 0) {
+            untilSweep.set(SWEEP_INTERVAL);
+            fullAt.values().removeIf(time -> time.get() <= now);
+        }
+
+        AtomicLong time = fullAt.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long current = time.get();
+            long start = Math.max(current, now);
+            if (start - now > burstNanos) {
+                return false;
+            }
+            if (time.compareAndSet(current, start + nanosPerToken)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Check whether the bucket of a key has a token, without taking it
+     *
+     * @param key The key
+     * @return false if the bucket is empty
+     */
+    public boolean canAcquire(K key) {
+        if (nanosPerToken <= 0) {
+            return true;
+        }
+        AtomicLong time = fullAt.get(key);
+        if (time == null) {
+            return true;
+        }
+        long now = clock.getAsLong();
+        return Math.max(time.get(), now) - now <= burstNanos;
+    }
+
+    /**
+     * @return How many buckets are kept, full ones might not have been removed yet
+     */
+    public int size() {
+        return fullAt.size();
+    }
+}
@@ -0,0 +1,131 @@
+package com.Acrobot.Breeze.Utils;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Changes to an inventory which are made on a copy of its contents. Nothing is written to
+ * the inventory until {@link #apply()} is called, which only sets the slots that changed.
+ */
+public class InventoryEdit {
+    private final Inventory inventory;
+    private final ItemStack[] original;
+    private final ItemStack[] contents;
+    private final boolean[] changed;
+    private final int storageSize;
+
+    /**
+     * @param inventory The inventory to change
+     */
+    public InventoryEdit(Inventory inventory) {
+        this.inventory = inventory;
+        this.original = inventory.getContents();
+        this.contents = original.clone();
+        this.changed = new boolean[contents.length];
+        this.storageSize = Math.min(InventoryUtil.effectiveSize(inventory), contents.length);
+    }
+
+    /**
+     * Add an item, filling up stacks of the same item before using empty slots.
+     * Armor and extra slots are never filled.
+     *
+     * @param item         The item to add, it isn't changed
+     * @param amount       How many of the item to add
+     * @param maxStackSize The maximum stack size, 0 or less to use the item's one
+     * @return How many items didn't fit
+     */
+    public int add(ItemStack item, int amount, int maxStackSize) {
+        int stackSize = maxStackSize > 0 ? maxStackSize : item.getMaxStackSize();
+        int left = amount;
+
+        for (int slot = 0; slot < storageSize && left > 0; slot++) {
+            ItemStack current = contents[slot];
+            if (!MaterialUtil.isEmpty(current) && current.getAmount() < stackSize && MaterialUtil.equals(current, item)) {
+                ItemStack stack = edit(slot);
+                int added = Math.min(stackSize - stack.getAmount(), left);
+                stack.setAmount(stack.getAmount() + added);
+                left -= added;
+            }
+        }
+
+        for (int slot = 0; slot < storageSize && left > 0; slot++) {
+            if (MaterialUtil.isEmpty(contents[slot])) {
+                ItemStack stack = item.clone();
+                stack.setAmount(Math.min(left, stackSize));
+                contents[slot] = stack;
+                changed[slot] = true;
+                left -= stack.getAmount();
+            }
+        }
+
+        return left;
+    }
+
+    /**
+     * Remove an item from any slot
+     *
+     * @param item   The item to remove
+     * @param amount How many of the item to remove
+     * @return How many items couldn't be removed
+     */
+    public int remove(ItemStack item, int amount) {
+        int left = amount;
+
+        for (int slot = 0; slot < contents.length && left > 0; slot++) {
+            ItemStack current = contents[slot];
+            if (!MaterialUtil.isEmpty(current) && MaterialUtil.equals(current, item)) {
+                int removed = Math.min(current.getAmount(), left);
+                if (removed == current.getAmount()) {
+                    contents[slot] = null;
+                    changed[slot] = true;
+                } else {
+                    ItemStack stack = edit(slot);
+                    stack.setAmount(stack.getAmount() - removed);
+                }
+                left -= removed;
+            }
+        }
+
+        return left;
+    }
+
+    /**
+     * Write the changed slots to the inventory
+     *
+     * @return How many slots were written
+     */
+    public int apply() {
+        int written = 0;
+        for (int slot = 0; slot < contents.length; slot++) {
+            if (!changed[slot]) {
+                continue;
+            }
+            changed[slot] = false;
+
+            if (isSame(original[slot], contents[slot])) {
+                contents[slot] = original[slot];
+                continue;
+            }
+
+            inventory.setItem(slot, contents[slot]);
+            original[slot] = contents[slot];
+            written++;
+        }
+        return written;
+    }
+
+    private ItemStack edit(int slot) {
+        if (!changed[slot]) {
+            contents[slot] = contents[slot].clone();
+            changed[slot] = true;
+        }
+        return contents[slot];
+    }
+
+    private static boolean isSame(ItemStack one, ItemStack two) {
+        if (MaterialUtil.isEmpty(one) || MaterialUtil.isEmpty(two)) {
+            return MaterialUtil.isEmpty(one) && MaterialUtil.isEmpty(two);
+        }
+        return one.getAmount() == two.getAmount() && MaterialUtil.equals(one, two);
+    }
+}
@@ -10,6 +10,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Containers.AdminInventory;
+import com.Acrobot.ChestShop.Jfr.InventoryScan;
 import com.google.common.collect.ImmutableMap;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
@@ -41,6 +43,17 @@ public class InventoryUtil {
      * @return amount of the item
      */
     public static int getAmount(ItemStack item, Inventory inventory) {
+        InventoryScan recording = InventoryScan.start();
+        int amount = countAmount(item, inventory);
+        recording.finish("count", item, inventory, amount);
+        return amount;
+    }
+
+    private static int countAmount(ItemStack item, Inventory inventory) {
+        if (inventory instanceof AdminInventory) {
+            return inventory.contains(item) ? Integer.MAX_VALUE : 0;
+        }
+
         if (!inventory.contains(item.getType())) {
             return 0;
         }
@@ -104,14 +117,27 @@ public class InventoryUtil {
      * @return Does the inventory contain stock of this type?
      */
     public static boolean hasItems(ItemStack[] items, Inventory inventory) {
+        if (inventory instanceof AdminInventory) {
+            for (ItemStack item : items) {
+                if (!inventory.contains(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        InventoryScan recording = InventoryScan.start();
+        boolean hasItems = true;
         Map<ItemStack, Integer> itemCounts = getItemCounts(items);
         for (Map.Entry<ItemStack, Integer> entry : itemCounts.entrySet()) {
-            if (getAmount(entry.getKey(), inventory) < entry.getValue()) {
-                return false;
+            if (countAmount(entry.getKey(), inventory) < entry.getValue()) {
+                hasItems = false;
+                break;
             }
         }
 
-        return true;
+        recording.finish("has items", items, inventory, hasItems);
+        return hasItems;
     }
 
     /**
@@ -122,14 +148,22 @@ public class InventoryUtil {
      * @return Do the items fit inside the inventory?
      */
     public static boolean fits(ItemStack[] items, Inventory inventory) {
+        if (inventory instanceof AdminInventory) {
+            return true;
+        }
+
+        InventoryScan recording = InventoryScan.start();
+        boolean fits = true;
         Map<ItemStack, Integer> itemCounts = InventoryUtil.getItemCounts(items);
         for (Map.Entry<ItemStack, Integer> entry : itemCounts.entrySet()) {
             if (!InventoryUtil.fits(entry.getKey(), entry.getValue(), inventory)) {
-                return false;
+                fits = false;
+                break;
             }
         }
 
-        return true;
+        recording.finish("fits", items, inventory, fits);
+        return fits;
     }
 
     /**
@@ -177,6 +211,78 @@ public class InventoryUtil {
         return left <= 0;
     }
 
+    /**
+     * Count how many of an item fit into an inventory
+     *
+     * @param item      Item to check
+     * @param inventory inventory
+     * @return How many of the item fit, {@link Integer#MAX_VALUE} if the inventory is unlimited
+     */
+    public static int getFreeSpace(ItemStack item, Inventory inventory) {
+        if (inventory.getSize() == Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+
+        long space = 0;
+        for (ItemStack iStack : getStorageContents(inventory)) {
+            if (MaterialUtil.isEmpty(iStack)) {
+                space += getMaxStackSize(item);
+            } else if (MaterialUtil.equals(iStack, item)) {
+                space += Math.max(getMaxStackSize(iStack) - iStack.getAmount(), 0);
+            }
+        }
+
+        return (int) Math.min(space, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Transfers items from one inventory to another one. The items are moved between copies
+     * of the inventories' contents and only the slots that changed are written back.
+     *
+     * @param items             Items to transfer
+     * @param sourceInventory   Inventory to transfer the items from
+     * @param targetInventory   Inventory to transfer the items to
+     * @param maxStackSize      Maximum items' stack size, 0 or less to use each item's one
+     * @return Number of items that couldn't be transferred
+     */
+    public static int transfer(ItemStack[] items, Inventory sourceInventory, Inventory targetInventory, int maxStackSize) {
+        InventoryEdit source = sourceInventory instanceof AdminInventory ? null : new InventoryEdit(sourceInventory);
+        InventoryEdit target = targetInventory instanceof AdminInventory ? null : new InventoryEdit(targetInventory);
+
+        int leftOver = 0;
+        for (ItemStack item : items) {
+            int amount = item.getAmount();
+            if (amount < 1) {
+                continue;
+            }
+
+            int moved;
+            if (source != null) {
+                moved = amount - source.remove(item, amount);
+            } else {
+                moved = sourceInventory.contains(item) ? amount : 0;
+            }
+
+            int notAdded = 0;
+            if (target != null && moved > 0) {
+                notAdded = target.add(item, moved, maxStackSize);
+                if (notAdded > 0 && source != null) {
+                    // Put back what didn't fit, the slots it came from are free now
+                    source.add(item, notAdded, maxStackSize);
+                }
+            }
+            leftOver += amount - moved + notAdded;
+        }
+
+        if (source != null) {
+            source.apply();
+        }
+        if (target != null) {
+            target.apply();
+        }
+        return leftOver;
+    }
+
     /**
      * Transfers an item from one inventory to another one
      *
@@ -203,6 +309,14 @@ public class InventoryUtil {
             return 0;
         }
 
+        if (sourceInventory instanceof AdminInventory) {
+            return sourceInventory.contains(item) ? add(item, targetInventory, maxStackSize) : item.getAmount();
+        }
+
+        if (targetInventory instanceof AdminInventory) {
+            return take(item, sourceInventory);
+        }
+
         int amount = item.getAmount();
         for (ItemStack currentItem : sourceInventory) {
             if (MaterialUtil.equals(currentItem, item)) {
@@ -233,6 +347,22 @@ public class InventoryUtil {
         return amount;
     }
 
+    // Take items out of an inventory through the inventory's iterator, like transferring them does
+    private static int take(ItemStack item, Inventory inventory) {
+        int amount = item.getAmount();
+        for (ItemStack currentItem : inventory) {
+            if (MaterialUtil.equals(currentItem, item)) {
+                int taken = Math.min(currentItem.getAmount(), amount);
+                currentItem.setAmount(currentItem.getAmount() - taken);
+                amount -= taken;
+                if (amount <= 0) {
+                    break;
+                }
+            }
+        }
+        return amount;
+    }
+
     /**
      * Adds an item to the inventory with given maximum stack size
      *
@@ -277,7 +407,7 @@ public class InventoryUtil {
     }
 
     // Don't use the armor slots or extra slots
-    private static int effectiveSize(Inventory inventory) {
+    static int effectiveSize(Inventory inventory) {
         return getStorageContents(inventory).length;
     }
 
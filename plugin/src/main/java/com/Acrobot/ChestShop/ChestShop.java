@@ -1,8 +1,10 @@
 package com.Acrobot.ChestShop;
 
 import com.Acrobot.Breeze.Configuration.Configuration;
+import com.Acrobot.ChestShop.Commands.Buy;
 import com.Acrobot.ChestShop.Commands.Give;
 import com.Acrobot.ChestShop.Commands.ItemInfo;
+import com.Acrobot.ChestShop.Commands.Profile;
 import com.Acrobot.ChestShop.Commands.ShopInfo;
 import com.Acrobot.ChestShop.Commands.Toggle;
 import com.Acrobot.ChestShop.Commands.Version;
@@ -17,6 +19,7 @@ import com.Acrobot.ChestShop.Listeners.Block.Break.ChestBreak;
 import com.Acrobot.ChestShop.Listeners.Block.Break.SignBreak;
 import com.Acrobot.ChestShop.Listeners.Block.SignCreate;
 import com.Acrobot.ChestShop.Listeners.Economy.EconomyAdapter;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyMonitor;
 import com.Acrobot.ChestShop.Listeners.Economy.ServerAccountCorrector;
 import com.Acrobot.ChestShop.Listeners.Economy.TaxModule;
 import com.Acrobot.ChestShop.Plugins.AuthMe;
@@ -50,7 +53,10 @@ import com.Acrobot.ChestShop.UUIDs.NameManager;
 import com.Acrobot.ChestShop.Updater.JenkinsBuildsNotifier;
 import com.Acrobot.ChestShop.Updater.Updater;
 
+import com.Acrobot.ChestShop.Utils.EventDispatcher;
+import com.Acrobot.ChestShop.Utils.TransactionIdGenerator;
 import com.Acrobot.ChestShop.Utils.VersionAdapter;
+import com.Acrobot.ChestShop.Utils.WorkScheduler;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
@@ -114,6 +120,7 @@ public class ChestShop extends JavaPlugin {
     private static Server server;
     private static PluginDescriptionFile description;
     private static final ExecutorService executorService = Executors.newCachedThreadPool();
+    private static final int MAX_DEFERRED_WORK = 10000;
 
     private static Metrics bStats;
 
@@ -121,6 +128,8 @@ public class ChestShop extends JavaPlugin {
 
     private static File dataFolder;
     private static ItemDatabase itemDatabase;
+    private static EventDispatcher eventDispatcher;
+    private static WorkScheduler workScheduler;
 
     private static Logger logger;
     private static Logger shopLogger;
@@ -156,11 +165,16 @@ public class ChestShop extends JavaPlugin {
         registerCommand("shopinfo", new ShopInfo(), Permission.SHOPINFO);
         registerCommand("csVersion", new Version(), Permission.ADMIN);
         registerCommand("csMetrics", new com.Acrobot.ChestShop.Commands.Metrics(), Permission.ADMIN);
+        registerCommand("csprofile", new Profile(), Permission.ADMIN);
         registerCommand("csGive", new Give(), Permission.ADMIN);
+        registerCommand("csbuy", new Buy(), Permission.BUY);
         registerCommand("cstoggle", new Toggle(), Permission.NOTIFY_TOGGLE);
         registerCommand("csaccess", new AccessToggle(), Permission.ACCESS_TOGGLE);
 
         loadConfig();
+        saveFlightRecorderSettings();
+
+        TransactionIdGenerator.init(new File(dataFolder, "transaction-ids.properties"));
 
         itemDatabase = new ItemDatabase();
 
@@ -169,6 +183,9 @@ public class ChestShop extends JavaPlugin {
             return;
         }
 
+        eventDispatcher = new EventDispatcher(this);
+        workScheduler = new WorkScheduler(System::nanoTime, MAX_DEFERRED_WORK, getBukkitLogger());
+        getServer().getScheduler().runTaskTimer(this, () -> workScheduler.drain((long) (Properties.DEFERRED_WORK_BUDGET * 1_000_000)), 1, 1);
         registerEvents();
         registerVersionedAdapters();
         MarketHook.init();
@@ -176,6 +193,7 @@ public class ChestShop extends JavaPlugin {
         registerPluginMessagingChannels();
 
         startStatistics();
+        MetricsModule.scheduleExport();
         startBuildNotificatier();
         startUpdater();
     }
@@ -189,6 +207,16 @@ public class ChestShop extends JavaPlugin {
         }
     }
 
+    /**
+     * Copy the Java Flight Recorder settings of ChestShop's events into the data folder
+     * as the recorder can't read them from the plugin jar
+     */
+    private void saveFlightRecorderSettings() {
+        if (!new File(dataFolder, "chestshop.jfc").exists()) {
+            saveResource("chestshop.jfc", false);
+        }
+    }
+
     public void loadConfig() {
         Configuration.pairFileAndClass(loadFile("config.yml"), Properties.class, getBukkitLogger());
 
@@ -328,6 +356,13 @@ public class ChestShop extends JavaPlugin {
             executorService.awaitTermination(15, TimeUnit.SECONDS);
         } catch (InterruptedException ignored) {}
 
+        if (workScheduler != null) {
+            workScheduler.drainAll();
+        }
+
+        MarketHook.shutdown();
+        Dependencies.shutdownEconomy();
+
         if (handler != null) {
             handler.close();
             getLogger().removeHandler(handler);
@@ -342,6 +377,8 @@ public class ChestShop extends JavaPlugin {
 
         registerEvent(new NameManager());
 
+        registerEvent(new EconomyMonitor());
+
         registerPreShopCreationEvents();
         registerPreTransactionEvents();
         registerPostShopCreationEvents();
@@ -358,7 +395,9 @@ public class ChestShop extends JavaPlugin {
 
         registerEvent(new BlockPlace());
         registerEvent(new PlayerConnect());
+        registerEvent(new PermissionSnapshotUpdater());
         registerEvent(new PlayerInteract());
+        registerEvent(new ShopInteractionLimiter());
         registerEvent(new PlayerInventory());
         registerEvent(new PlayerTeleport());
 
@@ -418,7 +457,6 @@ public class ChestShop extends JavaPlugin {
         registerEvent(new PermissionChecker());
         registerEvent(new PriceValidator());
         registerEvent(new ShopValidator());
-        registerEvent(new SpamClickProtector());
         registerEvent(new StockFittingChecker());
     }
 
@@ -672,6 +710,9 @@ public class ChestShop extends JavaPlugin {
     }
 
     public static <E extends Event> E callEvent(E event) {
+        if (Properties.FAST_EVENT_DISPATCH && eventDispatcher != null) {
+            return eventDispatcher.call(event);
+        }
         Bukkit.getPluginManager().callEvent(event);
         return event;
     }
@@ -706,4 +747,31 @@ public class ChestShop extends JavaPlugin {
     public static void runInAsyncThread(Runnable runnable) {
         executorService.submit(runnable);
     }
+
+    /**
+     * Run work which doesn't have to happen right away in one of the next ticks
+     *
+     * @param runnable The work
+     */
+    public static void defer(Runnable runnable) {
+        defer(null, runnable);
+    }
+
+    /**
+     * Run work which doesn't have to happen right away in one of the next ticks.
+     * If work with the same key is still waiting it gets replaced by this work.
+     *
+     * @param key      The key of the work, see {@link WorkScheduler#key(String, Object)}
+     * @param runnable The work
+     */
+    public static void defer(WorkScheduler.Key key, Runnable runnable) {
+        if (workScheduler == null || Properties.DEFERRED_WORK_BUDGET <= 0 || !Bukkit.isPrimaryThread()
+                || !workScheduler.submit(key, runnable)) {
+            runnable.run();
+        }
+    }
+
+    public static WorkScheduler getWorkScheduler() {
+        return workScheduler;
+    }
 }
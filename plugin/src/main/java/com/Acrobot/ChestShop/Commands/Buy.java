@@ -0,0 +1,41 @@
+package com.Acrobot.ChestShop.Commands;
+
+import com.Acrobot.Breeze.Utils.NumberUtil;
+import com.Acrobot.ChestShop.Configuration.Messages;
+import com.Acrobot.ChestShop.Listeners.Player.PlayerInteract;
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import org.bukkit.ChatColor;
+import org.bukkit.block.Block;
+import org.bukkit.block.Sign;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import static com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType.BUY;
+
+/**
+ * Buys the amount on the looked at shop sign multiple times in one transaction
+ */
+public class Buy implements CommandExecutor {
+    public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(ChatColor.RED + "Command must be run by a player!");
+            return true;
+        }
+
+        if (args.length != 1 || !NumberUtil.isInteger(args[0]) || Integer.parseInt(args[0]) < 1) {
+            return false;
+        }
+
+        Player player = (Player) sender;
+        Block target = player.getTargetBlockExact(5);
+        if (target == null || !ChestShopSign.isValid(target)) {
+            Messages.NO_SHOP_FOUND.sendWithPrefix(sender);
+            return true;
+        }
+
+        PlayerInteract.bulkTrade(player, (Sign) target.getState(), BUY, Integer.parseInt(args[0]));
+        return true;
+    }
+}
@@ -1,17 +1,39 @@
 package com.Acrobot.ChestShop.Commands;
 
+import com.Acrobot.Breeze.Collection.LatencyHistogram;
 import com.Acrobot.ChestShop.Configuration.Messages;
+import com.Acrobot.ChestShop.Economy.Economy;
+import com.Acrobot.ChestShop.Events.PreTransactionEvent;
+import com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyMonitor;
 import com.Acrobot.ChestShop.Listeners.Modules.MetricsModule;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * @author Acrobot
  */
 public class Metrics implements CommandExecutor {
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("economy")) {
+            sendEconomyMetrics(sender);
+            return true;
+        }
+
+        if (args.length > 0) {
+            Long window = MetricsModule.WINDOWS.get(args[0].toLowerCase(Locale.ROOT));
+            if (window == null) {
+                return false;
+            }
+            sendWindowMetrics(sender, args[0].toLowerCase(Locale.ROOT), window);
+            return true;
+        }
+
         Messages.METRICS.send(sender,
                 "accounts", String.valueOf(NameManager.getAccountCount()),
                 "totalTransactions", String.valueOf(MetricsModule.getTotalTransactions()),
@@ -23,4 +45,50 @@ public class Metrics implements CommandExecutor {
         );
         return true;
     }
+
+    private static void sendWindowMetrics(CommandSender sender, String name, long window) {
+        long buyTransactions = MetricsModule.getTransactions(TransactionType.BUY, window);
+        long sellTransactions = MetricsModule.getTransactions(TransactionType.SELL, window);
+        long boughtItems = MetricsModule.getItems(TransactionType.BUY, window);
+        long soldItems = MetricsModule.getItems(TransactionType.SELL, window);
+        Messages.METRICS_WINDOW.send(sender,
+                "window", name,
+                "totalTransactions", String.valueOf(buyTransactions + sellTransactions),
+                "buyTransactions", String.valueOf(buyTransactions),
+                "sellTransactions", String.valueOf(sellTransactions),
+                "totalItems", String.valueOf(boughtItems + soldItems),
+                "boughtItems", String.valueOf(boughtItems),
+                "soldItems", String.valueOf(soldItems),
+                "boughtMoney", Economy.formatBalance(MetricsModule.getMoney(TransactionType.BUY, window)),
+                "soldMoney", Economy.formatBalance(MetricsModule.getMoney(TransactionType.SELL, window))
+        );
+        for (Map.Entry<PreTransactionEvent.TransactionOutcome, Long> entry : MetricsModule.getOutcomes(window).entrySet()) {
+            Messages.METRICS_OUTCOME.send(sender,
+                    "outcome", entry.getKey().name(),
+                    "count", String.valueOf(entry.getValue())
+            );
+        }
+    }
+
+    private static void sendEconomyMetrics(CommandSender sender) {
+        Messages.METRICS_ECONOMY.send(sender,
+                "state", EconomyMonitor.getBreaker().getState().name(),
+                "trips", String.valueOf(EconomyMonitor.getBreaker().getTrips())
+        );
+        for (Map.Entry<String, EconomyMonitor.Operation> entry : EconomyMonitor.getOperations().entrySet()) {
+            LatencyHistogram latency = entry.getValue().getLatency();
+            Messages.METRICS_ECONOMY_OPERATION.send(sender,
+                    "operation", entry.getKey(),
+                    "calls", String.valueOf(latency.getCount()),
+                    "errors", String.valueOf(entry.getValue().getErrors()),
+                    "p50", toMillis(latency.getPercentileNanos(50)),
+                    "p95", toMillis(latency.getPercentileNanos(95)),
+                    "p99", toMillis(latency.getPercentileNanos(99))
+            );
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
 }
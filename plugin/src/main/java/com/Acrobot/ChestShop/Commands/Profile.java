@@ -0,0 +1,95 @@
+package com.Acrobot.ChestShop.Commands;
+
+import com.Acrobot.Breeze.Collection.RollingLatencyHistogram;
+import com.Acrobot.ChestShop.Configuration.Messages;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the transaction timings measured by the {@link TransactionProfiler}
+ */
+public class Profile implements CommandExecutor {
+    private static final int SLOWEST_SHOPS = 5;
+
+    public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
+        if (args.length > 1) {
+            return false;
+        }
+
+        String window = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "1m";
+        switch (window) {
+            case "on":
+                TransactionProfiler.setEnabled(true);
+                Messages.PROFILE_ENABLED.send(sender);
+                return true;
+            case "off":
+                TransactionProfiler.setEnabled(false);
+                Messages.PROFILE_DISABLED.send(sender);
+                return true;
+            case "reset":
+                TransactionProfiler.reset();
+                Messages.PROFILE_RESET.send(sender);
+                return true;
+            case "1m":
+                sendProfile(sender, window, TimeUnit.MINUTES.toNanos(1));
+                return true;
+            case "5m":
+                sendProfile(sender, window, TimeUnit.MINUTES.toNanos(5));
+                return true;
+            case "15m":
+                sendProfile(sender, window, TimeUnit.MINUTES.toNanos(15));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void sendProfile(CommandSender sender, String window, long windowNanos) {
+        if (TransactionProfiler.getHistogram(TransactionProfiler.Stage.TOTAL) == null) {
+            Messages.PROFILE_NOT_ENABLED.send(sender);
+            return;
+        }
+
+        Messages.PROFILE_HEADER.send(sender,
+                "window", window,
+                "state", TransactionProfiler.isEnabled() ? "on" : "off");
+        for (TransactionProfiler.Stage stage : TransactionProfiler.Stage.values()) {
+            RollingLatencyHistogram histogram = TransactionProfiler.getHistogram(stage);
+            long count = histogram.getCount(windowNanos);
+            if (count == 0) {
+                continue;
+            }
+            Messages.PROFILE_STAGE.send(sender,
+                    "stage", stage.getDisplayName(),
+                    "count", String.valueOf(count),
+                    "p50", toMillis(histogram.getPercentileNanos(50, windowNanos)),
+                    "p95", toMillis(histogram.getPercentileNanos(95, windowNanos)),
+                    "p99", toMillis(histogram.getPercentileNanos(99, windowNanos))
+            );
+        }
+
+        List<TransactionProfiler.ShopTimings> shops = TransactionProfiler.getSlowestShops(SLOWEST_SHOPS);
+        if (!shops.isEmpty()) {
+            Messages.PROFILE_SHOPS.send(sender);
+            for (TransactionProfiler.ShopTimings shop : shops) {
+                Messages.PROFILE_SHOP.send(sender,
+                        "location", shop.getLocation(),
+                        "owner", String.valueOf(shop.getOwner()),
+                        "mean", toMillis(shop.getMeanNanos()),
+                        "max", toMillis(shop.getMaxNanos()),
+                        "count", String.valueOf(shop.getCount())
+                );
+            }
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
+    }
+}
@@ -1,11 +1,18 @@
 package com.Acrobot.ChestShop.Commands;
 
 import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Messages;
 import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
+import com.Acrobot.ChestShop.Market.MarketHook;
+import com.Acrobot.ChestShop.Market.MarketResync;
+import com.Acrobot.ChestShop.Market.MarketSpool;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
 /**
  * @author Acrobot
@@ -19,7 +26,67 @@ public class Version implements CommandExecutor {
             return true;
         }
 
+        if (args.length > 1 && args[0].equalsIgnoreCase("market") && args[1].equalsIgnoreCase("spool")) {
+            sendSpoolStatus(sender);
+            return true;
+        }
+
+        if (args.length > 1 && args[0].equalsIgnoreCase("market") && args[1].equalsIgnoreCase("resync")) {
+            resync(sender, args);
+            return true;
+        }
+
         sender.sendMessage(ChatColor.GRAY + ChestShop.getPluginName() + "'s version is: " + ChatColor.GREEN + ChestShop.getVersion());
         return true;
     }
+
+    /**
+     * /cs market resync [world] [stored], /cs market resync status and /cs market resync cancel
+     */
+    private static void resync(CommandSender sender, String[] args) {
+        if (args.length > 2 && args[2].equalsIgnoreCase("status")) {
+            MarketResync.status(sender);
+            return;
+        }
+        if (args.length > 2 && args[2].equalsIgnoreCase("cancel")) {
+            MarketResync.cancel(sender);
+            return;
+        }
+
+        World world;
+        if (args.length > 2) {
+            world = Bukkit.getWorld(args[2]);
+            if (world == null) {
+                Messages.MARKET_RESYNC_UNKNOWN_WORLD.send(sender, "world", args[2]);
+                return;
+            }
+        } else {
+            world = sender instanceof Player ? ((Player) sender).getWorld() : Bukkit.getWorlds().get(0);
+        }
+        boolean stored = args.length > 3 && args[3].equalsIgnoreCase("stored");
+        MarketResync.start(sender, world, stored);
+    }
+
+    private static void sendSpoolStatus(CommandSender sender) {
+        MarketSpool spool = MarketHook.writer() != null ? MarketHook.writer().getSpool() : null;
+        if (spool == null) {
+            Messages.MARKET_SPOOL_DISABLED.send(sender);
+            return;
+        }
+
+        long lastReplay = spool.getLastReplay();
+        Messages.MARKET_SPOOL_STATUS.send(sender,
+                "state", spool.isRetrying() ? "retrying" : "replaying",
+                "pending", String.valueOf(spool.getPending()),
+                "segments", String.valueOf(spool.getSegments()),
+                "size", String.valueOf(spool.getSize() / 1024),
+                "appended", String.valueOf(spool.getAppended()),
+                "replayed", String.valueOf(spool.getReplayed()),
+                "deadLettered", String.valueOf(spool.getDeadLettered()),
+                "retries", String.valueOf(spool.getRetries()),
+                "corrupted", String.valueOf(spool.getCorrupted()),
+                "lastReplay", lastReplay > 0 ? ((System.currentTimeMillis() - lastReplay) / 1000) + "s ago" : "never",
+                "lastError", spool.getLastError() != null ? spool.getLastError() : "none"
+        );
+    }
 }
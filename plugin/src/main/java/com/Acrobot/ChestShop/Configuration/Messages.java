@@ -47,11 +47,35 @@ public class Messages {
     public static Message iteminfo_lore;
 
     public static Message METRICS;
+    public static Message METRICS_WINDOW;
+    public static Message METRICS_OUTCOME;
+    public static Message METRICS_ECONOMY;
+    public static Message METRICS_ECONOMY_OPERATION;
+    public static Message PROFILE_ENABLED;
+    public static Message PROFILE_DISABLED;
+    public static Message PROFILE_RESET;
+    public static Message PROFILE_NOT_ENABLED;
+    public static Message PROFILE_HEADER;
+    public static Message PROFILE_STAGE;
+    public static Message PROFILE_SHOPS;
+    public static Message PROFILE_SHOP;
+    public static Message MARKET_SPOOL_STATUS;
+    public static Message MARKET_SPOOL_DISABLED;
+    public static Message MARKET_RESYNC_STARTED;
+    public static Message MARKET_RESYNC_RESUMED;
+    public static Message MARKET_RESYNC_PROGRESS;
+    public static Message MARKET_RESYNC_FINISHED;
+    public static Message MARKET_RESYNC_CANCELLED;
+    public static Message MARKET_RESYNC_RUNNING;
+    public static Message MARKET_RESYNC_NOT_RUNNING;
+    public static Message MARKET_RESYNC_UNAVAILABLE;
+    public static Message MARKET_RESYNC_UNKNOWN_WORLD;
 
     public static Message ACCESS_DENIED;
     public static Message TRADE_DENIED;
     public static Message TRADE_DENIED_ACCESS_PERMS;
     public static Message TRADE_DENIED_CREATIVE_MODE;
+    public static Message TRADE_RATE_LIMITED;
 
     public static Message NOT_ENOUGH_MONEY;
     public static Message NOT_ENOUGH_MONEY_SHOP;
@@ -59,6 +83,7 @@ public class Messages {
     public static Message CLIENT_DEPOSIT_FAILED;
     public static Message SHOP_DEPOSIT_FAILED;
     public static Message NO_ECONOMY_ACCOUNT;
+    public static Message ECONOMY_UNAVAILABLE;
 
     public static Message NO_BUYING_HERE;
     public static Message NO_SELLING_HERE;
@@ -112,10 +112,30 @@ public class Properties {
     @ConfigurationComment("Do you want to include some values of this config in the metrics? (This will not submit any sensitive data and helps in the development process)")
     public static boolean INCLUDE_SETTINGS_IN_METRICS = true;
 
+    @ConfigurationComment("How often (in seconds) should the shop metrics be written to a file in the Prometheus text format? (0 = never)\n" +
+            "Point the textfile collector of the node exporter or a similar tool at the file to scrape it.")
+    public static int METRICS_EXPORT_INTERVAL = 0;
+
+    @ConfigurationComment("The file in the ChestShop folder the metrics should be written to")
+    public static String METRICS_EXPORT_FILE = "chestshop.prom";
+
     @PrecededBySpace
     @ConfigurationComment("How large should the internal caches be?")
     public static int CACHE_SIZE = 1000;
 
+    @ConfigurationComment("How many seconds should granted business account access be cached? Denied access is checked again every time, removed staff keep access until this time has passed, they rejoined or after a reload. (0 = don't cache)")
+    public static int BUSINESS_ACCESS_CACHE_TIME = 10;
+
+    @ConfigurationComment("How many seconds should the admin, admin shop, discount and other name permissions of a player be cached? (0 = don't cache)")
+    public static int PERMISSION_CACHE_TIME = 10;
+
+    @ConfigurationComment("Should events which only ChestShop listens to skip the server's event system and be passed to ChestShop's listeners directly?")
+    public static boolean FAST_EVENT_DISPATCH = true;
+
+    @ConfigurationComment("How many milliseconds per tick may be spent on work after a transaction which can wait? (stock counters, logging, messages, market records, removing empty shops)\n" +
+            "Work that doesn't fit is done in the next ticks. (0 = do all of it right away)")
+    public static double DEFERRED_WORK_BUDGET = 2;
+
     @PrecededBySpace
     @ConfigurationComment("The default language when the client's language can't be found.")
     public static String DEFAULT_LANGUAGE = "en";
@@ -135,9 +155,18 @@ public class Properties {
     );
 
     @PrecededBySpace
-    @ConfigurationComment("(In 1/1000th of a second) How often can a player use the shop sign?")
+    @ConfigurationComment("(In 1/1000th of a second) How often can a player use the shop sign? (0 = no limit)")
     public static int SHOP_INTERACTION_INTERVAL = 250;
 
+    @ConfigurationComment("How many shop signs can a player use in quick succession before the interval above applies?")
+    public static int SHOP_INTERACTION_BURST = 3;
+
+    @ConfigurationComment("(In 1/1000th of a second) How often can a single shop be used by all players together? (0 = no limit)")
+    public static int SHOP_USE_INTERVAL = 50;
+
+    @ConfigurationComment("How often can a single shop be used in quick succession before the interval above applies?")
+    public static int SHOP_USE_BURST = 10;
+
     @ConfigurationComment("Do you want to block people in creative mode from using shops?")
     public static boolean IGNORE_CREATIVE_MODE = true;
 
@@ -195,6 +224,45 @@ public class Properties {
     @ConfigurationComment("Percent of the price that should go to the server's account when buying from an Admin Shop.")
     public static double SERVER_TAX_AMOUNT = 0;
 
+    @ConfigurationComment("Only with Treasury: collect the money a shop owner earns for this many seconds and deposit it as one transfer.\n" +
+            "Pending deposits are kept in deposits.ledger so they survive crashes and already count towards the owner's balance. 0 deposits every sale right away.")
+    public static int DEPOSIT_AGGREGATION_WINDOW = 0;
+
+    @PrecededBySpace
+    @ConfigurationComment("Refuse new transactions for a while when the economy plugin's p99 response time over the last calls exceeds this many milliseconds. (0 = never)")
+    public static int ECONOMY_BREAKER_LATENCY = 1000;
+
+    @ConfigurationComment("Refuse new transactions for a while when this percentage of the last calls to the economy plugin failed. (0 = never)")
+    public static double ECONOMY_BREAKER_ERROR_RATE = 50;
+
+    @ConfigurationComment("How many of the last calls to the economy plugin should be looked at?")
+    public static int ECONOMY_BREAKER_WINDOW = 100;
+
+    @ConfigurationComment("For how many seconds should transactions be refused before trying the economy plugin again?")
+    public static int ECONOMY_BREAKER_COOLDOWN = 30;
+
+    @PrecededBySpace
+    @ConfigurationComment("How many sales may wait to be written to the Treasury market database before new ones are dropped?")
+    public static int MARKET_QUEUE_SIZE = 10000;
+
+    @ConfigurationComment("How often (in milliseconds) should queued sales and shop updates be written to the Treasury market database?")
+    public static long MARKET_FLUSH_INTERVAL = 1000;
+
+    @ConfigurationComment("How many seconds should the account type and firm of a shop owner be cached for the market database? Changes to them are only seen once this time has passed or after a reload. (0 = don't cache)")
+    public static int MARKET_OWNER_CACHE_TIME = 300;
+
+    @ConfigurationComment("Should market records be written to a local spool first, so they are kept while the Treasury market database is unreachable?")
+    public static boolean MARKET_SPOOL = true;
+
+    @ConfigurationComment("Size (in kilobytes) after which the market spool starts a new segment file")
+    public static int MARKET_SPOOL_SEGMENT_SIZE = 4096;
+
+    @ConfigurationComment("How often (in milliseconds) should the market spool be synced to disk?")
+    public static long MARKET_SPOOL_FSYNC_INTERVAL = 200;
+
+    @ConfigurationComment("How many chunks per tick should /cs market resync scan?")
+    public static int MARKET_RESYNC_CHUNKS_PER_TICK = 2;
+
     @ConfigurationComment("Amount of money player must pay to create a shop")
     public static BigDecimal SHOP_CREATION_PRICE = BigDecimal.valueOf(0);
 
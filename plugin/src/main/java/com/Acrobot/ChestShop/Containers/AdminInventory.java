@@ -1,7 +1,7 @@
 package com.Acrobot.ChestShop.Containers;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -16,15 +16,30 @@ import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
 /**
+ * Inventory of admin shops without a container. It has an unlimited amount of the shop's
+ * item and unlimited space, so it doesn't store any contents.
+ *
  * @author Acrobot
  */
 public class AdminInventory implements Inventory {
+    private static final ItemStack[] EMPTY_CONTENTS = new ItemStack[0];
 
-    private ItemStack[] content;
+    private final ItemStack item;
     private int maxStackSize = 64;
 
+    /**
+     * @param item The item of the shop, it is only compared with and never changed
+     */
+    public AdminInventory(ItemStack item) {
+        this.item = item;
+    }
+
+    /**
+     * @deprecated Admin inventories don't store contents anymore, use {@link #AdminInventory(ItemStack)}
+     */
+    @Deprecated
     public AdminInventory(ItemStack[] content) {
-        this.content = content;
+        this(content.length > 0 ? content[0] : null);
     }
 
     @Override
@@ -48,9 +63,6 @@ public class AdminInventory implements Inventory {
 
     @Override
     public ItemStack getItem(int i) {
-        if (content.length > i) {
-            return content[i];
-        }
         return null;
     }
 
@@ -59,10 +71,6 @@ public class AdminInventory implements Inventory {
         if (i > getSize()) {
             throw new IllegalArgumentException("Slot is outside inventory. Max size is " + getSize());
         }
-        if (i >= content.length) {
-            content = Arrays.copyOfRange(content, 0, i);
-        }
-        content[i] = itemStack;
     }
 
     @Override
@@ -81,59 +89,45 @@ public class AdminInventory implements Inventory {
 
     @Override
     public ItemStack[] getContents() {
-        return content;
+        return EMPTY_CONTENTS;
     }
 
     @Override
     public void setContents(ItemStack[] itemStacks) {
-        content = itemStacks;
     }
 
     @Override
     public ItemStack[] getStorageContents() {
-        return content;
+        return EMPTY_CONTENTS;
     }
 
     @Override
     public void setStorageContents(ItemStack[] itemStacks) throws IllegalArgumentException {
-        content = itemStacks;
     }
 
     @Override
     public boolean contains(Material material) {
-        return first(material) > -1;
+        return item != null && item.getType() == material;
     }
 
     @Override
     public boolean contains(ItemStack itemStack) {
-        return first(itemStack) > -1;
+        return item != null && MaterialUtil.equals(item, itemStack);
     }
 
     @Override
     public boolean contains(Material material, int i) {
-        int amount = 0;
-        for (ItemStack item : content) {
-            if (item != null && item.getType() == material) {
-                amount += item.getAmount();
-            }
-        }
-        return amount >= i;
+        return contains(material);
     }
 
     @Override
     public boolean contains(ItemStack itemStack, int i) {
-        int amount = 0;
-        for (ItemStack item : content) {
-            if (MaterialUtil.equals(item, itemStack)) {
-                amount += itemStack.getAmount();
-            }
-        }
-        return amount >= i;
+        return contains(itemStack);
     }
 
     @Override
     public boolean containsAtLeast(ItemStack itemStack, int i) {
-        return contains(itemStack, i);
+        return contains(itemStack);
     }
 
     @Override
@@ -168,22 +162,12 @@ public class AdminInventory implements Inventory {
 
     @Override
     public int first(Material material) {
-        for (int i = 0; i < content.length; i++) {
-            if (content[i] != null && content[i].getType() == material) {
-                return i;
-            }
-        }
-        return -1;
+        return contains(material) ? 0 : -1;
     }
 
     @Override
     public int first(ItemStack itemStack) {
-        for (int i = 0; i < content.length; i++) {
-            if (MaterialUtil.equals(content[i], itemStack)) {
-                return i;
-            }
-        }
-        return -1;
+        return contains(itemStack) ? 0 : -1;
     }
 
     @Override
@@ -240,12 +224,12 @@ public class AdminInventory implements Inventory {
 
     @Override
     public ListIterator<ItemStack> iterator() {
-        return Arrays.asList(content).listIterator();
+        return Collections.emptyListIterator();
     }
 
     @Override
     public ListIterator<ItemStack> iterator(int i) {
-        return Arrays.asList(content).listIterator(i);
+        return Collections.<ItemStack>emptyList().listIterator(i);
     }
 
     @Override
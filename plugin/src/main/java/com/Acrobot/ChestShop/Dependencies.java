@@ -3,6 +3,7 @@ package com.Acrobot.ChestShop;
 import com.Acrobot.Breeze.Utils.MaterialUtil;
 import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Listeners.Economy.EconomyAdapter;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyMonitor;
 import com.Acrobot.ChestShop.Listeners.Economy.Plugins.ReserveListener;
 import com.Acrobot.ChestShop.Listeners.Economy.Plugins.TreasuryListener;
 import com.Acrobot.ChestShop.Listeners.Economy.Plugins.VaultListener;
@@ -32,6 +33,8 @@ public class Dependencies implements Listener {
 
     private static final Map<String, String> versions = new HashMap<>();
 
+    private static EconomyAdapter economyAdapter;
+
     private static boolean isLoaded(String plugin) {
         return versions.containsKey(plugin.toLowerCase(Locale.ROOT));
     }
@@ -96,6 +99,16 @@ public class Dependencies implements Listener {
         return false;
     }
 
+    /**
+     * Shut down the loaded economy adapter, if there is one
+     */
+    public static void shutdownEconomy() {
+        if (economyAdapter != null) {
+            economyAdapter.shutdown();
+            economyAdapter = null;
+        }
+    }
+
     private static boolean loadEconomy() {
         String plugin = "none";
 
@@ -124,7 +137,8 @@ public class Dependencies implements Listener {
         ChestShop.getMetrics().addCustomChart(ChestShop.createStaticDrilldownStat("economyAdapter", plugin, Bukkit.getPluginManager().getPlugin(plugin).getDescription().getVersion()));
         ChestShop.getMetrics().addCustomChart(ChestShop.createStaticDrilldownStat("economyPlugin", economy::getProviderInfo));
 
-        ChestShop.registerListener(economy);
+        EconomyMonitor.register(economy);
+        economyAdapter = economy;
         ChestShop.getBukkitLogger().info(plugin + " loaded!");
         return true;
     }
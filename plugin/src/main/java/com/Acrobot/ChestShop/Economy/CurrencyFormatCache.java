@@ -0,0 +1,50 @@
+package com.Acrobot.ChestShop.Economy;
+
+import com.Acrobot.Breeze.Collection.SimpleCache;
+
+import java.math.BigDecimal;
+import java.util.function.Function;
+
+/**
+ * Remembers how amounts of currency were formatted so that repeated messages
+ * with the same price don't have to ask the economy plugin again.
+ */
+public class CurrencyFormatCache {
+    private final SimpleCache<BigDecimal, String> cache;
+    private final Function<BigDecimal, String> formatter;
+
+    /**
+     * @param size      How many formatted amounts to keep
+     * @param formatter Formats an amount, may return an empty string if it couldn't be formatted
+     */
+    public CurrencyFormatCache(int size, Function<BigDecimal, String> formatter) {
+        this.cache = new SimpleCache<>(size);
+        this.formatter = formatter;
+    }
+
+    /**
+     * Get the formatted amount. Amounts are cached by value and scale, as economy plugins
+     * may format e.g. 5 and 5.00 differently.
+     * Empty results are not cached as they mean that no economy plugin handled the formatting.
+     *
+     * @param amount The amount to format
+     * @return The formatted amount
+     */
+    public String format(BigDecimal amount) {
+        String formatted = cache.get(amount);
+        if (formatted == null) {
+            formatted = formatter.apply(amount);
+            if (formatted != null && !formatted.isEmpty()) {
+                cache.put(amount, formatted);
+            }
+        }
+        return formatted;
+    }
+
+    /**
+     * Forget all formatted amounts, e.g. when the configuration changed
+     */
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -66,13 +66,26 @@ public class Economy {
         return event.hasEnough();
     }
 
+    private static CurrencyFormatCache formatCache = new CurrencyFormatCache(Properties.CACHE_SIZE, Economy::callFormatEvent);
+
     public static String formatBalance(BigDecimal amount) {
+        return formatCache.format(amount);
+    }
+
+    private static String callFormatEvent(BigDecimal amount) {
         CurrencyFormatEvent event = new CurrencyFormatEvent(amount);
         ChestShop.callEvent(event);
 
         return event.getFormattedAmount();
     }
 
+    /**
+     * Forget all cached currency formats, e.g. after the config or the economy plugin changed
+     */
+    public static void resetFormatCache() {
+        formatCache = new CurrencyFormatCache(Properties.CACHE_SIZE, Economy::callFormatEvent);
+    }
+
     /**
      * @deprecated Use {@link #formatBalance(BigDecimal)}
      */
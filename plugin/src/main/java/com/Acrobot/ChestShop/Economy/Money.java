@@ -0,0 +1,203 @@
+package com.Acrobot.ChestShop.Economy;
+
+import com.Acrobot.ChestShop.Configuration.Properties;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money stored as a count of minor units, e.g. cents at a scale of 2.
+ * Splitting a price by items is done on the units directly, so it is exact and only
+ * rounds once at the end instead of dividing {@link BigDecimal}s with a math context.
+ *
+ * <p>Amounts are converted from and to {@link BigDecimal} where they enter or leave
+ * ChestShop's events.</p>
+ */
+public final class Money implements Comparable<Money> {
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long units;
+    private final int scale;
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    /**
+     * @param units The amount of minor units
+     * @param scale How many decimal places one unit is, between 0 and 18
+     * @return The money
+     */
+    public static Money ofUnits(long units, int scale) {
+        return new Money(units, checkScale(scale));
+    }
+
+    private static int checkScale(int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Scale " + scale + " is not between 0 and " + (POWERS_OF_TEN.length - 1));
+        }
+        return scale;
+    }
+
+    /**
+     * Convert an amount without rounding it
+     *
+     * @param amount The amount
+     * @return The money at the price precision, or at the amount's scale if that has more decimal places
+     * @throws ArithmeticException if the amount doesn't fit into a long at that scale
+     */
+    public static Money of(BigDecimal amount) {
+        return of(amount, Properties.PRICE_PRECISION);
+    }
+
+    /**
+     * Convert an amount without rounding it
+     *
+     * @param amount   The amount
+     * @param minScale The least amount of decimal places to use
+     * @return The money at {@code minScale}, or at the amount's scale if that has more decimal places
+     * @throws ArithmeticException if the amount doesn't fit into a long at that scale
+     */
+    public static Money of(BigDecimal amount, int minScale) {
+        int scale = Math.max(minScale, amount.stripTrailingZeros().scale());
+        if (scale >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException(amount + " has too many decimal places");
+        }
+        return ofUnits(amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(), scale);
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isZero() {
+        return units == 0;
+    }
+
+    /**
+     * @return The amount as a BigDecimal with this money's scale
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    /**
+     * Get the price of a part of the items this money pays for, rounded half up
+     * to the price precision
+     *
+     * @param part  How many items to get the price of
+     * @param whole How many items this money pays for
+     * @return The price of the part
+     */
+    public Money share(long part, long whole) {
+        return share(part, whole, Properties.PRICE_PRECISION);
+    }
+
+    /**
+     * Get the price of a part of the items this money pays for, rounded half up
+     *
+     * @param part        How many items to get the price of
+     * @param whole       How many items this money pays for, more than 0
+     * @param resultScale The scale to round the price to
+     * @return The price of the part
+     * @throws ArithmeticException if the price doesn't fit into a long at the result scale
+     */
+    public Money share(long part, long whole, int resultScale) {
+        if (whole <= 0) {
+            throw new IllegalArgumentException("Can't share among " + whole + " items");
+        }
+        checkScale(resultScale);
+        try {
+            long numerator = Math.multiplyExact(units, part);
+            long denominator = whole;
+            if (resultScale > scale) {
+                numerator = Math.multiplyExact(numerator, POWERS_OF_TEN[resultScale - scale]);
+            } else {
+                denominator = Math.multiplyExact(denominator, POWERS_OF_TEN[scale - resultScale]);
+            }
+            return new Money(divideHalfUp(numerator, denominator), resultScale);
+        } catch (ArithmeticException e) {
+            BigDecimal exact = toBigDecimal().multiply(BigDecimal.valueOf(part));
+            return of(exact.divide(BigDecimal.valueOf(whole), resultScale, RoundingMode.HALF_UP), resultScale);
+        }
+    }
+
+    /**
+     * Get how many items this money is enough for
+     *
+     * @param price The price of the items
+     * @param items How many items the price pays for
+     * @return How many items can be paid, {@link Long#MAX_VALUE} if the items are free
+     */
+    public long countAffordable(Money price, long items) {
+        if (price.units <= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (units <= 0) {
+            return 0;
+        }
+        try {
+            long numerator = Math.multiplyExact(units, items);
+            long denominator = price.units;
+            if (price.scale > scale) {
+                numerator = Math.multiplyExact(numerator, POWERS_OF_TEN[price.scale - scale]);
+            } else {
+                denominator = Math.multiplyExact(denominator, POWERS_OF_TEN[scale - price.scale]);
+            }
+            return numerator / denominator;
+        } catch (ArithmeticException e) {
+            BigInteger count = toBigDecimal().multiply(BigDecimal.valueOf(items))
+                    .divide(price.toBigDecimal(), 0, RoundingMode.FLOOR).toBigInteger();
+            return count.bitLength() < Long.SIZE ? count.longValue() : Long.MAX_VALUE;
+        }
+    }
+
+    private static long divideHalfUp(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long remainder = Math.abs(numerator % denominator);
+        if (remainder >= denominator - remainder) {
+            quotient += Long.signum(numerator);
+        }
+        return quotient;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) {
+            return Long.compare(units, other.units);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && compareTo((Money) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
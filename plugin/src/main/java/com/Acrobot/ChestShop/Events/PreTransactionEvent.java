@@ -2,6 +2,7 @@ package com.Acrobot.ChestShop.Events;
 
 import com.Acrobot.ChestShop.Database.Account;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
+import com.Acrobot.ChestShop.Utils.TransactionIdGenerator;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.block.Sign;
@@ -41,7 +42,15 @@ public class PreTransactionEvent extends Event implements Cancellable {
 
     private TransactionOutcome transactionOutcome = TRANSACTION_SUCCESFUL;
 
+    private final String transactionId = TransactionIdGenerator.nextId();
+
+    private final ShopContext shopContext;
+
     public PreTransactionEvent(Inventory ownerInventory, Inventory clientInventory, ItemStack[] items, BigDecimal exactPrice, Player client, Account ownerAccount, Sign sign, TransactionType type) {
+        this(ownerInventory, clientInventory, items, exactPrice, client, ownerAccount, sign, type, null);
+    }
+
+    public PreTransactionEvent(Inventory ownerInventory, Inventory clientInventory, ItemStack[] items, BigDecimal exactPrice, Player client, Account ownerAccount, Sign sign, TransactionType type, ShopContext shopContext) {
         this.ownerInventory = ownerInventory;
         this.clientInventory = (clientInventory == null ? client.getInventory() : clientInventory);
 
@@ -53,6 +62,7 @@ public class PreTransactionEvent extends Event implements Cancellable {
 
         this.sign = sign;
         this.transactionType = type;
+        this.shopContext = shopContext;
     }
 
     /**
@@ -70,6 +80,26 @@ public class PreTransactionEvent extends Event implements Cancellable {
         return sign;
     }
 
+    /**
+     * Get the unique id of this transaction. Economy adapters derive their idempotency keys from it,
+     * so retrying a leg of the same transaction can be recognised as a duplicate.
+     *
+     * @return The transaction's id
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Get the context of the interaction which started this transaction. It holds the owner's account
+     * and the client's owner and access checks, so listeners don't have to resolve them again.
+     *
+     * @return The shop context, or null if the transaction was not started by a player clicking a shop sign
+     */
+    public ShopContext getShopContext() {
+        return shopContext;
+    }
+
     /**
      * Get the exact total price
      *
@@ -0,0 +1,141 @@
+package com.Acrobot.ChestShop.Events;
+
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Database.Account;
+import com.Acrobot.ChestShop.Permission;
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.UUIDs.NameManager;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
+
+/**
+ * The owner of a shop as seen by the player who is interacting with it.
+ * The owner's account is resolved once when the context is created, the
+ * owner and access checks are only done when first needed and then reused
+ * for the rest of the interaction.
+ */
+public class ShopContext {
+    private final Player player;
+    private final Sign sign;
+    private final String ownerName;
+    private final Account account;
+    private final boolean adminShop;
+    private final boolean businessAccount;
+
+    private Boolean accountAccess = null;
+    private Boolean owner = null;
+    private Boolean access = null;
+
+    private ShopContext(Player player, Sign sign, String ownerName, Account account) {
+        this.player = player;
+        this.sign = sign;
+        this.ownerName = ownerName;
+        this.account = account;
+        this.adminShop = ChestShopSign.isAdminShop(ownerName);
+        this.businessAccount = ChestShopSign.isBusinessAccount(ownerName);
+    }
+
+    /**
+     * Create the context of a player interacting with a shop
+     *
+     * @param player The player interacting with the shop
+     * @param sign   The shop sign
+     * @return The context with the owner's account resolved
+     */
+    public static ShopContext of(Player player, Sign sign) {
+        String name = ChestShopSign.getOwner(sign);
+        Account account = null;
+        if (name != null && !name.isEmpty()) {
+            account = ChestShop.callEvent(new AccountQueryEvent(name)).getAccount();
+        }
+        return new ShopContext(player, sign, name, account);
+    }
+
+    /**
+     * @return The player interacting with the shop
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return The shop sign
+     */
+    public Sign getSign() {
+        return sign;
+    }
+
+    /**
+     * @return The name on the owner line of the sign
+     */
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    /**
+     * @return The account of the shop owner, or null if no account exists for the name on the sign
+     */
+    public Account getAccount() {
+        return account;
+    }
+
+    /**
+     * @return Whether the shop is an admin shop
+     */
+    public boolean isAdminShop() {
+        return adminShop;
+    }
+
+    /**
+     * @return Whether the shop is owned by a business account
+     */
+    public boolean isBusinessAccount() {
+        return businessAccount;
+    }
+
+    /**
+     * Check whether the player owns the shop, same as {@link ChestShopSign#isOwner(Player, Sign)}
+     *
+     * @return Whether the player owns the shop
+     */
+    public boolean isOwner() {
+        if (owner == null) {
+            if (player == null || ownerName == null || ownerName.isEmpty()) {
+                owner = false;
+            } else if (account == null) {
+                owner = player.getName().equalsIgnoreCase(ownerName);
+            } else if (businessAccount) {
+                // The synthetic UUID of a business account never matches a player
+                owner = canAccessAccount(account);
+            } else {
+                owner = account.getUuid().equals(player.getUniqueId());
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Check whether the player can access the shop, same as {@link ChestShopSign#canAccess(Player, Sign)}
+     *
+     * @return Whether the player can access the shop
+     */
+    public boolean canAccess() {
+        if (access == null) {
+            if (player == null) {
+                access = false;
+            } else if (ownerName == null || ownerName.isEmpty()) {
+                access = true;
+            } else {
+                access = NameManager.canUseName(player, Permission.OTHER_NAME_ACCESS, ownerName, this::getAccount, this::canAccessAccount);
+            }
+        }
+        return access;
+    }
+
+    private boolean canAccessAccount(Account account) {
+        if (accountAccess == null) {
+            accountAccess = ChestShop.callEvent(new AccountAccessEvent(player, account)).canAccess();
+        }
+        return accountAccess;
+    }
+}
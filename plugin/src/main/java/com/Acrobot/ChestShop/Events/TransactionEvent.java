@@ -1,6 +1,7 @@
 package com.Acrobot.ChestShop.Events;
 
 import com.Acrobot.ChestShop.Database.Account;
+import com.Acrobot.ChestShop.Utils.TransactionIdGenerator;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.block.Sign;
@@ -33,6 +34,9 @@ public class TransactionEvent extends Event implements Cancellable {
 
     private final Sign sign;
 
+    private final String transactionId;
+    private final ShopContext shopContext;
+
     private boolean cancelled = false;
 
     public TransactionEvent(PreTransactionEvent event, Sign sign) {
@@ -48,6 +52,8 @@ public class TransactionEvent extends Event implements Cancellable {
         this.exactPrice = event.getExactPrice();
 
         this.sign = sign;
+        this.transactionId = event.getTransactionId();
+        this.shopContext = event.getShopContext();
     }
 
     public TransactionEvent(TransactionType type, Inventory ownerInventory, Inventory clientInventory, Player client, Account ownerAccount, ItemStack[] stock, BigDecimal exactPrice, Sign sign) {
@@ -63,6 +69,8 @@ public class TransactionEvent extends Event implements Cancellable {
         this.exactPrice = exactPrice;
 
         this.sign = sign;
+        this.transactionId = TransactionIdGenerator.nextId();
+        this.shopContext = null;
     }
 
     /**
@@ -151,6 +159,21 @@ public class TransactionEvent extends Event implements Cancellable {
         return sign;
     }
 
+    /**
+     * @return The unique id of this transaction, the same as the one of the {@link PreTransactionEvent} it was created from
+     */
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return The context of the interaction which started this transaction, or null if there was none
+     * @see PreTransactionEvent#getShopContext()
+     */
+    public ShopContext getShopContext() {
+        return shopContext;
+    }
+
     public HandlerList getHandlers() {
         return handlers;
     }
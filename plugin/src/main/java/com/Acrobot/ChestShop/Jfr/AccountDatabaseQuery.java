@@ -0,0 +1,57 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A query of the account database which missed the caches of the NameManager
+ */
+@Name("chestshop.AccountDatabaseQuery")
+@Label("Account Database Query")
+@Description("A query of the account database which missed the caches of the NameManager")
+@Category("ChestShop")
+@StackTrace(false)
+public class AccountDatabaseQuery extends Event {
+    @Label("Query")
+    @Description("What the account was searched by, or store for updates")
+    private String query;
+
+    @Label("Key")
+    private String key;
+
+    @Label("Found")
+    private boolean found;
+
+    private AccountDatabaseQuery() {}
+
+    /**
+     * @return A query which started now
+     */
+    public static AccountDatabaseQuery start() {
+        AccountDatabaseQuery query = new AccountDatabaseQuery();
+        query.begin();
+        return query;
+    }
+
+    /**
+     * End the query and record it if the recorder is interested in it
+     *
+     * @param query What the account was searched by
+     * @param key   The value that was searched for
+     * @param found Whether an account was found
+     */
+    public void finish(String query, Object key, boolean found) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.query = query;
+        this.key = String.valueOf(key);
+        this.found = found;
+        commit();
+    }
+}
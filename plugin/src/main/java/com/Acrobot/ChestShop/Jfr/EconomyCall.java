@@ -0,0 +1,57 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import com.Acrobot.ChestShop.Events.Economy.CurrencyTransferEvent;
+import com.Acrobot.ChestShop.Events.TransactionEvent;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.bukkit.event.Event;
+
+/**
+ * A call into the economy plugin
+ */
+@Name("chestshop.EconomyCall")
+@Label("Economy Call")
+@Description("A call into the economy plugin, with the shop if it was part of a transaction")
+public class EconomyCall extends ShopEvent {
+    @Label("Operation")
+    private String operation;
+
+    @Label("Handled")
+    @Description("Whether the economy plugin handled the call")
+    private boolean handled;
+
+    private EconomyCall() {}
+
+    /**
+     * @return A call which started now
+     */
+    public static EconomyCall start() {
+        EconomyCall call = new EconomyCall();
+        call.begin();
+        return call;
+    }
+
+    /**
+     * End the call and record it if the recorder is interested in it
+     *
+     * @param operation The name of the operation
+     * @param event     The economic event that was handled
+     * @param handled   Whether the economy plugin handled the event
+     */
+    public void finish(String operation, Event event, boolean handled) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation;
+        this.handled = handled;
+        if (event instanceof CurrencyTransferEvent) {
+            TransactionEvent transaction = ((CurrencyTransferEvent) event).getTransactionEvent();
+            if (transaction != null) {
+                setShop(transaction.getSign());
+            }
+        }
+        commit();
+    }
+}
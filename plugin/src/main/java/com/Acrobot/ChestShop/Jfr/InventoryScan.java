@@ -0,0 +1,70 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A scan over the contents of an inventory
+ */
+@Name("chestshop.InventoryScan")
+@Label("Inventory Scan")
+@Description("A scan over the contents of an inventory to count items or check for space")
+public class InventoryScan extends ShopEvent {
+    @Label("Operation")
+    private String operation;
+
+    @Label("Size")
+    @Description("The amount of slots of the inventory")
+    private int size;
+
+    @Label("Result")
+    @Description("The counted amount, or 1 if the check succeeded and 0 if it failed")
+    private int result;
+
+    private InventoryScan() {}
+
+    /**
+     * @return A scan which started now
+     */
+    public static InventoryScan start() {
+        InventoryScan scan = new InventoryScan();
+        scan.begin();
+        return scan;
+    }
+
+    /**
+     * End the scan and record it if the recorder is interested in it
+     *
+     * @param operation The kind of scan
+     * @param item      The item that was searched for
+     * @param inventory The scanned inventory
+     * @param result    The result of the scan
+     */
+    public void finish(String operation, ItemStack item, Inventory inventory, int result) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation;
+        this.item = item != null ? item.getType().name() : null;
+        setLocation(inventory.getLocation());
+        this.size = inventory.getSize();
+        this.result = result;
+        commit();
+    }
+
+    /**
+     * End the scan and record it if the recorder is interested in it
+     *
+     * @param operation The kind of scan
+     * @param items     The items that were searched for
+     * @param inventory The scanned inventory
+     * @param result    Whether the check succeeded
+     */
+    public void finish(String operation, ItemStack[] items, Inventory inventory, boolean result) {
+        finish(operation, items.length > 0 ? items[0] : null, inventory, result ? 1 : 0);
+    }
+}
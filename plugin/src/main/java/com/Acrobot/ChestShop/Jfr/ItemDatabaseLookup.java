@@ -0,0 +1,56 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A query of the item database
+ */
+@Name("chestshop.ItemDatabaseLookup")
+@Label("Item Database Lookup")
+@Description("Translating an item to its code or a code to its item through the item database")
+@Category("ChestShop")
+@StackTrace(false)
+public class ItemDatabaseLookup extends Event {
+    @Label("Operation")
+    private String operation;
+
+    @Label("Item Code")
+    private String code;
+
+    @Label("Found")
+    private boolean found;
+
+    private ItemDatabaseLookup() {}
+
+    /**
+     * @return A lookup which started now
+     */
+    public static ItemDatabaseLookup start() {
+        ItemDatabaseLookup lookup = new ItemDatabaseLookup();
+        lookup.begin();
+        return lookup;
+    }
+
+    /**
+     * End the lookup and record it if the recorder is interested in it
+     *
+     * @param operation The kind of lookup
+     * @param code      The item code that was looked up or returned
+     * @param found     Whether the lookup had a result
+     */
+    public void finish(String operation, String code, boolean found) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.operation = operation;
+        this.code = code;
+        this.found = found;
+        commit();
+    }
+}
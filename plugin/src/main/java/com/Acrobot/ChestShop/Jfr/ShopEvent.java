@@ -0,0 +1,49 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import org.bukkit.Location;
+import org.bukkit.block.Sign;
+
+/**
+ * Base of the flight recorder events which happen at a shop. The location and item
+ * are only filled in once it is known that the event gets recorded.
+ */
+@Category("ChestShop")
+@StackTrace(false)
+public abstract class ShopEvent extends Event {
+    @Label("World")
+    protected String world;
+
+    @Label("X")
+    protected int x;
+
+    @Label("Y")
+    protected int y;
+
+    @Label("Z")
+    protected int z;
+
+    @Label("Item")
+    @Description("The item code of the shop or the material of the item")
+    protected String item;
+
+    protected void setLocation(Location location) {
+        if (location == null) {
+            return;
+        }
+        world = location.getWorld() != null ? location.getWorld().getName() : null;
+        x = location.getBlockX();
+        y = location.getBlockY();
+        z = location.getBlockZ();
+    }
+
+    protected void setShop(Sign sign) {
+        setLocation(sign.getLocation());
+        item = ChestShopSign.getItem(sign);
+    }
+}
@@ -0,0 +1,66 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import com.Acrobot.Breeze.Utils.InventoryUtil;
+import com.Acrobot.ChestShop.Events.PreTransactionEvent;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.bukkit.block.Sign;
+
+/**
+ * A player using a shop sign, from checking the sign until all transaction listeners ran
+ */
+@Name("chestshop.Transaction")
+@Label("Shop Transaction")
+@Description("A player using a shop sign, from checking the sign until all transaction listeners ran")
+public class ShopTransaction extends ShopEvent {
+    @Label("Type")
+    private String type;
+
+    @Label("Client")
+    private String client;
+
+    @Label("Owner")
+    private String owner;
+
+    @Label("Amount")
+    private int amount;
+
+    @Label("Price")
+    private double price;
+
+    @Label("Outcome")
+    private String outcome;
+
+    private ShopTransaction() {}
+
+    /**
+     * @return A transaction which started now
+     */
+    public static ShopTransaction start() {
+        ShopTransaction transaction = new ShopTransaction();
+        transaction.begin();
+        return transaction;
+    }
+
+    /**
+     * End the transaction and record it if the recorder is interested in it
+     *
+     * @param sign        The sign of the shop
+     * @param transaction The transaction that was attempted
+     */
+    public void finish(Sign sign, PreTransactionEvent transaction) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        setShop(sign);
+        type = transaction.getTransactionType().name();
+        client = transaction.getClient().getName();
+        owner = transaction.getOwnerAccount() != null ? transaction.getOwnerAccount().getName() : null;
+        amount = InventoryUtil.countItems(transaction.getStock());
+        price = transaction.getExactPrice().doubleValue();
+        outcome = transaction.getTransactionOutcome().name();
+        commit();
+    }
+}
@@ -0,0 +1,44 @@
+package com.Acrobot.ChestShop.Jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.bukkit.block.Sign;
+
+/**
+ * A check whether a sign is a valid shop sign
+ */
+@Name("chestshop.SignValidation")
+@Label("Sign Validation")
+@Description("A check whether a sign is a valid shop sign")
+public class SignValidation extends ShopEvent {
+    @Label("Valid")
+    private boolean valid;
+
+    private SignValidation() {}
+
+    /**
+     * @return A validation which started now
+     */
+    public static SignValidation start() {
+        SignValidation validation = new SignValidation();
+        validation.begin();
+        return validation;
+    }
+
+    /**
+     * End the validation and record it if the recorder is interested in it
+     *
+     * @param sign  The validated sign
+     * @param valid Whether the sign is a valid shop sign
+     */
+    public void finish(Sign sign, boolean valid) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        setShop(sign);
+        this.valid = valid;
+        commit();
+    }
+}
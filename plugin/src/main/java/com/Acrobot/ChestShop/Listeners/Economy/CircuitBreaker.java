@@ -0,0 +1,158 @@
+package com.Acrobot.ChestShop.Listeners.Economy;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Trips when the economy backend gets slow or starts failing, so that shops can
+ * refuse new transactions right away instead of waiting on it.
+ *
+ * <p>The breaker looks at a window of the most recent calls. If their p99 latency
+ * or their error rate crosses a threshold it opens for the cooldown period. After
+ * that it lets transactions through again (half-open) and closes once a few calls
+ * in a row were healthy, or opens again on the first bad one.</p>
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int MIN_CALLS = 10;
+    private static final int PROBE_CALLS = 5;
+
+    private final long latencyThresholdNanos;
+    private final double errorRateThreshold;
+    private final long cooldownNanos;
+    private final LongSupplier clock;
+
+    private final long[] latencies;
+    private final boolean[] errors;
+    private int size = 0;
+    private int next = 0;
+
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private int probes = 0;
+    private long trips = 0;
+
+    /**
+     * @param windowSize            How many recent calls to look at
+     * @param latencyThresholdNanos p99 latency above which the breaker opens, 0 to ignore latency
+     * @param errorRateThreshold    Fraction of failed calls (0..1) above which the breaker opens, 0 to ignore errors
+     * @param cooldownNanos         How long the breaker stays open
+     * @param clock                 Source of the current time in nanoseconds
+     */
+    public CircuitBreaker(int windowSize, long latencyThresholdNanos, double errorRateThreshold, long cooldownNanos, LongSupplier clock) {
+        this.latencies = new long[Math.max(MIN_CALLS, windowSize)];
+        this.errors = new boolean[latencies.length];
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.errorRateThreshold = errorRateThreshold;
+        this.cooldownNanos = cooldownNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * @return Whether the breaker can trip at all
+     */
+    public boolean isEnabled() {
+        return latencyThresholdNanos > 0 || errorRateThreshold > 0;
+    }
+
+    /**
+     * Check whether a new transaction may use the economy
+     *
+     * @return false if the breaker is open
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < cooldownNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probes = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Record the outcome of a call to the economy
+     *
+     * @param nanos How long the call took
+     * @param error Whether the call failed
+     */
+    public synchronized void record(long nanos, boolean error) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        switch (state) {
+            case OPEN:
+                // Calls that were already underway when the breaker opened
+                return;
+            case HALF_OPEN:
+                if (isBad(nanos, error)) {
+                    open();
+                } else if (++probes >= PROBE_CALLS) {
+                    state = State.CLOSED;
+                }
+                return;
+            case CLOSED:
+                latencies[next] = nanos;
+                errors[next] = error;
+                next = (next + 1) % latencies.length;
+                size = Math.min(size + 1, latencies.length);
+                if (size >= MIN_CALLS && isWindowBad()) {
+                    open();
+                }
+        }
+    }
+
+    private boolean isBad(long nanos, boolean error) {
+        return (errorRateThreshold > 0 && error) || (latencyThresholdNanos > 0 && nanos > latencyThresholdNanos);
+    }
+
+    private boolean isWindowBad() {
+        if (errorRateThreshold > 0) {
+            int failed = 0;
+            for (int i = 0; i < size; i++) {
+                if (errors[i]) {
+                    failed++;
+                }
+            }
+            if ((double) failed / size >= errorRateThreshold) {
+                return true;
+            }
+        }
+        if (latencyThresholdNanos > 0) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            long p99 = sorted[Math.min(size - 1, (int) Math.ceil(size * 0.99) - 1)];
+            return p99 > latencyThresholdNanos;
+        }
+        return false;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        size = 0;
+        next = 0;
+        trips++;
+    }
+
+    /**
+     * @return The current state, an open breaker whose cooldown passed still reports OPEN until the next request
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return How often the breaker opened
+     */
+    public synchronized long getTrips() {
+        return trips;
+    }
+}
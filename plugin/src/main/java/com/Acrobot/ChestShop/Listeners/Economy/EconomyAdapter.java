@@ -9,6 +9,7 @@ import com.Acrobot.ChestShop.Events.Economy.CurrencyFormatEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyHoldEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencySubtractEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyTransferEvent;
+import com.Acrobot.ChestShop.Events.Economy.EconomicEvent;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
 import org.bukkit.event.Listener;
 import org.jetbrains.annotations.Nullable;
@@ -36,6 +37,22 @@ public abstract class EconomyAdapter implements Listener {
 
     public abstract void onCurrencyHoldCheck(CurrencyHoldEvent event);
 
+    /**
+     * Called when ChestShop gets disabled. Adapters that buffer anything should write it out here.
+     */
+    public void shutdown() {}
+
+    /**
+     * Report that the economy plugin failed to process an event, e.g. because it threw an
+     * exception which was caught and logged. The call then counts as failed for the
+     * {@link EconomyMonitor}, even though the event is left unhandled instead of throwing.
+     *
+     * @param event The event which couldn't be processed
+     */
+    protected void markFailed(EconomicEvent event) {
+        EconomyMonitor.markFailed(event);
+    }
+
     /**
      * Convenience method to process transfers by first subtracting and then adding
      *
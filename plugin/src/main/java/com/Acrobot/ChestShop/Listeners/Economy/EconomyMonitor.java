@@ -0,0 +1,198 @@
+package com.Acrobot.ChestShop.Listeners.Economy;
+
+import com.Acrobot.Breeze.Collection.LatencyHistogram;
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
+import com.Acrobot.ChestShop.Events.Economy.EconomicEvent;
+import com.Acrobot.ChestShop.Jfr.EconomyCall;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Measures how long the economy adapter takes for each operation and trips a
+ * {@link CircuitBreaker} when the economy plugin gets slow or keeps failing.
+ *
+ * <p>The adapter's handlers are registered through this class instead of directly,
+ * so every adapter is instrumented without having to touch its handlers. A call
+ * counts as failed if the handler threw or if the adapter reported a failure it caught
+ * with {@link EconomyAdapter#markFailed(EconomicEvent)}. Other calls which leave the event
+ * unhandled, e.g. because another listener already answered it, did no work and aren't counted.</p>
+ */
+public class EconomyMonitor implements Listener {
+
+    /**
+     * Latency and error statistics of one economy operation (e.g. CurrencyTransferEvent)
+     */
+    public static class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    /** The event which the handler that is running on this thread failed to process */
+    private static final ThreadLocal<Event> failedEvent = new ThreadLocal<>();
+    private static CircuitBreaker breaker = createBreaker();
+
+    private static CircuitBreaker createBreaker() {
+        return new CircuitBreaker(
+                Properties.ECONOMY_BREAKER_WINDOW,
+                TimeUnit.MILLISECONDS.toNanos(Properties.ECONOMY_BREAKER_LATENCY),
+                Properties.ECONOMY_BREAKER_ERROR_RATE / 100.0,
+                TimeUnit.SECONDS.toNanos(Properties.ECONOMY_BREAKER_COOLDOWN),
+                System::nanoTime
+        );
+    }
+
+    /**
+     * Register all event handlers of an economy adapter with timing around them
+     *
+     * @param adapter The adapter to register
+     */
+    public static void register(EconomyAdapter adapter) {
+        for (Method method : adapter.getClass().getMethods()) {
+            EventHandler handler = method.getAnnotation(EventHandler.class);
+            if (handler == null || method.isBridge() || method.isSynthetic() || method.getParameterCount() != 1
+                    || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+
+            Class<? extends Event> eventClass = method.getParameterTypes()[0].asSubclass(Event.class);
+            boolean economic = EconomicEvent.class.isAssignableFrom(eventClass);
+            Operation operation = economic ? operations.computeIfAbsent(eventClass.getSimpleName(), k -> new Operation()) : null;
+            method.setAccessible(true);
+
+            Bukkit.getPluginManager().registerEvent(eventClass, adapter, handler.priority(),
+                    createExecutor(method, eventClass, operation), ChestShop.getPlugin(), handler.ignoreCancelled());
+        }
+    }
+
+    /**
+     * Create the executor which calls a handler of an economy adapter and measures it
+     *
+     * @param method     The handler method
+     * @param eventClass The event the handler listens to
+     * @param operation  The statistics to record the calls in, or null if the event isn't an economic event
+     * @return The executor
+     */
+    static EventExecutor createExecutor(Method method, Class<? extends Event> eventClass, Operation operation) {
+        return (listener, event) -> {
+            if (!eventClass.isInstance(event)) {
+                return;
+            }
+            if (operation == null || ((EconomicEvent) event).wasHandled()) {
+                invoke(method, listener, event);
+                return;
+            }
+
+            EconomyCall recording = EconomyCall.start();
+            long start = System.nanoTime();
+            boolean threw = true;
+            try {
+                invoke(method, listener, event);
+                threw = false;
+            } finally {
+                boolean failed = reportedFailure(event) || threw;
+                boolean handled = ((EconomicEvent) event).wasHandled();
+                // Adapters leave events unhandled which were already answered, that isn't a failure
+                if (failed || handled) {
+                    record(operation, System.nanoTime() - start, failed);
+                }
+                recording.finish(eventClass.getSimpleName(), event, handled);
+            }
+        };
+    }
+
+    /**
+     * Report that an economy adapter failed to process an event without throwing
+     *
+     * @param event The event which couldn't be processed
+     */
+    static void markFailed(EconomicEvent event) {
+        failedEvent.set(event);
+    }
+
+    private static boolean reportedFailure(Event event) {
+        if (failedEvent.get() != event) {
+            return false;
+        }
+        failedEvent.remove();
+        return true;
+    }
+
+    private static void invoke(Method method, Listener listener, Event event) throws EventException {
+        try {
+            method.invoke(listener, event);
+        } catch (InvocationTargetException e) {
+            throw new EventException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new EventException(e);
+        }
+    }
+
+    private static void record(Operation operation, long nanos, boolean failed) {
+        operation.latency.record(nanos);
+        if (failed) {
+            operation.errors.increment();
+        }
+
+        CircuitBreaker.State before = breaker.getState();
+        breaker.record(nanos, failed);
+        if (before != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "The economy plugin is too slow or failing, new shop transactions are refused for "
+                    + Properties.ECONOMY_BREAKER_COOLDOWN + " seconds.");
+        } else if (before == CircuitBreaker.State.HALF_OPEN && breaker.getState() == CircuitBreaker.State.CLOSED) {
+            ChestShop.getBukkitLogger().info("The economy plugin recovered, shop transactions are allowed again.");
+        }
+    }
+
+    /**
+     * Check whether a new shop transaction should be started
+     *
+     * @return false if the circuit breaker is open because the economy plugin is slow or failing
+     */
+    public static boolean isAvailable() {
+        return breaker.allowRequest();
+    }
+
+    /**
+     * @return The circuit breaker guarding shop transactions
+     */
+    public static CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * @return The statistics of each economy operation, sorted by operation name
+     */
+    public static Map<String, Operation> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<>(operations));
+    }
+
+    @EventHandler
+    public static void onReload(ChestShopReloadEvent event) {
+        breaker = createBreaker();
+    }
+}
@@ -0,0 +1,369 @@
+package com.Acrobot.ChestShop.Listeners.Economy.Plugins;
+
+import com.Acrobot.ChestShop.ChestShop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Buffers seller credits per Treasury account and settles them as one
+ * transfer per aggregation window.
+ *
+ * <p>Every credit is appended to an on-disk ledger (and forced to disk) before
+ * it is acknowledged, so a crash between the trade and the settlement never
+ * loses money: pending credits are replayed on the next start. Before a range
+ * is settled it is sealed as a batch with a {@code B} line, and a settled range
+ * is marked with a {@code F} line. A batch keeps its range until it is settled,
+ * both when the settlement fails and when it is replayed after a crash, so the
+ * settlement keys which are derived from the range let Treasury deduplicate a
+ * settlement that went through without ChestShop noticing.</p>
+ *
+ * <p>Ledger lines (tab separated):
+ * <pre>
+ * S  nextSeq                            -- sequence to continue from, written on compaction
+ * C  seq  accountId  taxRate  amount     -- a buffered credit
+ * B  accountId  taxRate  firstSeq  lastSeq  -- the credits in that range are settled together
+ * F  accountId  taxRate  lastSeq         -- everything up to lastSeq for that key is settled
+ * </pre></p>
+ */
+final class TreasuryDepositLedger {
+
+    /**
+     * Performs the actual settlement of a buffered range.
+     */
+    interface Settlement {
+        void settle(int accountId, BigDecimal taxRate, BigDecimal amount, long firstSeq, long lastSeq, int credits) throws Exception;
+    }
+
+    private static final class Key {
+        private final int accountId;
+        private final BigDecimal taxRate;
+
+        private Key(int accountId, BigDecimal taxRate) {
+            this.accountId = accountId;
+            this.taxRate = taxRate.stripTrailingZeros();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return accountId == key.accountId && taxRate.compareTo(key.taxRate) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accountId, taxRate);
+        }
+    }
+
+    private static final class Pending {
+        private BigDecimal amount = BigDecimal.ZERO;
+        private long firstSeq = Long.MAX_VALUE;
+        private long lastSeq = -1;
+        private int credits = 0;
+
+        private void add(long seq, BigDecimal value) {
+            amount = amount.add(value);
+            firstSeq = Math.min(firstSeq, seq);
+            lastSeq = Math.max(lastSeq, seq);
+            credits++;
+        }
+    }
+
+    private final File file;
+    private final Settlement settlement;
+    private final Map<Key, Pending> pending = new LinkedHashMap<>();
+    /** Batches which were sealed but not settled yet, oldest first */
+    private final Map<Key, Deque<Pending>> sealed = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler;
+
+    private FileChannel channel;
+    private long nextSeq = 0;
+
+    TreasuryDepositLedger(File file, Settlement settlement, int windowSeconds) throws IOException {
+        this.file = file;
+        this.settlement = settlement;
+        load();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ChestShop deposit ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushAll, windowSeconds, windowSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Read the ledger, keep the credits that weren't settled yet and compact the file to only contain those.
+     */
+    private void load() throws IOException {
+        Map<Key, Long> settled = new HashMap<>();
+        Map<Key, List<long[]>> batches = new HashMap<>();
+        List<String[]> credits = new ArrayList<>();
+        if (file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    try {
+                        if (parts.length == 2 && parts[0].equals("S")) {
+                            nextSeq = Math.max(nextSeq, Long.parseLong(parts[1]));
+                        } else if (parts.length == 5 && parts[0].equals("C")) {
+                            credits.add(parts);
+                            nextSeq = Math.max(nextSeq, Long.parseLong(parts[1]) + 1);
+                        } else if (parts.length == 5 && parts[0].equals("B")) {
+                            batches.computeIfAbsent(new Key(Integer.parseInt(parts[1]), new BigDecimal(parts[2])), k -> new ArrayList<>())
+                                    .add(new long[]{Long.parseLong(parts[3]), Long.parseLong(parts[4])});
+                        } else if (parts.length == 4 && parts[0].equals("F")) {
+                            settled.merge(new Key(Integer.parseInt(parts[1]), new BigDecimal(parts[2])), Long.parseLong(parts[3]), Math::max);
+                        }
+                    } catch (NumberFormatException e) {
+                        // A torn write at the end of the file, the credit was never acknowledged
+                        ChestShop.getBukkitLogger().log(Level.WARNING, "Skipping malformed deposit ledger line: " + line);
+                    }
+                }
+            }
+        }
+
+        // Sequence numbers are part of the settlement keys, so they must never be reused
+        StringBuilder compacted = new StringBuilder("S\t" + nextSeq + "\n");
+        Map<Key, Map<Long, Pending>> recovered = new LinkedHashMap<>();
+        for (String[] credit : credits) {
+            long seq = Long.parseLong(credit[1]);
+            Key key = new Key(Integer.parseInt(credit[2]), new BigDecimal(credit[3]));
+            if (seq <= settled.getOrDefault(key, -1L)) {
+                continue;
+            }
+            long[] range = findBatch(batches.get(key), seq);
+            if (range != null) {
+                // Settle it again with the same range so Treasury recognises it if it already went through
+                Pending batch = recovered.computeIfAbsent(key, k -> new TreeMap<>()).computeIfAbsent(range[0], k -> new Pending());
+                batch.add(seq, new BigDecimal(credit[4]));
+                batch.firstSeq = range[0];
+                batch.lastSeq = range[1];
+            } else {
+                pending.computeIfAbsent(key, k -> new Pending()).add(seq, new BigDecimal(credit[4]));
+            }
+            compacted.append(String.join("\t", credit)).append('\n');
+        }
+        for (Map.Entry<Key, Map<Long, Pending>> entry : recovered.entrySet()) {
+            Key key = entry.getKey();
+            for (Pending batch : entry.getValue().values()) {
+                sealed.computeIfAbsent(key, k -> new ArrayDeque<>()).add(batch);
+                compacted.append(batchLine(key, batch)).append('\n');
+            }
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Files.write(temp.toPath(), compacted.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        if (!pending.isEmpty() || !sealed.isEmpty()) {
+            ChestShop.getBukkitLogger().info("Recovered " + (pending.size() + sealed.size()) + " unsettled seller deposit(s) from the deposit ledger.");
+        }
+    }
+
+    private static long[] findBatch(List<long[]> ranges, long seq) {
+        if (ranges != null) {
+            for (long[] range : ranges) {
+                if (seq >= range[0] && seq <= range[1]) {
+                    return range;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String batchLine(Key key, Pending batch) {
+        return "B\t" + key.accountId + "\t" + key.taxRate.toPlainString() + "\t" + batch.firstSeq + "\t" + batch.lastSeq;
+    }
+
+    private void append(String line) throws IOException {
+        channel.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+        channel.force(false);
+    }
+
+    /**
+     * Durably buffer a credit to an account.
+     *
+     * @param accountId The Treasury account to credit
+     * @param taxRate   The sales tax rate to collect on settlement, zero for none
+     * @param amount    The amount to credit
+     * @throws IOException if the credit couldn't be written to disk, it is not buffered in that case
+     */
+    synchronized void credit(int accountId, BigDecimal taxRate, BigDecimal amount) throws IOException {
+        long seq = nextSeq++;
+        Key key = new Key(accountId, taxRate);
+        append("C\t" + seq + "\t" + accountId + "\t" + key.taxRate.toPlainString() + "\t" + amount.toPlainString());
+        pending.computeIfAbsent(key, k -> new Pending()).add(seq, amount);
+    }
+
+    /**
+     * @return Whether there are any credits which were not settled yet
+     */
+    synchronized boolean hasPending() {
+        return !pending.isEmpty() || !sealed.isEmpty();
+    }
+
+    /**
+     * @param accountId The Treasury account
+     * @return The sum of all credits to that account which were not settled yet
+     */
+    synchronized BigDecimal getPending(int accountId) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Map.Entry<Key, Pending> entry : pending.entrySet()) {
+            if (entry.getKey().accountId == accountId) {
+                sum = sum.add(entry.getValue().amount);
+            }
+        }
+        for (Map.Entry<Key, Deque<Pending>> entry : sealed.entrySet()) {
+            if (entry.getKey().accountId == accountId) {
+                for (Pending batch : entry.getValue()) {
+                    sum = sum.add(batch.amount);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Settle all pending credits of one account right away. Used before the account gets debited.
+     *
+     * @param accountId The Treasury account
+     */
+    void flush(int accountId) {
+        synchronized (flushLock) {
+            for (Key key : keys(accountId)) {
+                flush(key);
+            }
+        }
+    }
+
+    /**
+     * Settle all pending credits
+     */
+    void flushAll() {
+        synchronized (flushLock) {
+            for (Key key : keys(null)) {
+                flush(key);
+            }
+        }
+    }
+
+    private synchronized List<Key> keys(Integer accountId) {
+        Set<Key> keys = new LinkedHashSet<>(sealed.keySet());
+        keys.addAll(pending.keySet());
+        keys.removeIf(key -> accountId != null && key.accountId != accountId);
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Settle the sealed batches of a key in order, then seal and settle the credits buffered since.
+     * Stops at the first batch that couldn't be settled, it is retried with the same range later.
+     */
+    private void flush(Key key) {
+        while (true) {
+            Pending batch;
+            synchronized (this) {
+                Deque<Pending> batches = sealed.get(key);
+                batch = batches != null ? batches.peekFirst() : seal(key);
+            }
+            if (batch == null || !settle(key, batch)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Seal the buffered credits of a key into a batch whose range doesn't change anymore
+     *
+     * @return The sealed batch, or null if there was nothing to seal or the batch couldn't be written
+     */
+    private Pending seal(Key key) {
+        Pending batch = pending.remove(key);
+        if (batch == null || batch.credits == 0) {
+            return null;
+        }
+        try {
+            append(batchLine(key, batch));
+        } catch (IOException e) {
+            // Nothing was settled with this range yet, so the credits can stay buffered
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to write deposit batch to the deposit ledger", e);
+            pending.put(key, batch);
+            return null;
+        }
+        sealed.computeIfAbsent(key, k -> new ArrayDeque<>()).add(batch);
+        return batch;
+    }
+
+    private boolean settle(Key key, Pending batch) {
+        try {
+            settlement.settle(key.accountId, key.taxRate, batch.amount, batch.firstSeq, batch.lastSeq, batch.credits);
+        } catch (Exception e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not settle " + batch.amount
+                    + " in buffered deposits to account " + key.accountId + ", retrying next window", e);
+            return false;
+        }
+
+        synchronized (this) {
+            Deque<Pending> batches = sealed.get(key);
+            batches.removeFirst();
+            if (batches.isEmpty()) {
+                sealed.remove(key);
+            }
+            try {
+                append("F\t" + key.accountId + "\t" + key.taxRate.toPlainString() + "\t" + batch.lastSeq);
+            } catch (IOException e) {
+                // The settlement went through; a replay is deduplicated by Treasury through the settlement key
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to mark settled deposits in the deposit ledger", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop the settlement window, settle everything that is pending and close the ledger file.
+     */
+    void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(15, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {}
+
+        flushAll();
+
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to close the deposit ledger", e);
+            }
+        }
+    }
+}
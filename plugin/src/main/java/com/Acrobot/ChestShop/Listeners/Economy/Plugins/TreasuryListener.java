@@ -1,10 +1,12 @@
 package com.Acrobot.ChestShop.Listeners.Economy.Plugins;
 
+import com.Acrobot.Breeze.Collection.ExpiringCache;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Database.Account;
 import com.Acrobot.ChestShop.Events.AccountAccessEvent;
 import com.Acrobot.ChestShop.Events.AccountQueryEvent;
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
 import com.Acrobot.ChestShop.Events.Economy.AccountCheckEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyAddEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyAmountEvent;
@@ -20,6 +22,7 @@ import com.Acrobot.ChestShop.Permission;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.Acrobot.ChestShop.Utils.ItemUtil;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
+import com.Acrobot.ChestShop.Utils.TransactionIdGenerator;
 import net.democracycraft.business.api.BusinessApi;
 import net.democracycraft.business.model.RolePermission;
 import net.democracycraft.treasury.api.TaxApi;
@@ -34,10 +37,12 @@ import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
@@ -58,6 +63,17 @@ public class TreasuryListener extends EconomyAdapter {
     private final TaxApi taxApi;
     private final int systemAccountId;
     @Nullable private final BusinessApi businessApi;
+    @Nullable private TreasuryDepositLedger depositLedger;
+
+    private record AccessKey(UUID player, int accountId) {}
+
+    /**
+     * A single shop click checks ownership and access of the same business account several
+     * times, so granted access and firm lookups are kept for a few seconds. Denied access isn't
+     * kept, removed staff lose access once it expires or when they leave.
+     */
+    private volatile ExpiringCache<AccessKey, Boolean> accessCache = newAccessCache();
+    private volatile ExpiringCache<Integer, net.democracycraft.business.model.Firm> firmCache = newAccessCache();
 
     private TreasuryListener(TreasuryApi treasury, TaxApi taxApi, int systemAccountId, @Nullable BusinessApi businessApi) {
         this.treasury = treasury;
@@ -138,7 +154,30 @@ public class TreasuryListener extends EconomyAdapter {
             }
         }
 
-        return new TreasuryListener(treasury, taxApi, systemAccountId, businessApi);
+        TreasuryListener listener = new TreasuryListener(treasury, taxApi, systemAccountId, businessApi);
+
+        // Busy shops credit their owner many times a second. With an aggregation
+        // window set, those credits are written to a local ledger and settled as
+        // one Treasury transfer per account and window instead.
+        if (Properties.DEPOSIT_AGGREGATION_WINDOW > 0) {
+            try {
+                listener.depositLedger = new TreasuryDepositLedger(ChestShop.loadFile("deposits.ledger"),
+                        listener::settleDeposits, Properties.DEPOSIT_AGGREGATION_WINDOW);
+                ChestShop.getBukkitLogger().info("Seller deposits are settled every " + Properties.DEPOSIT_AGGREGATION_WINDOW + " seconds.");
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.SEVERE, "Unable to open the deposit ledger, seller deposits will be settled immediately!", e);
+            }
+        }
+
+        return listener;
+    }
+
+    @Override
+    public void shutdown() {
+        if (depositLedger != null) {
+            depositLedger.close();
+            depositLedger = null;
+        }
     }
 
     @Override
@@ -199,6 +238,74 @@ public class TreasuryListener extends EconomyAdapter {
         return null;
     }
 
+    // --- Deposit aggregation ---
+
+    /**
+     * Credits buffered in the deposit ledger aren't on the Treasury account yet
+     * but already belong to the seller, so balance checks have to include them.
+     */
+    private BigDecimal getPendingDeposits(int accountId) {
+        return depositLedger != null ? depositLedger.getPending(accountId) : BigDecimal.ZERO;
+    }
+
+    /**
+     * Debit an account. If the debit fails while the account has credits in the
+     * ledger, those are settled and the debit is retried with the same dedup key.
+     * The settlement is a blocking Treasury transfer, so it is only done when the
+     * money in the ledger is actually needed instead of before every debit.
+     */
+    private void debit(int accountId, TransferRequest request) throws Exception {
+        try {
+            treasury.transfer(request);
+        } catch (Exception e) {
+            if (depositLedger == null || getPendingDeposits(accountId).signum() <= 0) {
+                throw e;
+            }
+            depositLedger.flush(accountId);
+            treasury.transfer(request);
+        }
+    }
+
+    /**
+     * Moves one window of buffered credits from the SYSTEM account to the
+     * seller. The dedup key only depends on the ledger range so a settlement
+     * replayed after a crash is rejected by Treasury instead of paid twice.
+     */
+    private void settleDeposits(int accountId, BigDecimal taxRate, BigDecimal amount, long firstSeq, long lastSeq, int credits) throws Exception {
+        String range = accountId + ":" + firstSeq + "-" + lastSeq;
+        String message = "ChestShop sales (" + credits + (credits == 1 ? " transaction)" : " transactions)");
+        TransferRequest request = new TransferRequest(
+                systemAccountId, accountId, amount,
+                message, CHESTSHOP_SYSTEM_UUID, null, "ChestShop", Idempotency.sha256("chestshop:deposit:" + range)
+        );
+        treasury.transfer(request);
+
+        if (taxApi == null || taxRate.compareTo(BigDecimal.ZERO) <= 0) {
+            return;
+        }
+
+        try {
+            TaxResult result = taxApi.collectRateTax(
+                    accountId,
+                    amount,
+                    taxRate,
+                    "chestshop-sales-tax",
+                    "ChestShop sales tax (" + taxRate.movePointRight(2).stripTrailingZeros().toPlainString()
+                            + "% of " + amount + ") — " + message,
+                    CHESTSHOP_SYSTEM_UUID,
+                    "ChestShop",
+                    Idempotency.sha256("chestshop:deposit-tax:" + range));
+            if (result instanceof TaxResult.Failed f) {
+                ChestShop.getBukkitLogger().warning(
+                        "Treasury: sales-tax collection failed for accountId=" + accountId + ": " + f.errorMessage());
+            }
+        } catch (Exception e) {
+            // Same as for single transactions: tax is best-effort once the deposit went through
+            ChestShop.getBukkitLogger().log(Level.WARNING,
+                    "Treasury: sales-tax collection threw for accountId=" + accountId, e);
+        }
+    }
+
     // --- Economy event handlers ---
 
     @EventHandler
@@ -218,10 +325,14 @@ public class TreasuryListener extends EconomyAdapter {
                         ? treasury.getBalanceByAccountId(governmentAccountId)
                         : treasury.getBalanceByOwnerUuid(event.getAccount());
             }
+            if (depositLedger != null && depositLedger.hasPending()) {
+                balance = balance.add(getPendingDeposits(resolveAccountId(event.getAccount())));
+            }
             event.setAmount(balance);
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not get balance for " + event.getAccount(), e);
+            markFailed(event);
         }
     }
 
@@ -233,10 +344,12 @@ public class TreasuryListener extends EconomyAdapter {
 
         try {
             int accountId = resolveAccountId(event.getAccount());
-            event.hasEnough(treasury.hasFunds(accountId, event.getAmount()));
+            BigDecimal required = event.getAmount().subtract(getPendingDeposits(accountId));
+            event.hasEnough(required.signum() <= 0 || treasury.hasFunds(accountId, required));
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not check funds for " + event.getAccount(), e);
+            markFailed(event);
         }
     }
 
@@ -259,6 +372,7 @@ public class TreasuryListener extends EconomyAdapter {
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not check account for " + event.getAccount(), e);
+            markFailed(event);
         }
     }
 
@@ -274,6 +388,7 @@ public class TreasuryListener extends EconomyAdapter {
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not format amount " + event.getAmount(), e);
+            markFailed(event);
         }
     }
 
@@ -285,9 +400,7 @@ public class TreasuryListener extends EconomyAdapter {
 
         try {
             int targetAccountId = resolveAccountId(event.getTarget());
-            byte[] dedupKey = Idempotency.sha256(
-                    "chestshop:add:" + event.getTarget() + ":" + event.getAmount() + ":" + System.nanoTime()
-            );
+            byte[] dedupKey = dedupKey(TransactionIdGenerator.nextId(), "add");
 
             TransferRequest request = new TransferRequest(
                     systemAccountId,
@@ -303,6 +416,7 @@ public class TreasuryListener extends EconomyAdapter {
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not add " + event.getAmount() + " to " + event.getTarget(), e);
+            markFailed(event);
         }
     }
 
@@ -314,9 +428,7 @@ public class TreasuryListener extends EconomyAdapter {
 
         try {
             int targetAccountId = resolveAccountId(event.getTarget());
-            byte[] dedupKey = Idempotency.sha256(
-                    "chestshop:sub:" + event.getTarget() + ":" + event.getAmount() + ":" + System.nanoTime()
-            );
+            byte[] dedupKey = dedupKey(TransactionIdGenerator.nextId(), "sub");
 
             // Use the target's UUID as the initiator for personal accounts,
             // since the account owner is the one authorizing the withdrawal.
@@ -332,10 +444,11 @@ public class TreasuryListener extends EconomyAdapter {
                     "ChestShop",
                     dedupKey
             );
-            treasury.transfer(request);
+            debit(targetAccountId, request);
             event.setHandled(true);
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not subtract " + event.getAmount() + " from " + event.getTarget(), e);
+            markFailed(event);
         }
     }
 
@@ -346,6 +459,7 @@ public class TreasuryListener extends EconomyAdapter {
         }
 
         String message = buildTransferMessage(event.getTransactionEvent());
+        String transactionId = event.getTransactionEvent().getTransactionId();
         BigDecimal amountSent = event.getAmountSent();
         BigDecimal amountReceived = event.getAmountReceived();
         boolean senderIsAdmin = NameManager.isAdminShop(event.getSender());
@@ -356,17 +470,16 @@ public class TreasuryListener extends EconomyAdapter {
             try {
                 int senderAccountId = resolveAccountId(event.getSender());
                 UUID initiator = isBusinessUuid(event.getSender()) ? CHESTSHOP_SYSTEM_UUID : event.getSender();
-                byte[] dedupKey = Idempotency.sha256(
-                        "chestshop:transfer:sub:" + event.getSender() + ":" + amountSent + ":" + System.nanoTime()
-                );
+                byte[] dedupKey = dedupKey(transactionId, "transfer:sub");
                 TransferRequest request = new TransferRequest(
                         senderAccountId, systemAccountId, amountSent,
                         message, initiator, null, "ChestShop", dedupKey
                 );
-                treasury.transfer(request);
+                debit(senderAccountId, request);
             } catch (Exception e) {
                 ChestShop.getBukkitLogger().log(Level.WARNING,
                         "Treasury: Could not subtract " + amountSent + " from " + event.getSender(), e);
+                markFailed(event);
                 return;
             }
         }
@@ -376,9 +489,11 @@ public class TreasuryListener extends EconomyAdapter {
         if (!receiverIsAdmin) {
             try {
                 receiverAccountId = resolveAccountId(event.getReceiver());
-                byte[] dedupKey = Idempotency.sha256(
-                        "chestshop:transfer:add:" + event.getReceiver() + ":" + amountReceived + ":" + System.nanoTime()
-                );
+                if (depositLedger != null && bufferDeposit(event, receiverAccountId, amountReceived)) {
+                    event.setHandled(true);
+                    return;
+                }
+                byte[] dedupKey = dedupKey(transactionId, "transfer:add");
                 TransferRequest request = new TransferRequest(
                         systemAccountId, receiverAccountId, amountReceived,
                         message, CHESTSHOP_SYSTEM_UUID, null, "ChestShop", dedupKey
@@ -387,13 +502,12 @@ public class TreasuryListener extends EconomyAdapter {
             } catch (Exception e) {
                 ChestShop.getBukkitLogger().log(Level.WARNING,
                         "Treasury: Could not add " + amountReceived + " to " + event.getReceiver(), e);
+                markFailed(event);
                 // Rollback the sender's subtraction
                 if (!senderIsAdmin) {
                     try {
                         int senderAccountId = resolveAccountId(event.getSender());
-                        byte[] dedupKey = Idempotency.sha256(
-                                "chestshop:rollback:" + event.getSender() + ":" + amountSent + ":" + System.nanoTime()
-                        );
+                        byte[] dedupKey = dedupKey(transactionId, "rollback");
                         TransferRequest rollback = new TransferRequest(
                                 systemAccountId, senderAccountId, amountSent,
                                 "ChestShop rollback", CHESTSHOP_SYSTEM_UUID, null, "ChestShop", dedupKey
@@ -416,17 +530,12 @@ public class TreasuryListener extends EconomyAdapter {
         //   - TaxApi was unavailable at startup
         //   - the buyer holds the ChestShop.notax.sell permission
         if (taxApi != null && !receiverIsAdmin && receiverAccountId > 0) {
-            BigDecimal rate = resolveTaxRate(event.getPartner());
-            Player initiatorPlayer = event.getInitiator();
-            if (rate.compareTo(BigDecimal.ZERO) > 0
-                    && (initiatorPlayer == null || !Permission.has(initiatorPlayer, Permission.NO_BUY_TAX))) {
+            BigDecimal rate = resolveSalesTaxRate(event);
+            if (rate.compareTo(BigDecimal.ZERO) > 0) {
                 try {
                     UUID initiatorUuid = isBusinessUuid(event.getReceiver())
                             ? CHESTSHOP_SYSTEM_UUID : event.getReceiver();
-                    byte[] dedupKey = Idempotency.sha256(
-                            "chestshop:tax:" + event.getReceiver() + ":" + amountReceived
-                                    + ":" + System.nanoTime()
-                    );
+                    byte[] dedupKey = dedupKey(transactionId, "tax");
                     TaxResult result = taxApi.collectRateTax(
                             receiverAccountId,
                             amountReceived,
@@ -454,6 +563,44 @@ public class TreasuryListener extends EconomyAdapter {
         event.setHandled(true);
     }
 
+    /**
+     * Write the receiver's credit to the deposit ledger, together with the tax
+     * rate that applies to it, so it gets settled with the next window.
+     *
+     * @return Whether the credit was buffered. If not it has to be transferred right away.
+     */
+    private boolean bufferDeposit(CurrencyTransferEvent event, int receiverAccountId, BigDecimal amountReceived) {
+        BigDecimal rate = taxApi != null ? resolveSalesTaxRate(event) : BigDecimal.ZERO;
+        try {
+            depositLedger.credit(receiverAccountId, rate, amountReceived);
+            return true;
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING,
+                    "Treasury: Could not buffer deposit of " + amountReceived + " to " + event.getReceiver() + ", transferring directly", e);
+            return false;
+        }
+    }
+
+    /**
+     * Sales tax rate for a transfer, zero if the buyer holds the
+     * ChestShop.notax.buy permission.
+     */
+    private static BigDecimal resolveSalesTaxRate(CurrencyTransferEvent event) {
+        Player initiatorPlayer = event.getInitiator();
+        if (initiatorPlayer != null && Permission.has(initiatorPlayer, Permission.NO_BUY_TAX)) {
+            return BigDecimal.ZERO;
+        }
+        return resolveTaxRate(event.getPartner());
+    }
+
+    /**
+     * Idempotency key of one leg of a transaction. Derived only from the transaction id
+     * and the leg, so a retried leg carries the same key and Treasury can drop the duplicate.
+     */
+    private static byte[] dedupKey(String transactionId, String leg) {
+        return Idempotency.sha256("chestshop:" + transactionId + ":" + leg);
+    }
+
     /**
      * Tax rate as a decimal fraction (e.g. {@code 0.05} for 5%). Mirrors the
      * legacy TaxModule split: {@code SERVER_TAX_AMOUNT} for admin / server
@@ -618,6 +765,47 @@ public class TreasuryListener extends EconomyAdapter {
                 + " at " + sign.getLocation());
     }
 
+    private boolean checkAccess(UUID playerUuid, int accountId) {
+        if (businessApi != null) {
+            // Business plugin is present: use the CHESTSHOP role-permission as the
+            // authoritative gate for both shop creation and shop ownership checks.
+            if (businessApi.staff().hasPermissionForAccount(accountId, playerUuid, RolePermission.CHESTSHOP)) {
+                return true;
+            }
+            // PAR-29: no live firm owns this account — the firm was disbanded
+            // (disband archives the account and removes its firm link). The shop
+            // is orphaned with no owner to gate it, so let players access (and
+            // therefore remove) the abandoned shop rather than leaving it stuck.
+            return getFirmByAccountId(accountId) == null;
+        }
+
+        // Business plugin absent: fall back to Treasury account membership.
+        return treasury.isAccountMember(playerUuid, accountId)
+                || treasury.isOwnerForAccountId(playerUuid, accountId);
+    }
+
+    @Nullable
+    private net.democracycraft.business.model.Firm getFirmByAccountId(int accountId) {
+        return firmCache.get(accountId, () -> businessApi.firms().getFirmByAccountId(accountId));
+    }
+
+    private static <K, V> ExpiringCache<K, V> newAccessCache() {
+        return new ExpiringCache<>(Properties.BUSINESS_ACCESS_CACHE_TIME * 1000L, Properties.CACHE_SIZE);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        UUID player = event.getPlayer().getUniqueId();
+        accessCache.invalidateIf(key -> key.player().equals(player));
+    }
+
+    @EventHandler
+    public void onReload(ChestShopReloadEvent event) {
+        // Drops everything and applies the configured cache time
+        accessCache = newAccessCache();
+        firmCache = newAccessCache();
+    }
+
     @EventHandler(priority = EventPriority.LOW)
     public void onAccountAccess(AccountAccessEvent event) {
         if (event.canAccess()) {
@@ -643,25 +831,11 @@ public class TreasuryListener extends EconomyAdapter {
             int accountId = (int) uuid.getLeastSignificantBits();
             UUID playerUuid = event.getPlayer().getUniqueId();
 
-            if (businessApi != null) {
-                // Business plugin is present: use the CHESTSHOP role-permission as the
-                // authoritative gate for both shop creation and shop ownership checks.
-                if (businessApi.staff().hasPermissionForAccount(accountId, playerUuid, RolePermission.CHESTSHOP)) {
-                    event.setAccess(true);
-                } else if (businessApi.firms().getFirmByAccountId(accountId) == null) {
-                    // PAR-29: no live firm owns this account — the firm was disbanded
-                    // (disband archives the account and removes its firm link). The shop
-                    // is orphaned with no owner to gate it, so let players access (and
-                    // therefore remove) the abandoned shop rather than leaving it stuck.
-                    event.setAccess(true);
-                }
-            } else {
-                // Business plugin absent: fall back to Treasury account membership.
-                boolean canAccess = treasury.isAccountMember(playerUuid, accountId)
-                        || treasury.isOwnerForAccountId(playerUuid, accountId);
-                if (canAccess) {
-                    event.setAccess(true);
-                }
+            // One click checks the same account several times (isOwner, canAccess, canUseName),
+            // granted access is cached for a few seconds so the Business plugin is only asked once.
+            // Denied access isn't cached, so newly hired staff can use the shop right away.
+            if (accessCache.get(new AccessKey(playerUuid, accountId), () -> checkAccess(playerUuid, accountId), Boolean::booleanValue)) {
+                event.setAccess(true);
             }
         } catch (Exception e) {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Treasury: Could not check access for " + event.getPlayer().getName() + " on account " + shortName, e);
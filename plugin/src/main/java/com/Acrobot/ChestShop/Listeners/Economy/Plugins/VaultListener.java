@@ -138,6 +138,7 @@ public class VaultListener extends EconomyAdapter {
                 ChestShop.getBukkitLogger().log(Level.WARNING, "Could not get balance account of " + lastSeen.getUniqueId() + "/" + lastSeen.getName() + "." +
                         "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                         "If you are sure it's not this issue then please report the following error.", e);
+                markFailed(event);
             }
 
             if (balance > Double.MAX_VALUE) {
@@ -167,6 +168,7 @@ public class VaultListener extends EconomyAdapter {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Could not check if account of " + lastSeen.getUniqueId() + "/" + lastSeen.getName() + " has " + event.getAmount() + "." +
                     "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                     "If you are sure it's not this issue then please report the following error.", e);
+            markFailed(event);
         }
     }
 
@@ -187,6 +189,7 @@ public class VaultListener extends EconomyAdapter {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Could not check account balance of "+ lastSeen.getUniqueId() + "/" + lastSeen.getName() + "." +
                     "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                     "If you are sure it's not this issue then please report the following error.", e);
+            markFailed(event);
         }
     }
 
@@ -219,6 +222,7 @@ public class VaultListener extends EconomyAdapter {
                 ChestShop.getBukkitLogger().log(Level.WARNING, "Could not add money to account of " + lastSeen.getUniqueId() + "/" + lastSeen.getName() + "." +
                         "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                         "If you are sure it's not this issue then please report the following error.", e);
+                markFailed(event);
             }
         } else {
             ChestShop.getBukkitLogger().log(Level.WARNING, "The server could not get the OfflinePlayer with the UUID " + event.getTarget() + " to add " + event.getAmount() + "?");
@@ -243,6 +247,7 @@ public class VaultListener extends EconomyAdapter {
                 ChestShop.getBukkitLogger().log(Level.WARNING, "Could not add money to account of " + lastSeen.getUniqueId() + "/" + lastSeen.getName() + "." +
                         "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                         "If you are sure it's not this issue then please report the following error.", e);
+                markFailed(event);
             }
         } else {
             ChestShop.getBukkitLogger().log(Level.WARNING, "The server could not get the OfflinePlayer with the UUID " + event.getTarget() + " to subtract " + event.getAmount() + "?");
@@ -293,6 +298,7 @@ public class VaultListener extends EconomyAdapter {
             ChestShop.getBukkitLogger().log(Level.WARNING, "Could not check if account of " + lastSeen.getUniqueId() + "/" + lastSeen.getName() + " can hold " + event.getAmount() + "." +
                     "This is probably due to https://github.com/MilkBowl/Vault/issues/746 and has to be fixed in either Vault directly or your economy plugin." +
                     "If you are sure it's not then please report this error to the devs of ChestShop.", e);
+            markFailed(event);
         }
     }
 }
@@ -4,7 +4,7 @@ import com.Acrobot.Breeze.Utils.PriceUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
 import com.Acrobot.ChestShop.Events.PreTransactionEvent;
-import com.Acrobot.ChestShop.Permission;
+import com.Acrobot.ChestShop.PermissionSnapshot;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -15,8 +15,6 @@ import org.bukkit.event.Listener;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.logging.Level;
 
 import static com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType.BUY;
@@ -27,7 +25,6 @@ import static com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType.BUY;
 public class DiscountModule implements Listener {
     private static final String DISCOUNT_MESSAGE = "Applied a discount of %1$f percent for a resulting price of %2$.2f";
     private YamlConfiguration config;
-    private Set<String> groupList = new HashSet<String>();
 
     public DiscountModule() {
         load();
@@ -48,7 +45,7 @@ public class DiscountModule implements Listener {
             ChestShop.getBukkitLogger().log(Level.SEVERE, "Error while loading discounts config", e);
         }
 
-        groupList = config.getKeys(false);
+        PermissionSnapshot.setDiscountGroups(config.getKeys(false));
     }
 
     @EventHandler
@@ -68,14 +65,13 @@ public class DiscountModule implements Listener {
             return;
         }
 
-        for (String group : groupList) {
-            if (Permission.has(client, Permission.DISCOUNT + group)) {
-                double discount = config.getDouble(group);
-                BigDecimal discountedPrice = event.getExactPrice().multiply(BigDecimal.valueOf(discount / 100));
-                event.setExactPrice(discountedPrice);
-                ChestShop.getBukkitLogger().info(String.format(DISCOUNT_MESSAGE, discount, discountedPrice));
-                return;
-            }
+        PermissionSnapshot snapshot = PermissionSnapshot.get(client);
+        String group = snapshot != null ? snapshot.getDiscountGroup() : PermissionSnapshot.findDiscountGroup(client);
+        if (group != null) {
+            double discount = config.getDouble(group);
+            BigDecimal discountedPrice = event.getExactPrice().multiply(BigDecimal.valueOf(discount / 100));
+            event.setExactPrice(discountedPrice);
+            ChestShop.getBukkitLogger().info(String.format(DISCOUNT_MESSAGE, discount, discountedPrice));
         }
     }
 }
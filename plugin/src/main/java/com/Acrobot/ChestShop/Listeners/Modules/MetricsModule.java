@@ -1,92 +1,470 @@
 package com.Acrobot.ChestShop.Listeners.Modules;
 
+import com.Acrobot.Breeze.Collection.LatencyHistogram;
+import com.Acrobot.Breeze.Collection.RollingCounter;
+import com.Acrobot.Breeze.Collection.SimpleCache;
+import com.Acrobot.Breeze.Utils.InventoryUtil;
 import com.Acrobot.Breeze.Utils.NumberUtil;
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
+import com.Acrobot.ChestShop.Events.PreTransactionEvent;
+import com.Acrobot.ChestShop.Events.PreTransactionEvent.TransactionOutcome;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
+import com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyMonitor;
+import com.Acrobot.ChestShop.Listeners.Player.ShopInteractionLimiter;
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.UUIDs.NameManager;
+import com.Acrobot.ChestShop.Utils.WorkScheduler;
+import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
+ * Counts transactions, traded items and money over sliding windows and exports
+ * them in the Prometheus text format.
+ *
  * @author Acrobot
  */
 public class MetricsModule implements Listener {
 
-    private static final long RESET_MINUTES = 30;
+    /**
+     * The windows the counters can be queried for, by their name
+     */
+    public static final Map<String, Long> WINDOWS;
+
+    static {
+        Map<String, Long> windows = new LinkedHashMap<>();
+        windows.put("1m", TimeUnit.MINUTES.toNanos(1));
+        windows.put("5m", TimeUnit.MINUTES.toNanos(5));
+        windows.put("1h", TimeUnit.HOURS.toNanos(1));
+        WINDOWS = Collections.unmodifiableMap(windows);
+    }
+
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SLICES = 360;
 
-    private static long lastReset = System.currentTimeMillis();
+    /** bStats submits its charts every 30 minutes */
+    private static final long STATS_WINDOW = TimeUnit.MINUTES.toNanos(30);
 
-    private static int buyTransactionsLast = -1;
-    private static int sellTransactionsLast = -1;
-    private static long buyTransactionsCurrent = 0;
-    private static long sellTransactionsCurrent = 0;
+    /** Money is counted in ten-thousandths */
+    private static final int MONEY_SCALE = 4;
 
-    private static int boughtItemsLast = -1;
-    private static int soldItemsLast = -1;
-    private static long boughtItemsCurrent = 0;
-    private static long soldItemsCurrent = 0;
+    /** Items and worlds beyond this many are counted as "other" to keep the export small */
+    private static final int MAX_BREAKDOWN_KEYS = 1000;
+    private static final String OTHER_KEY = "other";
+
+    /**
+     * There can be a breakdown for each of up to {@link #MAX_BREAKDOWN_KEYS} items and worlds,
+     * so their slices are longer to keep them small. The 1m window only covers 30 to 60 seconds.
+     */
+    private static final long BREAKDOWN_SLICE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int BREAKDOWN_SLICES = 120;
+
+    /**
+     * Transactions and traded items of one item or world, since the server started and over sliding windows
+     */
+    public static class Breakdown {
+        private final RollingCounter transactions = new RollingCounter(BREAKDOWN_SLICE_NANOS, BREAKDOWN_SLICES, System::nanoTime);
+        private final RollingCounter items = new RollingCounter(BREAKDOWN_SLICE_NANOS, BREAKDOWN_SLICES, System::nanoTime);
+
+        public long getTransactions() {
+            return transactions.getTotal();
+        }
+
+        /**
+         * @param windowNanos The length of the window in nanoseconds
+         * @return The amount of transactions in the window
+         */
+        public long getTransactions(long windowNanos) {
+            return transactions.getSum(windowNanos);
+        }
+
+        public long getItems() {
+            return items.getTotal();
+        }
+
+        /**
+         * @param windowNanos The length of the window in nanoseconds
+         * @return The amount of items traded in the window
+         */
+        public long getItems(long windowNanos) {
+            return items.getSum(windowNanos);
+        }
+
+        private void record(int amount) {
+            transactions.increment();
+            items.add(amount);
+        }
+    }
+
+    private static final Map<TransactionType, RollingCounter> transactions = createCounters(TransactionType.class);
+    private static final Map<TransactionType, RollingCounter> items = createCounters(TransactionType.class);
+    private static final Map<TransactionType, RollingCounter> money = createCounters(TransactionType.class);
+    private static final Map<TransactionOutcome, RollingCounter> outcomes = createCounters(TransactionOutcome.class);
+    private static final Map<ShopInteractionLimiter.Limit, RollingCounter> rateLimits = createCounters(ShopInteractionLimiter.Limit.class);
+
+    private static final Map<String, Breakdown> itemBreakdown = new ConcurrentHashMap<>();
+    private static final Map<String, Breakdown> worldBreakdown = new ConcurrentHashMap<>();
+
+    private static BukkitTask exportTask = null;
+
+    private static <E extends Enum<E>> Map<E, RollingCounter> createCounters(Class<E> type) {
+        Map<E, RollingCounter> counters = new EnumMap<>(type);
+        for (E constant : type.getEnumConstants()) {
+            counters.put(constant, new RollingCounter(SLICE_NANOS, SLICES, System::nanoTime));
+        }
+        return counters;
+    }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public static void onTransaction(final TransactionEvent event) {
-        checkReset();
-        switch (event.getTransactionType()) {
-            case BUY:
-                buyTransactionsCurrent++;
-                for (ItemStack itemStack : event.getStock()) {
-                    boughtItemsCurrent += itemStack.getAmount();
-                }
-                break;
-            case SELL:
-                sellTransactionsCurrent++;
-                for (ItemStack itemStack : event.getStock()) {
-                    soldItemsCurrent += itemStack.getAmount();
-                }
-                break;
+        TransactionType type = event.getTransactionType();
+        int amount = InventoryUtil.countItems(event.getStock());
+
+        transactions.get(type).increment();
+        items.get(type).add(amount);
+        money.get(type).add(event.getExactPrice().movePointRight(MONEY_SCALE).longValue());
+
+        getBreakdown(itemBreakdown, ChestShopSign.getItem(event.getSign())).record(amount);
+        getBreakdown(worldBreakdown, event.getSign().getWorld().getName()).record(amount);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public static void onPreTransaction(final PreTransactionEvent event) {
+        outcomes.get(event.getTransactionOutcome()).increment();
+    }
+
+    /**
+     * Count a click on a shop sign which was refused because of too many clicks.
+     * These clicks are refused before a {@link PreTransactionEvent} is called, they
+     * are counted as {@link TransactionOutcome#SPAM_CLICKING_PROTECTION} too.
+     *
+     * @param limit The limit which refused the click
+     */
+    public static void recordRateLimit(ShopInteractionLimiter.Limit limit) {
+        rateLimits.get(limit).increment();
+        outcomes.get(TransactionOutcome.SPAM_CLICKING_PROTECTION).increment();
+    }
+
+    @EventHandler
+    public static void onReload(ChestShopReloadEvent event) {
+        scheduleExport();
+    }
+
+    private static Breakdown getBreakdown(Map<String, Breakdown> breakdowns, String key) {
+        Breakdown breakdown = breakdowns.get(key);
+        if (breakdown == null) {
+            if (breakdowns.size() >= MAX_BREAKDOWN_KEYS) {
+                key = OTHER_KEY;
+            }
+            breakdown = breakdowns.computeIfAbsent(key, k -> new Breakdown());
         }
+        return breakdown;
+    }
+
+    /**
+     * @param type        The type of the transactions
+     * @param windowNanos The length of the window in nanoseconds
+     * @return The amount of transactions in the window
+     */
+    public static long getTransactions(TransactionType type, long windowNanos) {
+        return transactions.get(type).getSum(windowNanos);
+    }
+
+    /**
+     * @param type        The type of the transactions
+     * @param windowNanos The length of the window in nanoseconds
+     * @return The amount of items traded in the window
+     */
+    public static long getItems(TransactionType type, long windowNanos) {
+        return items.get(type).getSum(windowNanos);
+    }
+
+    /**
+     * @param type        The type of the transactions
+     * @param windowNanos The length of the window in nanoseconds
+     * @return The money paid in the window
+     */
+    public static BigDecimal getMoney(TransactionType type, long windowNanos) {
+        return BigDecimal.valueOf(money.get(type).getSum(windowNanos), MONEY_SCALE);
+    }
+
+    /**
+     * @param windowNanos The length of the window in nanoseconds
+     * @return How often each outcome happened in the window, outcomes which didn't happen are left out
+     */
+    public static Map<TransactionOutcome, Long> getOutcomes(long windowNanos) {
+        Map<TransactionOutcome, Long> counts = new EnumMap<>(TransactionOutcome.class);
+        for (Map.Entry<TransactionOutcome, RollingCounter> entry : outcomes.entrySet()) {
+            long count = entry.getValue().getSum(windowNanos);
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param limit       The limit
+     * @param windowNanos The length of the window in nanoseconds
+     * @return How many clicks the limit refused in the window
+     */
+    public static long getRateLimited(ShopInteractionLimiter.Limit limit, long windowNanos) {
+        return rateLimits.get(limit).getSum(windowNanos);
+    }
+
+    /**
+     * @return The transactions of each item, by the item code on the shop sign
+     */
+    public static Map<String, Breakdown> getItemBreakdown() {
+        return Collections.unmodifiableMap(new TreeMap<>(itemBreakdown));
+    }
+
+    /**
+     * @return The transactions in each world
+     */
+    public static Map<String, Breakdown> getWorldBreakdown() {
+        return Collections.unmodifiableMap(new TreeMap<>(worldBreakdown));
     }
 
     public static int getBuyTransactions() {
-        checkReset();
-        return buyTransactionsLast > -1 ? buyTransactionsLast : NumberUtil.toInt(buyTransactionsCurrent);
+        return NumberUtil.toInt(getTransactions(TransactionType.BUY, STATS_WINDOW));
     }
 
     public static int getSellTransactions() {
-        checkReset();
-        return sellTransactionsLast > -1 ? sellTransactionsLast : NumberUtil.toInt(sellTransactionsCurrent);
+        return NumberUtil.toInt(getTransactions(TransactionType.SELL, STATS_WINDOW));
     }
 
     public static int getTotalTransactions() {
-        checkReset();
         return getBuyTransactions() + getSellTransactions();
     }
 
     public static int getBoughtItemsCount() {
-        checkReset();
-        return boughtItemsLast > -1 ? boughtItemsLast : NumberUtil.toInt(boughtItemsCurrent);
+        return NumberUtil.toInt(getItems(TransactionType.BUY, STATS_WINDOW));
     }
 
     public static int getSoldItemsCount() {
-        checkReset();
-        return soldItemsLast > -1 ? soldItemsLast : NumberUtil.toInt(soldItemsCurrent);
+        return NumberUtil.toInt(getItems(TransactionType.SELL, STATS_WINDOW));
     }
 
     public static int getTotalItemsCount() {
-        checkReset();
         return getBoughtItemsCount() + getSoldItemsCount();
     }
 
-    private static void checkReset() {
-        if (lastReset + RESET_MINUTES * 60 * 1000 < System.currentTimeMillis()) {
-            lastReset = System.currentTimeMillis();
-            buyTransactionsLast = NumberUtil.toInt(buyTransactionsCurrent);
-            buyTransactionsCurrent = 0;
-            sellTransactionsLast = NumberUtil.toInt(sellTransactionsCurrent);
-            sellTransactionsCurrent = 0;
-            
-            boughtItemsLast = NumberUtil.toInt(boughtItemsCurrent);
-            boughtItemsCurrent = 0;
-            soldItemsLast = NumberUtil.toInt(soldItemsCurrent);
-            soldItemsCurrent = 0;
+    /**
+     * (Re)start writing the metrics file in the configured interval
+     */
+    public static synchronized void scheduleExport() {
+        if (exportTask != null) {
+            exportTask.cancel();
+            exportTask = null;
         }
+        if (Properties.METRICS_EXPORT_INTERVAL <= 0) {
+            return;
+        }
+        File file = new File(ChestShop.getFolder(), Properties.METRICS_EXPORT_FILE);
+        long ticks = Properties.METRICS_EXPORT_INTERVAL * 20L;
+        exportTask = Bukkit.getScheduler().runTaskTimerAsynchronously(ChestShop.getPlugin(), () -> export(file), ticks, ticks);
+    }
+
+    private static void export(File file) {
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                write(writer);
+            }
+            // Move it in one go so that a scraper never reads a half written file
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to write the metrics to " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format
+     *
+     * @param writer The writer to write to
+     * @throws IOException if the writer failed
+     */
+    public static void write(Writer writer) throws IOException {
+        header(writer, "chestshop_transactions_total", "counter", "Shop transactions");
+        for (TransactionType type : TransactionType.values()) {
+            sample(writer, "chestshop_transactions_total", transactions.get(type).getTotal(), "type", type);
+        }
+        header(writer, "chestshop_items_total", "counter", "Items traded at shops");
+        for (TransactionType type : TransactionType.values()) {
+            sample(writer, "chestshop_items_total", items.get(type).getTotal(), "type", type);
+        }
+        header(writer, "chestshop_money_total", "counter", "Money paid at shops");
+        for (TransactionType type : TransactionType.values()) {
+            sample(writer, "chestshop_money_total", BigDecimal.valueOf(money.get(type).getTotal(), MONEY_SCALE), "type", type);
+        }
+        header(writer, "chestshop_transaction_outcomes_total", "counter", "Outcomes of attempted transactions");
+        for (TransactionOutcome outcome : TransactionOutcome.values()) {
+            sample(writer, "chestshop_transaction_outcomes_total", outcomes.get(outcome).getTotal(), "outcome", outcome);
+        }
+
+        header(writer, "chestshop_rate_limited_total", "counter", "Clicks on shop signs refused because of too many clicks");
+        for (ShopInteractionLimiter.Limit limit : ShopInteractionLimiter.Limit.values()) {
+            sample(writer, "chestshop_rate_limited_total", rateLimits.get(limit).getTotal(), "limit", limit);
+        }
+
+        header(writer, "chestshop_window_transactions", "gauge", "Shop transactions in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (TransactionType type : TransactionType.values()) {
+                sample(writer, "chestshop_window_transactions", getTransactions(type, window.getValue()), "type", type, "window", window.getKey());
+            }
+        }
+        header(writer, "chestshop_window_items", "gauge", "Items traded at shops in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (TransactionType type : TransactionType.values()) {
+                sample(writer, "chestshop_window_items", getItems(type, window.getValue()), "type", type, "window", window.getKey());
+            }
+        }
+        header(writer, "chestshop_window_money", "gauge", "Money paid at shops in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (TransactionType type : TransactionType.values()) {
+                sample(writer, "chestshop_window_money", getMoney(type, window.getValue()), "type", type, "window", window.getKey());
+            }
+        }
+        header(writer, "chestshop_window_transaction_outcomes", "gauge", "Outcomes of attempted transactions in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (Map.Entry<TransactionOutcome, Long> outcome : getOutcomes(window.getValue()).entrySet()) {
+                sample(writer, "chestshop_window_transaction_outcomes", outcome.getValue(), "outcome", outcome.getKey(), "window", window.getKey());
+            }
+        }
+
+        header(writer, "chestshop_window_rate_limited", "gauge", "Clicks on shop signs refused because of too many clicks in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (ShopInteractionLimiter.Limit limit : ShopInteractionLimiter.Limit.values()) {
+                sample(writer, "chestshop_window_rate_limited", getRateLimited(limit, window.getValue()), "limit", limit, "window", window.getKey());
+            }
+        }
+
+        writeBreakdown(writer, "item", "the item code on the shop sign", getItemBreakdown());
+        writeBreakdown(writer, "world", "world", getWorldBreakdown());
+
+        Map<String, SimpleCache<?, ?>> caches = NameManager.getCaches();
+        header(writer, "chestshop_cache_hits_total", "counter", "Lookups which were answered by a cache");
+        for (Map.Entry<String, SimpleCache<?, ?>> cache : caches.entrySet()) {
+            sample(writer, "chestshop_cache_hits_total", cache.getValue().getHits(), "cache", cache.getKey());
+        }
+        header(writer, "chestshop_cache_misses_total", "counter", "Lookups which had to be loaded into a cache");
+        for (Map.Entry<String, SimpleCache<?, ?>> cache : caches.entrySet()) {
+            sample(writer, "chestshop_cache_misses_total", cache.getValue().getMisses(), "cache", cache.getKey());
+        }
+
+        WorkScheduler workScheduler = ChestShop.getWorkScheduler();
+        if (workScheduler != null) {
+            header(writer, "chestshop_deferred_work_pending", "gauge", "Work after transactions which waits for one of the next ticks");
+            sample(writer, "chestshop_deferred_work_pending", workScheduler.getPending());
+            header(writer, "chestshop_deferred_work_executed_total", "counter", "Work after transactions which was run in a later tick");
+            sample(writer, "chestshop_deferred_work_executed_total", workScheduler.getExecuted());
+            header(writer, "chestshop_deferred_work_coalesced_total", "counter", "Work after transactions which replaced the same waiting work");
+            sample(writer, "chestshop_deferred_work_coalesced_total", workScheduler.getCoalesced());
+        }
+
+        Map<String, EconomyMonitor.Operation> operations = EconomyMonitor.getOperations();
+        header(writer, "chestshop_economy_latency_seconds", "summary", "Response time of the economy plugin");
+        for (Map.Entry<String, EconomyMonitor.Operation> operation : operations.entrySet()) {
+            LatencyHistogram latency = operation.getValue().getLatency();
+            for (double quantile : new double[]{0.5, 0.95, 0.99}) {
+                sample(writer, "chestshop_economy_latency_seconds", toSeconds(latency.getPercentileNanos(quantile * 100)),
+                        "operation", operation.getKey(), "quantile", quantile);
+            }
+            sample(writer, "chestshop_economy_latency_seconds_count", latency.getCount(), "operation", operation.getKey());
+        }
+        header(writer, "chestshop_economy_errors_total", "counter", "Calls to the economy plugin which failed");
+        for (Map.Entry<String, EconomyMonitor.Operation> operation : operations.entrySet()) {
+            sample(writer, "chestshop_economy_errors_total", operation.getValue().getErrors(), "operation", operation.getKey());
+        }
+    }
+
+    private static void writeBreakdown(Writer writer, String label, String description, Map<String, Breakdown> breakdown) throws IOException {
+        String transactionsName = "chestshop_" + label + "_transactions_total";
+        header(writer, transactionsName, "counter", "Shop transactions by " + description);
+        for (Map.Entry<String, Breakdown> entry : breakdown.entrySet()) {
+            sample(writer, transactionsName, entry.getValue().getTransactions(), label, entry.getKey());
+        }
+        String itemsName = "chestshop_" + label + "_items_total";
+        header(writer, itemsName, "counter", "Items traded at shops by " + description);
+        for (Map.Entry<String, Breakdown> entry : breakdown.entrySet()) {
+            sample(writer, itemsName, entry.getValue().getItems(), label, entry.getKey());
+        }
+
+        // Only items and worlds which were traded in a window are written, to keep the export small
+        String windowTransactionsName = "chestshop_window_" + label + "_transactions";
+        header(writer, windowTransactionsName, "gauge", "Shop transactions by " + description + " in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (Map.Entry<String, Breakdown> entry : breakdown.entrySet()) {
+                long count = entry.getValue().getTransactions(window.getValue());
+                if (count > 0) {
+                    sample(writer, windowTransactionsName, count, label, entry.getKey(), "window", window.getKey());
+                }
+            }
+        }
+        String windowItemsName = "chestshop_window_" + label + "_items";
+        header(writer, windowItemsName, "gauge", "Items traded at shops by " + description + " in the last window");
+        for (Map.Entry<String, Long> window : WINDOWS.entrySet()) {
+            for (Map.Entry<String, Breakdown> entry : breakdown.entrySet()) {
+                long count = entry.getValue().getItems(window.getValue());
+                if (count > 0) {
+                    sample(writer, windowItemsName, count, label, entry.getKey(), "window", window.getKey());
+                }
+            }
+        }
+    }
+
+    private static void header(Writer writer, String name, String type, String help) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer writer, String name, Object value, Object... labels) throws IOException {
+        writer.write(name);
+        if (labels.length > 0) {
+            writer.write('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(labels[i] + "=\"" + escape(labelValue(labels[i + 1])) + "\"");
+            }
+            writer.write('}');
+        }
+        writer.write(" " + (value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value)) + "\n");
+    }
+
+    private static String labelValue(Object value) {
+        return value instanceof Enum ? ((Enum<?>) value).name().toLowerCase(Locale.ROOT) : String.valueOf(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String toSeconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
     }
 }
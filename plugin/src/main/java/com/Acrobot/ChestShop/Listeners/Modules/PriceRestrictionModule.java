@@ -9,7 +9,6 @@ import com.Acrobot.ChestShop.Events.PreShopCreationEvent;
 import com.Acrobot.ChestShop.Permission;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.Acrobot.ChestShop.Utils.ItemUtil;
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -153,7 +152,7 @@ public class PriceRestrictionModule implements Listener {
     @EventHandler
     public void onPreShopCreation(PreShopCreationEvent event) {
         ItemParseEvent parseEvent = new ItemParseEvent(ChestShopSign.getItem(event.getSignLines()));
-        Bukkit.getPluginManager().callEvent(parseEvent);
+        ChestShop.callEvent(parseEvent);
         ItemStack itemStack = parseEvent.getItem();
         Player player = event.getPlayer();
 
@@ -9,8 +9,9 @@ import com.Acrobot.ChestShop.Events.ItemParseEvent;
 import com.Acrobot.ChestShop.Events.PreShopCreationEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
+import com.Acrobot.ChestShop.Utils.WorkScheduler;
 import com.Acrobot.ChestShop.Utils.uBlock;
-import org.bukkit.Bukkit;
 import org.bukkit.block.Block;
 import org.bukkit.block.Container;
 import org.bukkit.block.Sign;
@@ -121,9 +122,14 @@ public class StockCounterModule implements Listener {
             return;
         }
 
-        for (Sign shopSign : uBlock.findConnectedShopSigns( getHolder(event.getOwnerInventory(), false))) {
-            updateCounterOnQuantityLine(shopSign, event.getOwnerInventory());
-        }
+        long time = TransactionProfiler.start();
+        Inventory inventory = event.getOwnerInventory();
+        ChestShop.defer(WorkScheduler.key("stock counter", inventory), TransactionProfiler.deferred(TransactionProfiler.Stage.STOCK_COUNTER, () -> {
+            for (Sign shopSign : uBlock.findConnectedShopSigns(getHolder(inventory, false))) {
+                updateCounterOnQuantityLine(shopSign, inventory);
+            }
+        }));
+        TransactionProfiler.stop(TransactionProfiler.Stage.DEFERRED, time);
     }
 
     /**
@@ -190,7 +196,7 @@ public class StockCounterModule implements Listener {
 
     public static ItemStack determineItemTradedByShop(String material) {
         ItemParseEvent parseEvent = new ItemParseEvent(material);
-        Bukkit.getPluginManager().callEvent(parseEvent);
+        ChestShop.callEvent(parseEvent);
         return parseEvent.getItem();
     }
 }
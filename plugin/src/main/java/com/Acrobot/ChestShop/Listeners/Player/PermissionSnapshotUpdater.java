@@ -0,0 +1,44 @@
+package com.Acrobot.ChestShop.Listeners.Player;
+
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
+import com.Acrobot.ChestShop.PermissionSnapshot;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Drops permission snapshots whenever a player's permissions might have changed
+ */
+public class PermissionSnapshotUpdater implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public static void onJoin(PlayerJoinEvent event) {
+        PermissionSnapshot.invalidate(event.getPlayer());
+        PermissionSnapshot.get(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public static void onQuit(PlayerQuitEvent event) {
+        PermissionSnapshot.invalidate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public static void onWorldChange(PlayerChangedWorldEvent event) {
+        PermissionSnapshot.invalidate(event.getPlayer());
+    }
+
+    // Sent again when a player is (de)opped and by permission plugins after recalculating permissions
+    @EventHandler(priority = EventPriority.MONITOR)
+    public static void onCommandsSent(PlayerCommandSendEvent event) {
+        PermissionSnapshot.invalidate(event.getPlayer());
+    }
+
+    @EventHandler
+    public static void onReload(ChestShopReloadEvent event) {
+        PermissionSnapshot.invalidateAll();
+    }
+}
@@ -7,37 +7,42 @@ import com.Acrobot.ChestShop.Configuration.Messages;
 import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Containers.AdminInventory;
 import com.Acrobot.ChestShop.Database.Account;
-import com.Acrobot.ChestShop.Events.AccountQueryEvent;
+import com.Acrobot.ChestShop.Economy.Money;
 import com.Acrobot.ChestShop.Events.Economy.AccountCheckEvent;
 import com.Acrobot.ChestShop.Events.ItemParseEvent;
 import com.Acrobot.ChestShop.Events.PreTransactionEvent;
+import com.Acrobot.ChestShop.Events.ShopContext;
 import com.Acrobot.ChestShop.Events.ShopInfoEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
+import com.Acrobot.ChestShop.Jfr.ShopTransaction;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyMonitor;
 import com.Acrobot.ChestShop.Permission;
 import com.Acrobot.ChestShop.Security;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.Acrobot.ChestShop.Utils.ItemUtil;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler.Stage;
 import com.Acrobot.ChestShop.Utils.uBlock;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.GameMode;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.Container;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.SignChangeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.Arrays;
 import java.util.logging.Level;
 
 import static com.Acrobot.Breeze.Utils.ImplementationAdapter.getState;
@@ -55,10 +60,20 @@ import static org.bukkit.event.block.Action.RIGHT_CLICK_BLOCK;
  */
 public class PlayerInteract implements Listener {
 
+    /**
+     * A click on a shop sign which is only fired to let protection and region plugins deny a trade
+     * that doesn't start with a click, it isn't handled by ChestShop itself
+     */
+    private static class TradeCheckEvent extends PlayerInteractEvent {
+        private TradeCheckEvent(Player player, Action action, Block sign) {
+            super(player, action, player.getInventory().getItemInMainHand(), sign, BlockFace.SELF, EquipmentSlot.HAND);
+        }
+    }
+
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public static void onInteract(PlayerInteractEvent event) {
         Block block = event.getClickedBlock();
-        if (block == null)
+        if (block == null || event instanceof TradeCheckEvent)
             return;
 
         Action action = event.getAction();
@@ -90,6 +105,17 @@ public class PlayerInteract implements Listener {
             return;
         }
 
+        // Limit before any account or protection work is done. Owners are only told apart by
+        // the name on the sign here, others who can access the shop are limited like customers.
+        if (!player.getName().equalsIgnoreCase(ChestShopSign.getOwner(sign))
+                && ShopInteractionLimiter.tryInteract(player, block) != null) {
+            if (action == RIGHT_CLICK_BLOCK) {
+                // don't allow editing
+                event.setCancelled(true);
+            }
+            return;
+        }
+
         if (Properties.ALLOW_AUTO_ITEM_FILL && ChatColor.stripColor(ChestShopSign.getItem(sign)).equals(AUTOFILL_CODE)) {
             if (ChestShopSign.hasPermission(player, OTHER_NAME_CREATE, sign)) {
                 ItemStack item = player.getInventory().getItemInMainHand();
@@ -124,8 +150,9 @@ public class PlayerInteract implements Listener {
             return;
         }
 
-        boolean notAllowedToTrade = ChestShopSign.isOwner(player, sign)
-                || (Properties.IGNORE_ACCESS_PERMS && ChestShopSign.canAccess(player, sign) && !AccessToggle.isIgnoring(player));
+        ShopContext context = ShopContext.of(player, sign);
+        boolean notAllowedToTrade = context.isOwner()
+                || (Properties.IGNORE_ACCESS_PERMS && context.canAccess() && !AccessToggle.isIgnoring(player));
         if (notAllowedToTrade && player.getInventory().getItemInMainHand().getType().name().contains("SIGN") && action == RIGHT_CLICK_BLOCK) {
             // Allow editing of sign (if supported)
             return;
@@ -139,7 +166,7 @@ public class PlayerInteract implements Listener {
             }
         }
 
-        if (notAllowedToTrade && ChestShopSign.canAccess(player, sign) && !ChestShopSign.isAdminShop(sign)) {
+        if (notAllowedToTrade && context.canAccess() && !context.isAdminShop()) {
             if (Properties.ALLOW_SIGN_CHEST_OPEN && !(Properties.IGNORE_CREATIVE_MODE && player.getGameMode() == GameMode.CREATIVE)) {
                 if (player.isSneaking() || player.isInsideVehicle()
                         || (Properties.ALLOW_LEFT_CLICK_DESTROYING && action == LEFT_CLICK_BLOCK)) {
@@ -160,61 +187,140 @@ public class PlayerInteract implements Listener {
 
         if (action == RIGHT_CLICK_BLOCK) {
             event.setCancelled(true);
-        } else if (action == LEFT_CLICK_BLOCK && !Properties.TURN_OFF_SIGN_PROTECTION && !ChestShopSign.canAccess(player, sign)) {
+        } else if (action == LEFT_CLICK_BLOCK && !Properties.TURN_OFF_SIGN_PROTECTION && !context.canAccess()) {
             event.setCancelled(true);
         }
 
-        if (Properties.CHECK_ACCESS_FOR_SHOP_USE && !Security.canAccess(player, block, true)) {
+        Action buy = Properties.REVERSE_BUTTONS ? LEFT_CLICK_BLOCK : RIGHT_CLICK_BLOCK;
+        trade(context, block, action == buy ? BUY : SELL, 0);
+    }
+
+    /**
+     * Buy or sell multiple times the amount on a shop sign at once. All lots are traded
+     * in a single transaction, so they are paid, moved, logged and announced only once.
+     *
+     * @param player The player who trades
+     * @param sign   The shop sign
+     * @param type   Whether the player buys or sells
+     * @param lots   How many times the amount on the sign to trade, capped so that no more than
+     *               {@link Properties#MAX_SHOP_AMOUNT} items and no more than the player has room
+     *               for or owns are traded
+     */
+    public static void bulkTrade(Player player, Sign sign, TransactionType type, int lots) {
+        Block block = sign.getBlock();
+        if (ShopInteractionLimiter.tryInteract(player, block) != null) {
+            Messages.TRADE_RATE_LIMITED.sendWithPrefix(player);
+            return;
+        }
+
+        // Let region plugins deny the trade just like they would deny the click on the sign
+        Action buy = Properties.REVERSE_BUTTONS ? LEFT_CLICK_BLOCK : RIGHT_CLICK_BLOCK;
+        Action click = type == BUY ? buy : (buy == LEFT_CLICK_BLOCK ? RIGHT_CLICK_BLOCK : LEFT_CLICK_BLOCK);
+        if (ChestShop.callEvent(new TradeCheckEvent(player, click, block)).useInteractedBlock() == Event.Result.DENY) {
             Messages.TRADE_DENIED.sendWithPrefix(player);
             return;
         }
 
+        ShopContext context = ShopContext.of(player, sign);
+        boolean notAllowedToTrade = context.isOwner()
+                || (Properties.IGNORE_ACCESS_PERMS && context.canAccess() && !AccessToggle.isIgnoring(player));
+        if (notAllowedToTrade && context.canAccess() && !context.isAdminShop()) {
+            Messages.TRADE_DENIED_ACCESS_PERMS.sendWithPrefix(player);
+            return;
+        }
+
+        trade(context, block, type, Math.max(lots, 1));
+    }
+
+    private static void trade(ShopContext context, Block block, TransactionType type, int lots) {
+        TransactionProfiler.begin();
+        ShopTransaction recording = ShopTransaction.start();
+        try {
+            trade(context, block, type, lots, recording);
+        } finally {
+            // Trades which ended early aren't recorded, but mustn't stay active either
+            TransactionProfiler.abort();
+        }
+    }
+
+    private static void trade(ShopContext context, Block block, TransactionType type, int lots, ShopTransaction recording) {
+        Player player = context.getPlayer();
+        Sign sign = context.getSign();
+        long time;
+
+        if (Properties.CHECK_ACCESS_FOR_SHOP_USE) {
+            time = TransactionProfiler.start();
+            boolean canAccess = Security.canAccess(player, block, true);
+            TransactionProfiler.stop(Stage.PROTECTION, time);
+            if (!canAccess) {
+                Messages.TRADE_DENIED.sendWithPrefix(player);
+                return;
+            }
+        }
+
+        if (!EconomyMonitor.isAvailable()) {
+            Messages.ECONOMY_UNAVAILABLE.sendWithPrefix(player);
+            return;
+        }
+
         //Bukkit.getLogger().info("ChestShop - DEBUG - "+block.getWorld().getName()+": "+block.getLocation().getBlockX()+", "+block.getLocation().getBlockY()+", "+block.getLocation().getBlockZ());
-        PreTransactionEvent pEvent = preparePreTransactionEvent(sign, player, action);
+        time = TransactionProfiler.start();
+        PreTransactionEvent pEvent = preparePreTransactionEvent(context, type, lots);
+        TransactionProfiler.stop(Stage.SIGN_PARSE, time);
         if (pEvent == null)
             return;
 
-        Bukkit.getPluginManager().callEvent(pEvent);
-        if (pEvent.isCancelled())
+        time = TransactionProfiler.start();
+        ChestShop.callEvent(pEvent);
+        TransactionProfiler.stop(Stage.PRE_TRANSACTION, time);
+        if (pEvent.isCancelled()) {
+            TransactionProfiler.finish(sign);
+            recording.finish(sign, pEvent);
             return;
+        }
 
         TransactionEvent tEvent = new TransactionEvent(pEvent, sign);
-        Bukkit.getPluginManager().callEvent(tEvent);
+        time = TransactionProfiler.start();
+        ChestShop.callEvent(tEvent);
+        TransactionProfiler.stop(Stage.OTHER_LISTENERS, time);
+        TransactionProfiler.finish(sign);
+        recording.finish(sign, pEvent);
     }
 
-    private static PreTransactionEvent preparePreTransactionEvent(Sign sign, Player player, Action action) {
-        String name = ChestShopSign.getOwner(sign);
+    private static PreTransactionEvent preparePreTransactionEvent(ShopContext context, TransactionType transactionType, int lots) {
+        Sign sign = context.getSign();
+        Player player = context.getPlayer();
         String prices = ChestShopSign.getPrice(sign);
         String material = ChestShopSign.getItem(sign);
 
-        AccountQueryEvent accountQueryEvent = new AccountQueryEvent(name);
-        Bukkit.getPluginManager().callEvent(accountQueryEvent);
-        Account account = accountQueryEvent.getAccount();
+        Account account = context.getAccount();
         if (account == null) {
             Messages.PLAYER_NOT_FOUND.sendWithPrefix(player);
             return null;
         }
 
-        boolean adminShop = ChestShopSign.isAdminShop(sign);
+        boolean adminShop = context.isAdminShop();
 
         // check if player exists in economy
         if (!adminShop) {
+            long time = TransactionProfiler.start();
             AccountCheckEvent event = new AccountCheckEvent(account.getUuid(), player.getWorld());
-            Bukkit.getPluginManager().callEvent(event);
+            ChestShop.callEvent(event);
+            TransactionProfiler.stop(Stage.ACCOUNT_RESOLUTION, time);
             if(!event.hasAccount()) {
                 Messages.NO_ECONOMY_ACCOUNT.sendWithPrefix(player);
                 return null;
             }
         }
 
-        Action buy = Properties.REVERSE_BUTTONS ? LEFT_CLICK_BLOCK : RIGHT_CLICK_BLOCK;
-        BigDecimal price = (action == buy ? PriceUtil.getExactBuyPrice(prices) : PriceUtil.getExactSellPrice(prices));
+        boolean buy = transactionType == BUY;
+        BigDecimal price = (buy ? PriceUtil.getExactBuyPrice(prices) : PriceUtil.getExactSellPrice(prices));
 
         Container shopBlock = uBlock.findConnectedContainer(sign);
         Inventory ownerInventory = shopBlock != null ? shopBlock.getInventory() : null;
 
         ItemParseEvent parseEvent = new ItemParseEvent(material);
-        Bukkit.getPluginManager().callEvent(parseEvent);
+        ChestShop.callEvent(parseEvent);
         ItemStack item = parseEvent.getItem();
         if (item == null) {
             Messages.INVALID_SHOP_DETECTED.sendWithPrefix(player);
@@ -231,24 +337,36 @@ public class PlayerInteract implements Listener {
             return null;
         }
 
-        BigDecimal pricePerItem = price.divide(BigDecimal.valueOf(amount), MathContext.DECIMAL128);
-        if (Properties.SHIFT_SELLS_IN_STACKS && player.isSneaking() && !price.equals(PriceUtil.NO_PRICE) && isAllowedForShift(action == buy)) {
-            int newAmount = adminShop ? InventoryUtil.getMaxStackSize(item) : getStackAmount(item, ownerInventory, player, action);
+        if (lots > 0) {
+            if (price.equals(PriceUtil.NO_PRICE)) {
+                (buy ? Messages.NO_BUYING_HERE : Messages.NO_SELLING_HERE).sendWithPrefix(player);
+                return null;
+            }
+            // Only plan whole lots the player has room for or owns, at least one lot is always
+            // tried so that a player who can't trade any gets the usual error message
+            int available = buy
+                    ? InventoryUtil.getFreeSpace(item, player.getInventory())
+                    : InventoryUtil.getAmount(item, player.getInventory());
+            int plannedLots = Math.max(1, Math.min(lots, Math.min(Properties.MAX_SHOP_AMOUNT, available) / amount));
+            price = price.multiply(BigDecimal.valueOf(plannedLots));
+            amount *= plannedLots;
+        } else if (Properties.SHIFT_SELLS_IN_STACKS && player.isSneaking() && !price.equals(PriceUtil.NO_PRICE) && isAllowedForShift(buy)) {
+            int newAmount = adminShop ? InventoryUtil.getMaxStackSize(item) : getStackAmount(item, ownerInventory, player, buy);
             if (newAmount > 0) {
-                price = pricePerItem.multiply(BigDecimal.valueOf(newAmount)).setScale(Properties.PRICE_PRECISION, RoundingMode.HALF_UP);
+                price = Money.of(price).share(newAmount, amount).toBigDecimal();
                 amount = newAmount;
             }
-        } else if (Properties.SHIFT_SELLS_EVERYTHING && player.isSneaking() && !price.equals(PriceUtil.NO_PRICE) && isAllowedForShift(action == buy)) {
-            if (action != buy) {
+        } else if (Properties.SHIFT_SELLS_EVERYTHING && player.isSneaking() && !price.equals(PriceUtil.NO_PRICE) && isAllowedForShift(buy)) {
+            if (!buy) {
                 int newAmount = InventoryUtil.getAmount(item, player.getInventory());
                 if (newAmount > 0) {
-                    price = pricePerItem.multiply(BigDecimal.valueOf(newAmount)).setScale(Properties.PRICE_PRECISION, RoundingMode.HALF_UP);
+                    price = Money.of(price).share(newAmount, amount).toBigDecimal();
                     amount = newAmount;
                 }
             } else if (!adminShop && ownerInventory != null) {
                 int newAmount = InventoryUtil.getAmount(item, ownerInventory);
                 if (newAmount > 0) {
-                    price = pricePerItem.multiply(BigDecimal.valueOf(newAmount)).setScale(Properties.PRICE_PRECISION, RoundingMode.HALF_UP);
+                    price = Money.of(price).share(newAmount, amount).toBigDecimal();
                     amount = newAmount;
                 }
             }
@@ -263,11 +381,10 @@ public class PlayerInteract implements Listener {
         // - there is no container for the shop sign
         // - the config doesn't force unlimited admin shop stock
         if (adminShop && (ownerInventory == null || Properties.FORCE_UNLIMITED_ADMIN_SHOP)) {
-            ownerInventory = new AdminInventory(action == buy ? Arrays.stream(items).map(ItemStack::clone).toArray(ItemStack[]::new) : new ItemStack[0]);
+            ownerInventory = new AdminInventory(item);
         }
 
-        TransactionType transactionType = (action == buy ? BUY : SELL);
-        return new PreTransactionEvent(ownerInventory, player.getInventory(), items, price, player, account, sign, transactionType);
+        return new PreTransactionEvent(ownerInventory, player.getInventory(), items, price, player, account, sign, transactionType, context);
     }
 
     private static boolean isAllowedForShift(boolean buyTransaction) {
@@ -280,9 +397,8 @@ public class PlayerInteract implements Listener {
         return allowed.equalsIgnoreCase(buyTransaction ? "BUY" : "SELL");
     }
 
-    private static int getStackAmount(ItemStack item, Inventory inventory, Player player, Action action) {
-        Action buy = Properties.REVERSE_BUTTONS ? LEFT_CLICK_BLOCK : RIGHT_CLICK_BLOCK;
-        Inventory checkedInventory = (action == buy ? inventory : player.getInventory());
+    private static int getStackAmount(ItemStack item, Inventory inventory, Player player, boolean buy) {
+        Inventory checkedInventory = (buy ? inventory : player.getInventory());
 
         if (checkedInventory.containsAtLeast(item, InventoryUtil.getMaxStackSize(item))) {
             return InventoryUtil.getMaxStackSize(item);
@@ -0,0 +1,107 @@
+package com.Acrobot.ChestShop.Listeners.Player;
+
+import com.Acrobot.Breeze.Collection.TokenBuckets;
+import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
+import com.Acrobot.ChestShop.Listeners.Modules.MetricsModule;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often players can trade at shop signs and how often a single shop can be used,
+ * before any protection, economy or inventory work is done for the trade
+ */
+public class ShopInteractionLimiter implements Listener {
+
+    public enum Limit {
+        PLAYER,
+        SHOP
+    }
+
+    private static final class ShopKey {
+        private final UUID world;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        private ShopKey(Block block) {
+            this.world = block.getWorld().getUID();
+            this.x = block.getX();
+            this.y = block.getY();
+            this.z = block.getZ();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ShopKey)) {
+                return false;
+            }
+            ShopKey other = (ShopKey) o;
+            return x == other.x && y == other.y && z == other.z && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(world, x, y, z);
+        }
+    }
+
+    private static TokenBuckets<UUID> players = createPlayerBuckets();
+    private static TokenBuckets<ShopKey> shops = createShopBuckets();
+
+    private static TokenBuckets<UUID> createPlayerBuckets() {
+        return new TokenBuckets<>(Properties.SHOP_INTERACTION_BURST,
+                TimeUnit.MILLISECONDS.toNanos(Properties.SHOP_INTERACTION_INTERVAL), System::nanoTime);
+    }
+
+    private static TokenBuckets<ShopKey> createShopBuckets() {
+        return new TokenBuckets<>(Properties.SHOP_USE_BURST,
+                TimeUnit.MILLISECONDS.toNanos(Properties.SHOP_USE_INTERVAL), System::nanoTime);
+    }
+
+    /**
+     * Check whether a player may use a sign now and take a token from the player's and the sign's bucket.
+     * Both buckets are checked first, so a refused click doesn't use up a token of either.
+     *
+     * @param player The player who clicked
+     * @param sign   The block of the clicked sign
+     * @return The limit that was hit, or null if the player may use the sign
+     */
+    public static Limit tryInteract(Player player, Block sign) {
+        UUID uuid = player.getUniqueId();
+        ShopKey shop = new ShopKey(sign);
+        if (!players.canAcquire(uuid)) {
+            MetricsModule.recordRateLimit(Limit.PLAYER);
+            return Limit.PLAYER;
+        }
+        if (!shops.canAcquire(shop)) {
+            MetricsModule.recordRateLimit(Limit.SHOP);
+            return Limit.SHOP;
+        }
+        if (!players.tryAcquire(uuid)) {
+            MetricsModule.recordRateLimit(Limit.PLAYER);
+            return Limit.PLAYER;
+        }
+        // Only fails if another click took the shop's last token in the meantime
+        if (!shops.tryAcquire(shop)) {
+            MetricsModule.recordRateLimit(Limit.SHOP);
+            return Limit.SHOP;
+        }
+        return null;
+    }
+
+    @EventHandler
+    public static void onReload(ChestShopReloadEvent event) {
+        players = createPlayerBuckets();
+        shops = createShopBuckets();
+    }
+}
@@ -3,6 +3,7 @@ package com.Acrobot.ChestShop.Listeners.PostTransaction;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyTransferEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 
@@ -22,7 +23,9 @@ public class EconomicModule implements Listener {
                 event.getTransactionType() == BUY ? CurrencyTransferEvent.Direction.PARTNER : CurrencyTransferEvent.Direction.INITIATOR,
                 event
         );
+        long time = TransactionProfiler.start();
         ChestShop.callEvent(currencyTransferEvent);
+        TransactionProfiler.stop(TransactionProfiler.Stage.ECONOMY, time);
         if (!currencyTransferEvent.wasHandled()) {
             event.setCancelled(true);
         }
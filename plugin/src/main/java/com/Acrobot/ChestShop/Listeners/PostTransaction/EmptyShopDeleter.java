@@ -6,8 +6,11 @@ import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Events.ShopDestroyedEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.Utils.WorkScheduler;
 import com.Acrobot.ChestShop.Utils.uBlock;
 import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
 import org.bukkit.block.Container;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
@@ -16,6 +19,8 @@ import org.bukkit.event.Listener;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
+import static com.Acrobot.Breeze.Utils.ImplementationAdapter.getState;
+
 /**
  * @author Acrobot
  */
@@ -29,13 +34,7 @@ public class EmptyShopDeleter implements Listener {
 
         Sign sign = event.getSign();
 
-        if (ChestShopSign.isAdminShop(sign)) {
-            return;
-        }
-
-        Inventory ownerInventory = event.getOwnerInventory();
-
-        if (!shopShouldBeRemoved(ownerInventory, event.getStock())) {
+        if (!Properties.REMOVE_EMPTY_SHOPS || ChestShopSign.isAdminShop(sign)) {
             return;
         }
 
@@ -43,9 +42,23 @@ public class EmptyShopDeleter implements Listener {
             return;
         }
 
+        Inventory ownerInventory = event.getOwnerInventory();
+        ItemStack[] stock = event.getStock();
+        Block signBlock = sign.getBlock();
+
+        // The shop might have been refilled or broken until the deferred work runs, so check it again then
+        ChestShop.defer(WorkScheduler.key("empty shop", signBlock.getLocation()), () -> {
+            BlockState state = getState(signBlock, false);
+            if (state instanceof Sign && ChestShopSign.isValid((Sign) state) && shopShouldBeRemoved(ownerInventory, stock)) {
+                removeShop((Sign) state, ownerInventory);
+            }
+        });
+    }
+
+    private static void removeShop(Sign sign, Inventory ownerInventory) {
         Container connectedContainer = uBlock.findConnectedContainer(sign);
 
-        ShopDestroyedEvent destroyedEvent = new ShopDestroyedEvent(null, event.getSign(), connectedContainer);
+        ShopDestroyedEvent destroyedEvent = new ShopDestroyedEvent(null, sign, connectedContainer);
         ChestShop.callEvent(destroyedEvent);
 
         Material signType = sign.getType();
@@ -1,19 +1,17 @@
 package com.Acrobot.ChestShop.Listeners.PostTransaction;
 
-import com.Acrobot.Breeze.Utils.ImplementationAdapter;
 import com.Acrobot.Breeze.Utils.InventoryUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
-import org.bukkit.block.BlockState;
-import org.bukkit.block.DoubleChest;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
 
 import static com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType.BUY;
 import static com.Acrobot.ChestShop.Events.TransactionEvent.TransactionType.SELL;
@@ -41,27 +39,17 @@ public class ItemManager implements Listener {
     }
 
     private static void transferItems(Inventory sourceInventory, Inventory targetInventory, ItemStack[] items) {
-        if (Properties.STACK_TO_64) {
-            for (ItemStack item : items) {
-                InventoryUtil.transfer(item, sourceInventory, targetInventory, 64);
-            }
-        } else {
-            for (ItemStack item : items) {
-                InventoryUtil.transfer(item, sourceInventory, targetInventory);
-            }
-        }
-        update(sourceInventory.getHolder());
-        update(targetInventory.getHolder());
+        long time = TransactionProfiler.start();
+        InventoryUtil.transfer(items, sourceInventory, targetInventory, Properties.STACK_TO_64 ? 64 : 0);
+        update(sourceInventory);
+        update(targetInventory);
+        TransactionProfiler.stop(TransactionProfiler.Stage.ITEMS, time);
     }
 
-    private static void update(InventoryHolder holder) {
-        if (holder instanceof Player) {
-            ((Player) holder).updateInventory();
-        } else if (holder instanceof BlockState) {
-            ((BlockState) holder).update();
-        } else if (holder instanceof DoubleChest) {
-            update(ImplementationAdapter.getLeftSide((DoubleChest) holder, false));
-            update(ImplementationAdapter.getRightSide((DoubleChest) holder, false));
+    // Container inventories are changed directly, so their block states don't need to be updated
+    private static void update(Inventory inventory) {
+        if (inventory instanceof PlayerInventory && inventory.getHolder() instanceof Player) {
+            ((Player) inventory.getHolder()).updateInventory();
         }
     }
 }
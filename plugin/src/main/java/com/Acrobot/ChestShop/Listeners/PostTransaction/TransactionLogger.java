@@ -3,6 +3,7 @@ package com.Acrobot.ChestShop.Listeners.PostTransaction;
 import com.Acrobot.Breeze.Utils.LocationUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -23,6 +24,12 @@ public class TransactionLogger implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public static void onTransaction(final TransactionEvent event) {
+        long time = TransactionProfiler.start();
+        ChestShop.defer(TransactionProfiler.deferred(TransactionProfiler.Stage.LOGGING, () -> log(event)));
+        TransactionProfiler.stop(TransactionProfiler.Stage.DEFERRED, time);
+    }
+
+    private static void log(TransactionEvent event) {
         String template = (event.getTransactionType() == BUY ? BUY_MESSAGE : SELL_MESSAGE);
 
         StringBuilder items = new StringBuilder(50);
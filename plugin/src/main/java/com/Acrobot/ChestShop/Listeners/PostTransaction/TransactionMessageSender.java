@@ -9,6 +9,7 @@ import com.Acrobot.ChestShop.Economy.Economy;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyTransferEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
 import com.Acrobot.ChestShop.Utils.ItemUtil;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
@@ -29,11 +30,13 @@ public class TransactionMessageSender implements Listener {
         if (event.getTransactionEvent() == null || !event.wasHandled() || event.getTransactionEvent().isCancelled()) {
             return;
         }
+        long time = TransactionProfiler.start();
         if (event.getTransactionEvent().getTransactionType() == TransactionEvent.TransactionType.BUY) {
-            sendBuyMessage(event);
+            ChestShop.defer(TransactionProfiler.deferred(TransactionProfiler.Stage.MESSAGES, () -> sendBuyMessage(event)));
         } else {
-            sendSellMessage(event);
+            ChestShop.defer(TransactionProfiler.deferred(TransactionProfiler.Stage.MESSAGES, () -> sendSellMessage(event)));
         }
+        TransactionProfiler.stop(TransactionProfiler.Stage.DEFERRED, time);
     }
 
     protected static void sendBuyMessage(CurrencyTransferEvent event) {
@@ -5,10 +5,12 @@ import com.Acrobot.Breeze.Utils.MaterialUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Economy.Economy;
+import com.Acrobot.ChestShop.Economy.Money;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyAmountEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyCheckEvent;
 import com.Acrobot.ChestShop.Events.Economy.CurrencyHoldEvent;
 import com.Acrobot.ChestShop.Events.PreTransactionEvent;
+import com.Acrobot.ChestShop.Events.PreTransactionEvent.TransactionOutcome;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -17,7 +19,6 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -47,31 +48,27 @@ public class PartialTransactionModule implements Listener {
 
         Player client = event.getClient();
 
-        BigDecimal pricePerItem = event.getExactPrice().divide(BigDecimal.valueOf(itemCount), MathContext.DECIMAL128);
-
-        CurrencyAmountEvent currencyAmountEvent = new CurrencyAmountEvent(client);
-        ChestShop.callEvent(currencyAmountEvent);
-
-        BigDecimal walletMoney = currencyAmountEvent.getAmount();
+        BigDecimal price = event.getExactPrice();
 
         CurrencyCheckEvent currencyCheckEvent = new CurrencyCheckEvent(event.getExactPrice(), client);
         ChestShop.callEvent(currencyCheckEvent);
 
         if (!currencyCheckEvent.hasEnough()) {
-            int amountAffordable = getAmountOfAffordableItems(walletMoney, pricePerItem);
+            CurrencyAmountEvent currencyAmountEvent = new CurrencyAmountEvent(client);
+            ChestShop.callEvent(currencyAmountEvent);
+
+            BigDecimal walletMoney = currencyAmountEvent.getAmount();
+            int amountAffordable = getAmountOfAffordableItems(walletMoney, price, itemCount);
 
             if (amountAffordable < 1) {
                 event.setCancelled(CLIENT_DOES_NOT_HAVE_ENOUGH_MONEY);
                 return;
             }
 
-            BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(amountAffordable)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-            if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                event.setCancelled(CLIENT_DOES_NOT_HAVE_ENOUGH_MONEY);
+            if (!reducePrice(event, price, itemCount, amountAffordable, CLIENT_DOES_NOT_HAVE_ENOUGH_MONEY)) {
                 return;
             }
 
-            event.setExactPrice(pricePerItemScaled);
             event.setStock(getCountedItemStack(event.getStock(), amountAffordable));
         }
 
@@ -84,13 +81,10 @@ public class PartialTransactionModule implements Listener {
                 return;
             }
 
-            BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(possessedItemCount)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-            if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                event.setCancelled(NOT_ENOUGH_STOCK_IN_CHEST);
+            if (!reducePrice(event, price, itemCount, possessedItemCount, NOT_ENOUGH_STOCK_IN_CHEST)) {
                 return;
             }
 
-            event.setExactPrice(pricePerItemScaled);
             event.setStock(itemsHad);
         }
 
@@ -102,13 +96,10 @@ public class PartialTransactionModule implements Listener {
                 return;
             }
 
-            BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(possessedItemCount)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-            if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                event.setCancelled(NOT_ENOUGH_SPACE_IN_INVENTORY);
+            if (!reducePrice(event, price, itemCount, possessedItemCount, NOT_ENOUGH_SPACE_IN_INVENTORY)) {
                 return;
             }
 
-            event.setExactPrice(pricePerItemScaled);
             event.setStock(itemsFit);
         }
 
@@ -136,7 +127,7 @@ public class PartialTransactionModule implements Listener {
         Player client = event.getClient();
         UUID owner = event.getOwnerAccount().getUuid();
 
-        BigDecimal pricePerItem = event.getExactPrice().divide(BigDecimal.valueOf(itemCount), MathContext.DECIMAL128);
+        BigDecimal price = event.getExactPrice();
 
 
         if (Economy.isOwnerEconomicallyActive(event.getOwnerInventory())) {
@@ -148,20 +139,17 @@ public class PartialTransactionModule implements Listener {
                 ChestShop.callEvent(currencyAmountEvent);
 
                 BigDecimal walletMoney = currencyAmountEvent.getAmount();
-                int amountAffordable = getAmountOfAffordableItems(walletMoney, pricePerItem);
+                int amountAffordable = getAmountOfAffordableItems(walletMoney, price, itemCount);
 
                 if (amountAffordable < 1) {
                     event.setCancelled(SHOP_DOES_NOT_HAVE_ENOUGH_MONEY);
                     return;
                 }
 
-                BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(amountAffordable)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-                if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                    event.setCancelled(SHOP_DOES_NOT_HAVE_ENOUGH_MONEY);
+                if (!reducePrice(event, price, itemCount, amountAffordable, SHOP_DOES_NOT_HAVE_ENOUGH_MONEY)) {
                     return;
                 }
 
-                event.setExactPrice(pricePerItemScaled);
                 event.setStock(getCountedItemStack(event.getStock(), amountAffordable));
             }
         }
@@ -175,13 +163,10 @@ public class PartialTransactionModule implements Listener {
                 return;
             }
 
-            BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(possessedItemCount)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-            if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                event.setCancelled(NOT_ENOUGH_STOCK_IN_INVENTORY);
+            if (!reducePrice(event, price, itemCount, possessedItemCount, NOT_ENOUGH_STOCK_IN_INVENTORY)) {
                 return;
             }
 
-            event.setExactPrice(pricePerItemScaled);
             event.setStock(itemsHad);
         }
 
@@ -193,13 +178,10 @@ public class PartialTransactionModule implements Listener {
                 return;
             }
 
-            BigDecimal pricePerItemScaled = pricePerItem.multiply(new BigDecimal(possessedItemCount)).setScale(Properties.PRICE_PRECISION, BigDecimal.ROUND_HALF_UP);
-            if (pricePerItem.compareTo(BigDecimal.ZERO) > 0 && pricePerItemScaled.compareTo(BigDecimal.ZERO) == 0) {
-                event.setCancelled(NOT_ENOUGH_SPACE_IN_CHEST);
+            if (!reducePrice(event, price, itemCount, possessedItemCount, NOT_ENOUGH_SPACE_IN_CHEST)) {
                 return;
             }
 
-            event.setExactPrice(pricePerItemScaled);
             event.setStock(itemsFit);
         }
 
@@ -211,8 +193,68 @@ public class PartialTransactionModule implements Listener {
         }
     }
 
-    private static int getAmountOfAffordableItems(BigDecimal walletMoney, BigDecimal pricePerItem) {
-        return walletMoney.divide(pricePerItem, 0, RoundingMode.FLOOR).intValueExact();
+    private static int getAmountOfAffordableItems(BigDecimal walletMoney, BigDecimal price, int itemCount) {
+        // Never overstate what the wallet holds or understate what the items cost
+        Money wallet = toMoney(walletMoney, RoundingMode.FLOOR);
+        Money cost = toMoney(price, RoundingMode.CEILING);
+        long affordable;
+        if (wallet != null && cost != null) {
+            affordable = wallet.countAffordable(cost, itemCount);
+        } else if (price.signum() <= 0) {
+            affordable = Long.MAX_VALUE;
+        } else if (walletMoney.signum() <= 0) {
+            affordable = 0;
+        } else {
+            affordable = walletMoney.multiply(BigDecimal.valueOf(itemCount))
+                    .divide(price, 0, RoundingMode.FLOOR)
+                    .min(BigDecimal.valueOf(Integer.MAX_VALUE))
+                    .longValue();
+        }
+        return (int) Math.min(affordable, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Set the price of a transaction to the price of the items which are left of it
+     *
+     * @param event        The transaction
+     * @param price        The price of the original items
+     * @param itemCount    How many items the original price was for
+     * @param newItemCount How many items are left
+     * @param outcome      The outcome to cancel the transaction with if the items would become free
+     * @return Whether the transaction can still go on
+     */
+    private static boolean reducePrice(PreTransactionEvent event, BigDecimal price, int itemCount, int newItemCount, TransactionOutcome outcome) {
+        Money money = toMoney(price, RoundingMode.HALF_UP);
+        BigDecimal reduced = money != null
+                ? money.share(newItemCount, itemCount).toBigDecimal()
+                : price.multiply(BigDecimal.valueOf(newItemCount))
+                        .divide(BigDecimal.valueOf(itemCount), Properties.PRICE_PRECISION, RoundingMode.HALF_UP);
+        if (price.signum() > 0 && reduced.signum() == 0) {
+            event.setCancelled(outcome);
+            return false;
+        }
+
+        event.setExactPrice(reduced);
+        return true;
+    }
+
+    /**
+     * @param amount   The amount
+     * @param rounding How to round the amount to the price precision if it has more decimal places than the minor units can hold
+     * @return The amount in minor units, or null if it is too large for them
+     */
+    private static Money toMoney(BigDecimal amount, RoundingMode rounding) {
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            // More decimal places than a long can hold, rounding them changes the amount
+            // so the caller decides in which direction
+            try {
+                return Money.of(amount.setScale(Properties.PRICE_PRECISION, rounding));
+            } catch (ArithmeticException tooLarge) {
+                return null;
+            }
+        }
     }
 
     private static ItemStack[] getItems(ItemStack[] stock, Inventory inventory) {
@@ -6,8 +6,8 @@ import com.Acrobot.Breeze.Utils.PriceUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Configuration.Messages;
 import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Economy.Economy;
 import com.Acrobot.ChestShop.Events.AccountQueryEvent;
-import com.Acrobot.ChestShop.Events.Economy.CurrencyFormatEvent;
 import com.Acrobot.ChestShop.Events.ItemInfoEvent;
 import com.Acrobot.ChestShop.Events.ItemParseEvent;
 import com.Acrobot.ChestShop.Events.ShopInfoEvent;
@@ -89,17 +89,15 @@ public class ShopInfoListener implements Listener {
             }
 
             if (!buyPrice.equals(PriceUtil.NO_PRICE)) {
-                CurrencyFormatEvent cfe = ChestShop.callEvent(new CurrencyFormatEvent(buyPrice));
                 Messages.shopinfo_buy.send(event.getSender(),
                         "amount", String.valueOf(amount),
-                        "price", cfe.getFormattedAmount()
+                        "price", Economy.formatBalance(buyPrice)
                 );
             }
             if (!sellPrice.equals(PriceUtil.NO_PRICE)) {
-                CurrencyFormatEvent cfe = ChestShop.callEvent(new CurrencyFormatEvent(sellPrice));
                 Messages.shopinfo_sell.send(event.getSender(),
                         "amount", String.valueOf(amount),
-                        "price", cfe.getFormattedAmount()
+                        "price", Economy.formatBalance(sellPrice)
                 );
             }
         } else {
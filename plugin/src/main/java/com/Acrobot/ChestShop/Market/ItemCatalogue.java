@@ -0,0 +1,105 @@
+package com.Acrobot.ChestShop.Market;
+
+import com.Acrobot.ChestShop.ChestShop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Local table of the item fingerprints whose YAML data already went to the
+ * market database. Records of a known item only carry the item key; the data
+ * is attached until the market database accepted a record carrying it, so a
+ * coalesced, dropped or dead-lettered record never loses it.
+ *
+ * <p>The fingerprints are kept in an append-only file with one fingerprint per
+ * line, which is forced to disk by {@link #flush()}. Deleting the file makes
+ * the next record of every item carry its data again.</p>
+ */
+final class ItemCatalogue {
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    private final FileChannel channel;
+    private boolean dirty;
+
+    ItemCatalogue(File file) throws IOException {
+        if (file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        known.add(line);
+                    }
+                }
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the item
+     * @return Whether the data of that item was already sent
+     */
+    boolean isKnown(String fingerprint) {
+        return fingerprint == null || known.contains(fingerprint);
+    }
+
+    /**
+     * Remember that a record with the data of the item was written
+     *
+     * @param fingerprint The fingerprint of the item, null for items without data
+     */
+    void confirm(String fingerprint) {
+        if (fingerprint == null || !known.add(fingerprint)) {
+            return;
+        }
+        synchronized (channel) {
+            try {
+                channel.write(ByteBuffer.wrap((fingerprint + "\n").getBytes(StandardCharsets.UTF_8)));
+                dirty = true;
+            } catch (IOException e) {
+                // Worst case the data is sent once more after a restart
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to update the market item catalogue", e);
+            }
+        }
+    }
+
+    /**
+     * Force the confirmed fingerprints to disk
+     */
+    void flush() {
+        synchronized (channel) {
+            if (!dirty || !channel.isOpen()) {
+                return;
+            }
+            try {
+                channel.force(false);
+                dirty = false;
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to sync the market item catalogue", e);
+            }
+        }
+    }
+
+    int size() {
+        return known.size();
+    }
+
+    void close() {
+        flush();
+        synchronized (channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to close the market item catalogue", e);
+            }
+        }
+    }
+}
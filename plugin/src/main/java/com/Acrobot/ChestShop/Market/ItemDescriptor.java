@@ -0,0 +1,15 @@
+package com.Acrobot.ChestShop.Market;
+
+/**
+ * Everything the market records need to know about one kind of item. Built
+ * once per item fingerprint by {@link MarketRecords#describe} since resolving
+ * the custom-aware code fires item events and the data is a YAML dump.
+ *
+ * @param material    The name of the underlying material
+ * @param key         The stable grouping key, ChestShop's canonical item code
+ * @param name        The human-readable label
+ * @param custom      Whether this is a custom item or carries item meta
+ * @param data        The YAML serialised item for custom items, null otherwise
+ * @param fingerprint A hash of the key and data to track which item data the market already has, null without data
+ */
+record ItemDescriptor(String material, String key, String name, boolean custom, String data, String fingerprint) {}
@@ -1,12 +1,15 @@
 package com.Acrobot.ChestShop.Market;
 
 import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Properties;
 import net.democracycraft.business.api.BusinessApi;
 import net.democracycraft.treasury.api.MarketApi;
 import net.democracycraft.treasury.api.TreasuryApi;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 
 /**
@@ -22,6 +25,8 @@ public final class MarketHook {
     private static MarketApi market;
     private static TreasuryApi treasury;
     private static BusinessApi business;
+    private static MarketWriter writer;
+    private static ItemCatalogue catalogue;
 
     private MarketHook() {}
 
@@ -29,6 +34,16 @@ public final class MarketHook {
         market = load(MarketApi.class);
         treasury = load(TreasuryApi.class);
         business = load(BusinessApi.class);
+        if (market != null && writer == null) {
+            try {
+                catalogue = new ItemCatalogue(new File(ChestShop.getFolder(), "market-items.txt"));
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to load the market item catalogue, item data is sent with every record", e);
+            }
+            writer = new MarketWriter(market, catalogue, Properties.MARKET_QUEUE_SIZE, Properties.MARKET_FLUSH_INTERVAL,
+                    Properties.MARKET_SPOOL ? new File(ChestShop.getFolder(), "market-spool") : null,
+                    Properties.MARKET_SPOOL_SEGMENT_SIZE * 1024L, Properties.MARKET_SPOOL_FSYNC_INTERVAL);
+        }
         ChestShop.getBukkitLogger().log(Level.INFO, "ChestShop market tracker {0}",
                 enabled() ? "enabled" : "disabled (Treasury MarketApi not available)");
     }
@@ -44,10 +59,27 @@ public final class MarketHook {
 
     /** True when both the MarketApi (writes) and TreasuryApi (account classification) are available. */
     public static boolean enabled() {
-        return market != null && treasury != null;
+        return writer != null && treasury != null;
+    }
+
+    /**
+     * Write out all queued market records and stop the writer
+     */
+    public static void shutdown() {
+        MarketResync.cancel(null);
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (catalogue != null) {
+            catalogue.close();
+            catalogue = null;
+        }
     }
 
     public static MarketApi market() { return market; }
+    public static MarketWriter writer() { return writer; }
+    static ItemCatalogue catalogue() { return catalogue; }
     public static TreasuryApi treasury() { return treasury; }
     public static BusinessApi business() { return business; }
 }
@@ -1,41 +1,75 @@
 package com.Acrobot.ChestShop.Market;
 
 import com.Acrobot.Breeze.Utils.MaterialUtil;
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
 import com.Acrobot.ChestShop.Events.ShopCreatedEvent;
 import com.Acrobot.ChestShop.Events.ShopDestroyedEvent;
 import com.Acrobot.ChestShop.Events.TransactionEvent;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.Utils.TransactionProfiler;
 import com.Acrobot.ChestShop.Utils.uBlock;
-import net.democracycraft.treasury.api.MarketApi;
-import org.bukkit.Location;
+import org.bukkit.Bukkit;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import static com.Acrobot.Breeze.Utils.ImplementationAdapter.getHolder;
+
 /**
  * Keeps the ChestShop sales tracker + live shop registry up to date:
  *  - {@link TransactionEvent}: record the trade + upsert the shop (lazy-registers
- *    pre-existing shops on first activity and refreshes post-trade stock).
+ *    pre-existing shops on first activity and refreshes post-trade stock). This
+ *    is deferred to the work scheduler, so it may happen a few ticks later.
  *  - {@link ShopCreatedEvent}: register/refresh the shop.
  *  - {@link ShopDestroyedEvent}: mark it inactive.
  *  - {@link InventoryCloseEvent}: a manual restock — recount stock for the
- *    connected shop signs (mirrors ChestShop's own sign-counter refresh).
+ *    connected shop signs (mirrors ChestShop's own sign-counter refresh). Only
+ *    containers which were clicked or dragged into while open are recounted,
+ *    once per tick, with each sign item parsed once.
+ *  - {@link ChestShopReloadEvent}: forget the memoised items and owners and
+ *    what was last written for each shop.
  *
  * All handlers are MONITOR + fully guarded: analytics must never disrupt a trade.
+ * The writes themselves are queued on the {@link MarketWriter} and happen off
+ * the main thread.
  */
 public class MarketListener implements Listener {
 
+    /** Containers whose contents may have changed while they were open */
+    private final Set<Inventory> modified = new HashSet<>();
+    /** Modified containers which were closed in this tick */
+    private final Set<Inventory> pendingRecounts = new LinkedHashSet<>();
+    private boolean recountScheduled = false;
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onTransaction(TransactionEvent event) {
+        if (!MarketHook.enabled()) return;
+        long time = TransactionProfiler.start();
+        ChestShop.defer(TransactionProfiler.deferred(TransactionProfiler.Stage.MARKET, () -> recordTransaction(event)));
+        TransactionProfiler.stop(TransactionProfiler.Stage.DEFERRED, time);
+    }
+
+    private static void recordTransaction(TransactionEvent event) {
         if (!MarketHook.enabled()) return;
         try {
             ItemStack[] stock = event.getStock();
@@ -49,10 +83,10 @@ public class MarketListener implements Listener {
             String direction = event.getTransactionType() == TransactionEvent.TransactionType.BUY ? "BUY" : "SELL";
             Integer shopStock = admin ? null : MarketRecords.stockOf(item, event.getOwnerInventory());
 
-            MarketApi market = MarketHook.market();
-            market.recordSale(MarketRecords.sale(sign, item, quantity, event.getClient().getUniqueId(),
-                    owner, event.getExactPrice(), BigDecimal.ZERO, direction, shopStock));
-            market.upsertShop(MarketRecords.shop(sign, item, owner, shopStock));
+            MarketWriter writer = MarketHook.writer();
+            writer.recordSale(MarketRecords.sale(event.getTransactionId(), sign, item, quantity, event.getClient().getUniqueId(),
+                    owner, event.getExactPrice(), BigDecimal.ZERO, direction, shopStock), MarketRecords.describe(item).fingerprint());
+            writer.upsertShop(MarketWriter.ShopKey.of(sign.getLocation()), MarketRecords.shop(sign, item, owner, shopStock));
         } catch (Throwable ignored) {
             // analytics only
         }
@@ -71,7 +105,7 @@ public class MarketListener implements Listener {
             Integer stock = (!admin && event.getContainer() != null)
                     ? MarketRecords.stockOf(item, event.getContainer().getInventory())
                     : null;
-            MarketHook.market().upsertShop(MarketRecords.shop(sign, item, owner, stock));
+            MarketHook.writer().upsertShop(MarketWriter.ShopKey.of(sign.getLocation()), MarketRecords.shop(sign, item, owner, stock));
         } catch (Throwable ignored) {
         }
     }
@@ -80,36 +114,87 @@ public class MarketListener implements Listener {
     public void onShopDestroyed(ShopDestroyedEvent event) {
         if (!MarketHook.enabled()) return;
         try {
-            Location l = event.getSign().getLocation();
-            MarketHook.market().deactivateShop(
-                    l.getWorld() != null ? l.getWorld().getName() : null,
-                    l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            MarketHook.writer().deactivateShop(MarketWriter.ShopKey.of(event.getSign().getLocation()));
         } catch (Throwable ignored) {
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        Inventory top = event.getView().getTopInventory();
+        InventoryAction action = event.getAction();
+        if (event.getClickedInventory() == top
+                || action == InventoryAction.MOVE_TO_OTHER_INVENTORY
+                || action == InventoryAction.COLLECT_TO_CURSOR) {
+            markModified(top);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        Inventory top = event.getView().getTopInventory();
+        for (int slot : event.getRawSlots()) {
+            if (slot < top.getSize()) {
+                markModified(top);
+                return;
+            }
+        }
+    }
+
+    private void markModified(Inventory inventory) {
+        if (MarketHook.enabled() && inventory.getType() != InventoryType.ENDER_CHEST && inventory.getLocation() != null) {
+            modified.add(inventory);
+        }
+    }
+
     @EventHandler(priority = EventPriority.MONITOR)
     public void onInventoryClose(InventoryCloseEvent event) {
+        Inventory inventory = event.getInventory();
+        if (!modified.remove(inventory) || !MarketHook.enabled()) return;
+        if (pendingRecounts.add(inventory) && !recountScheduled) {
+            recountScheduled = true;
+            Bukkit.getScheduler().runTask(ChestShop.getPlugin(), this::recountStock);
+        }
+    }
+
+    /**
+     * Recount the stock of all containers which were closed after being modified in the last tick
+     */
+    private void recountStock() {
+        recountScheduled = false;
+        List<Inventory> inventories = new ArrayList<>(pendingRecounts);
+        pendingRecounts.clear();
         if (!MarketHook.enabled()) return;
-        try {
-            InventoryHolder holder = event.getInventory().getHolder();
-            if (holder == null) return;
-            List<Sign> signs = uBlock.findConnectedShopSigns(holder);
-            if (signs.isEmpty()) return;
-            Inventory inv = event.getInventory();
-            MarketApi market = MarketHook.market();
-            for (Sign sign : signs) {
-                if (ChestShopSign.isAdminShop(sign)) continue;
-                String itemName = ChestShopSign.getItem(sign);
-                ItemStack item = itemName != null ? MaterialUtil.getItem(itemName) : null;
-                if (item == null) continue;
-                Location l = sign.getLocation();
-                market.updateShopStock(
-                        l.getWorld() != null ? l.getWorld().getName() : null,
-                        l.getBlockX(), l.getBlockY(), l.getBlockZ(),
-                        MarketRecords.stockOf(item, inv));
+
+        MarketWriter writer = MarketHook.writer();
+        Map<String, ItemStack> parsedItems = new HashMap<>();
+        for (Inventory inventory : inventories) {
+            try {
+                InventoryHolder holder = getHolder(inventory, false);
+                if (holder == null) continue;
+                List<Sign> signs = uBlock.findConnectedShopSigns(holder);
+                if (signs.isEmpty()) continue;
+                Map<String, Integer> stock = new HashMap<>();
+                for (Sign sign : signs) {
+                    if (ChestShopSign.isAdminShop(sign)) continue;
+                    String itemName = ChestShopSign.getItem(sign);
+                    ItemStack item = itemName != null ? parsedItems.computeIfAbsent(itemName, MaterialUtil::getItem) : null;
+                    if (item == null) continue;
+                    int amount = stock.computeIfAbsent(itemName, name -> MarketRecords.stockOf(item, inventory));
+                    writer.updateShopStock(MarketWriter.ShopKey.of(sign.getLocation()), amount);
+                }
+            } catch (Throwable ignored) {
             }
-        } catch (Throwable ignored) {
+        }
+    }
+
+    @EventHandler
+    public void onReload(ChestShopReloadEvent event) {
+        MarketRecords.clearItemDescriptors();
+        MarketRecords.resetOwnerCache();
+        MarketWriter writer = MarketHook.writer();
+        if (writer != null) {
+            writer.resetSentShops();
         }
     }
 }
@@ -0,0 +1,154 @@
+package com.Acrobot.ChestShop.Market;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the MarketApi record DTOs for the {@link MarketSpool}.
+ *
+ * <p>The DTOs are Java records, so they are written component by component in
+ * declaration order and read back through their canonical constructor. Each
+ * value carries a type tag, which keeps spooled data readable as long as the
+ * component order of the DTO doesn't change.</p>
+ */
+final class MarketRecordCodec {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DECIMAL = 5;
+    private static final byte UUID_TAG = 6;
+    private static final byte DOUBLE = 7;
+
+    private MarketRecordCodec() {}
+
+    static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        RecordComponent[] components = record.getClass().getRecordComponents();
+        out.writeShort(components.length);
+        for (RecordComponent component : components) {
+            Object value;
+            try {
+                value = component.getAccessor().invoke(record);
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Unable to read " + component.getName() + " of " + record.getClass().getSimpleName(), e);
+            }
+            writeValue(out, value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static <T extends Record> T decode(Class<T> type, byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        RecordComponent[] components = type.getRecordComponents();
+        int count = in.readUnsignedShort();
+        if (count != components.length) {
+            throw new IOException("Spooled " + type.getSimpleName() + " has " + count + " values but the record has " + components.length);
+        }
+
+        Class<?>[] types = new Class<?>[components.length];
+        Object[] values = new Object[components.length];
+        for (int i = 0; i < components.length; i++) {
+            types[i] = components[i].getType();
+            values[i] = readValue(in);
+        }
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor(types);
+            return constructor.newInstance(values);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unable to create " + type.getSimpleName() + " from spooled data", e);
+        }
+    }
+
+    /**
+     * Check that a class can be spooled, i.e. that it's a record with only supported component types
+     */
+    static void validate(Class<?> type) throws IOException {
+        if (!type.isRecord()) {
+            throw new IOException(type.getName() + " is not a record");
+        }
+        for (RecordComponent component : type.getRecordComponents()) {
+            Class<?> t = component.getType();
+            if (t != String.class && t != Integer.class && t != int.class && t != Long.class && t != long.class
+                    && t != Boolean.class && t != boolean.class && t != BigDecimal.class && t != UUID.class
+                    && t != Double.class && t != double.class) {
+                throw new IOException(type.getSimpleName() + "." + component.getName() + " has unsupported type " + t.getName());
+            }
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            byte[] utf = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            out.writeInt(utf.length);
+            out.write(utf);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INT);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof BigDecimal d) {
+            out.writeByte(DECIMAL);
+            out.writeInt(d.scale());
+            byte[] unscaled = d.unscaledValue().toByteArray();
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        } else if (value instanceof UUID u) {
+            out.writeByte(UUID_TAG);
+            out.writeLong(u.getMostSignificantBits());
+            out.writeLong(u.getLeastSignificantBits());
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else {
+            throw new IOException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                byte[] utf = new byte[in.readInt()];
+                in.readFully(utf);
+                return new String(utf, java.nio.charset.StandardCharsets.UTF_8);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DECIMAL:
+                int scale = in.readInt();
+                byte[] unscaled = new byte[in.readUnsignedShort()];
+                in.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            case UUID_TAG:
+                return new UUID(in.readLong(), in.readLong());
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.Acrobot.ChestShop.Market;
 
+import com.Acrobot.Breeze.Collection.ExpiringCache;
+import com.Acrobot.Breeze.Collection.SimpleCache;
 import com.Acrobot.Breeze.Utils.InventoryUtil;
 import com.Acrobot.Breeze.Utils.MaterialUtil;
 import com.Acrobot.Breeze.Utils.PriceUtil;
+import com.Acrobot.ChestShop.Configuration.Properties;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.Acrobot.ChestShop.Utils.ItemUtil;
 import net.democracycraft.business.api.BusinessApi;
 import net.democracycraft.business.model.Firm;
-import net.democracycraft.treasury.api.TreasuryApi;
 import net.democracycraft.treasury.api.market.ChestShopSaleRecord;
 import net.democracycraft.treasury.api.market.ChestShopShopRecord;
 import org.bukkit.ChatColor;
@@ -20,6 +22,10 @@ import org.bukkit.inventory.meta.ItemMeta;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.UUID;
@@ -28,7 +34,8 @@ import java.util.UUID;
  * Builds the MarketApi DTOs from ChestShop data: classifies the owning account
  * (personal / business firm / government / admin) via the Treasury + Business
  * APIs, and resolves the real item (incl. custom items) via ChestShop's own
- * item encoding. Pure helper — no state.
+ * item encoding. The only state is the memo of item descriptors and the
+ * cached owner classifications.
  */
 final class MarketRecords {
 
@@ -39,26 +46,59 @@ final class MarketRecords {
 
     record Owner(Integer accountId, String type, Integer firmId, UUID ownerUuid, boolean admin) {}
 
+    /**
+     * Everything about a shop except its stock, used to tell which parts of a shop changed since it was last sent
+     */
+    record ShopState(String itemKey, Owner owner, BigDecimal buyPrice, BigDecimal sellPrice, int batch) {}
+
+    /**
+     * A full shop record together with what is needed to diff it
+     *
+     * @param record The record to send when the shop changed
+     * @param state  The state of the shop without its stock
+     * @param stock  The stock of the shop, null for admin shops
+     * @param item   The fingerprint of the shop's item, or null
+     */
+    record ShopUpsert(ChestShopShopRecord record, ShopState state, Integer stock, String item) {}
+
+    /** Personal account ids of players, account types and firm ownership almost never change */
+    private static volatile ExpiringCache<UUID, Integer> personalAccounts = newOwnerCache();
+    private static volatile ExpiringCache<Integer, Owner> owners = newOwnerCache();
+
+    private static <K, V> ExpiringCache<K, V> newOwnerCache() {
+        return new ExpiringCache<>(Properties.MARKET_OWNER_CACHE_TIME * 1000L, Properties.CACHE_SIZE);
+    }
+
     /** Resolve the shop's owning account from the ChestShop owner-account UUID. */
     static Owner ownerFromUuid(UUID ownerUuid, boolean adminShop) {
         if (adminShop || ownerUuid == null) {
             return new Owner(null, null, null, null, true);
         }
-        TreasuryApi treasury = MarketHook.treasury();
         int accountId;
         if (ownerUuid.getMostSignificantBits() == BUSINESS_UUID_MSB) {
             accountId = (int) ownerUuid.getLeastSignificantBits();
         } else {
-            net.democracycraft.treasury.model.economy.Account personal = treasury.getAccountByUUID(ownerUuid);
+            Integer personal = personalAccounts.get(ownerUuid, () -> {
+                net.democracycraft.treasury.model.economy.Account account = MarketHook.treasury().getAccountByUUID(ownerUuid);
+                return account != null ? account.getAccountId() : null;
+            });
             if (personal == null) {
                 return new Owner(null, null, null, null, false);
             }
-            accountId = personal.getAccountId();
+            accountId = personal;
         }
-        return classify(accountId);
+        return owners.get(accountId, () -> classify(accountId));
+    }
+
+    /**
+     * Drop all cached owners and apply the configured cache time
+     */
+    static void resetOwnerCache() {
+        personalAccounts = newOwnerCache();
+        owners = newOwnerCache();
     }
 
-    static Owner classify(int accountId) {
+    private static Owner classify(int accountId) {
         net.democracycraft.treasury.model.economy.Account acc = MarketHook.treasury().getAccountById(accountId);
         if (acc == null) {
             return new Owner(accountId, null, null, null, false);
@@ -85,6 +125,69 @@ final class MarketRecords {
     // provider claims the item, ItemUtil falls back to the vanilla code, so
     // vanilla behaviour is unchanged.
 
+    private static final SimpleCache<ItemStack, ItemDescriptor> ITEM_DESCRIPTORS = new SimpleCache<>(Properties.CACHE_SIZE);
+
+    /**
+     * Describe an item, memoised per fingerprint (the item with an amount of one)
+     * so repeated trades of the same item don't fire the item events or
+     * serialise it again.
+     */
+    static ItemDescriptor describe(ItemStack item) {
+        ItemStack fingerprint = item;
+        if (item.getAmount() != 1) {
+            fingerprint = item.clone();
+            fingerprint.setAmount(1);
+        }
+        ItemDescriptor descriptor = ITEM_DESCRIPTORS.get(fingerprint);
+        if (descriptor != null) {
+            return descriptor;
+        }
+
+        String canonical = canonicalCode(fingerprint);
+        descriptor = describe(fingerprint, canonical);
+        if (canonical != null) {
+            // A failed round-trip may be a provider that isn't ready yet, so only cache resolved codes
+            ITEM_DESCRIPTORS.put(fingerprint == item ? item.clone() : fingerprint, descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Forget all item descriptors, e.g. after item providers or aliases changed
+     */
+    static void clearItemDescriptors() {
+        ITEM_DESCRIPTORS.clear();
+    }
+
+    private static ItemDescriptor describe(ItemStack item, String canonical) {
+        String vanilla = MaterialUtil.getSignName(item);
+        boolean custom = isCustom(item, vanilla, canonical);
+        String key = canonical != null ? canonical : vanilla;
+        String data = custom ? itemData(item) : null;
+        return new ItemDescriptor(item.getType().name(), key, itemName(item, custom, canonical), custom, data,
+                data != null ? fingerprint(key, data) : null);
+    }
+
+    private static String fingerprint(String key, String data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(key).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(data.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The YAML data to attach to a record, only present until the market database got it once
+     */
+    private static String catalogued(ItemDescriptor descriptor) {
+        ItemCatalogue catalogue = MarketHook.catalogue();
+        return catalogue == null || !catalogue.isKnown(descriptor.fingerprint()) ? descriptor.data() : null;
+    }
+
     /**
      * ChestShop's canonical item code for this stack (custom-aware), or
      * {@code null} if it can't be round-tripped — width 0 means full, untruncated
@@ -100,22 +203,16 @@ final class MarketRecords {
         }
     }
 
-    /** Stable grouping key — ChestShop's canonical (custom-aware) sign code. */
-    static String itemKey(ItemStack item) {
-        String code = canonicalCode(item);
-        return code != null ? code : MaterialUtil.getSignName(item);
-    }
-
     /**
      * Human-readable label for the markets UI. Prefers the item's own display
      * name (an anvil-renamed or custom item), colour codes stripped; failing
      * that, for a custom item it prettifies the provider code (so a Nexo item
      * with no display name still reads as its custom id, not the base material);
      * otherwise a prettified material ("DIAMOND_SWORD" -> "Diamond Sword").
-     * Distinct from {@link #itemKey} — the key stays the stable code for
-     * grouping, while this is just for display.
+     * Distinct from the key — the key stays the stable code for grouping,
+     * while this is just for display.
      */
-    static String itemName(ItemStack item) {
+    private static String itemName(ItemStack item, boolean custom, String canonical) {
         if (item.hasItemMeta()) {
             ItemMeta meta = item.getItemMeta();
             if (meta != null && meta.hasDisplayName()) {
@@ -125,11 +222,8 @@ final class MarketRecords {
                 }
             }
         }
-        if (isCustom(item)) {
-            String code = canonicalCode(item);
-            if (code != null && !code.isBlank()) {
-                return pretty(code);
-            }
+        if (custom && canonical != null && !canonical.isBlank()) {
+            return pretty(canonical);
         }
         return pretty(item.getType().name());
     }
@@ -151,9 +245,7 @@ final class MarketRecords {
         return sb.length() > 0 ? sb.toString() : raw;
     }
 
-    static boolean isCustom(ItemStack item) {
-        String vanilla = MaterialUtil.getSignName(item);
-        String canonical = canonicalCode(item);
+    private static boolean isCustom(ItemStack item, String vanilla, String canonical) {
         // A provider (Nexo / ItemBridge) named it beyond the plain vanilla code.
         if (canonical != null && vanilla != null && !canonical.equalsIgnoreCase(vanilla)) {
             return true;
@@ -161,8 +253,7 @@ final class MarketRecords {
         return (vanilla != null && vanilla.contains("#")) || item.hasItemMeta();
     }
 
-    static String itemData(ItemStack item) {
-        if (!isCustom(item)) return null;
+    private static String itemData(ItemStack item) {
         try {
             YamlConfiguration yc = new YamlConfiguration();
             yc.set("item", item);
@@ -181,23 +272,35 @@ final class MarketRecords {
     }
 
     // ── DTO builders ──
-    static ChestShopSaleRecord sale(Sign sign, ItemStack item, int quantity, UUID customer,
+    /**
+     * Build a sale record. The transaction id is the market's unique key of the sale, so a
+     * sale that is written again after a crash is recognised instead of counted twice.
+     */
+    static ChestShopSaleRecord sale(String transactionId, Sign sign, ItemStack item, int quantity, UUID customer,
                                     Owner owner, BigDecimal total, BigDecimal tax,
                                     String direction, Integer shopStock) {
         Location l = sign.getLocation();
         BigDecimal unit = quantity > 0
                 ? total.divide(BigDecimal.valueOf(quantity), 4, RoundingMode.HALF_UP)
                 : total;
+        ItemDescriptor descriptor = describe(item);
         return new ChestShopSaleRecord(
-                null, direction, customer,
+                transactionId, direction, customer,
                 owner.accountId(), owner.type(), owner.firmId(), owner.ownerUuid(), owner.admin(),
-                item.getType().name(), itemKey(item), itemName(item), isCustom(item), itemData(item),
+                descriptor.material(), descriptor.key(), descriptor.name(), descriptor.custom(), catalogued(descriptor),
                 quantity, unit, total, tax != null ? tax : BigDecimal.ZERO,
                 worldName(l), l.getBlockX(), l.getBlockY(), l.getBlockZ(),
                 owner.admin() ? null : shopStock);
     }
 
-    static ChestShopShopRecord shop(Sign sign, ItemStack item, Owner owner, Integer currentStock) {
+    static ShopUpsert shop(Sign sign, ItemStack item, Owner owner, Integer currentStock) {
+        return shop(sign, item, describe(item), owner, currentStock);
+    }
+
+    /**
+     * Build a shop record with an item descriptor which was resolved beforehand, e.g. on the main thread
+     */
+    static ShopUpsert shop(Sign sign, ItemStack item, ItemDescriptor descriptor, Owner owner, Integer currentStock) {
         Location l = sign.getLocation();
         String priceLine = sign.getLine(ChestShopSign.PRICE_LINE);
         int batch;
@@ -206,13 +309,16 @@ final class MarketRecords {
         } catch (RuntimeException e) {
             batch = Math.max(1, item.getAmount());
         }
-        return new ChestShopShopRecord(
+        BigDecimal buyPrice = nonNegativeOrNull(PriceUtil.getExactBuyPrice(priceLine));
+        BigDecimal sellPrice = nonNegativeOrNull(PriceUtil.getExactSellPrice(priceLine));
+        Integer stock = owner.admin() ? null : currentStock;
+        ChestShopShopRecord record = new ChestShopShopRecord(
                 worldName(l), l.getBlockX(), l.getBlockY(), l.getBlockZ(), owner.admin(),
                 owner.accountId(), owner.type(), owner.firmId(), owner.ownerUuid(),
-                item.getType().name(), itemKey(item), itemName(item), isCustom(item), itemData(item),
-                nonNegativeOrNull(PriceUtil.getExactBuyPrice(priceLine)),
-                nonNegativeOrNull(PriceUtil.getExactSellPrice(priceLine)),
-                batch, owner.admin() ? null : currentStock);
+                descriptor.material(), descriptor.key(), descriptor.name(), descriptor.custom(), catalogued(descriptor),
+                buyPrice, sellPrice, batch, stock);
+        return new ShopUpsert(record, new ShopState(descriptor.key(), owner, buyPrice, sellPrice, batch), stock,
+                descriptor.fingerprint());
     }
 
     static int totalAmount(ItemStack[] stock) {
@@ -0,0 +1,528 @@
+package com.Acrobot.ChestShop.Market;
+
+import com.Acrobot.Breeze.Utils.MaterialUtil;
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Messages;
+import com.Acrobot.ChestShop.Configuration.Properties;
+import com.Acrobot.ChestShop.Database.Account;
+import com.Acrobot.ChestShop.Events.AccountQueryEvent;
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import com.Acrobot.ChestShop.Utils.uBlock;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.Sign;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Walks the chunks of a world and registers every shop found there with the
+ * market database, deactivating shops which were registered by an earlier
+ * resync but are gone now.
+ *
+ * <p>Chunks are scanned on the main thread at a configurable rate, reading the
+ * sign and container state of each shop. Classifying the owner and building the
+ * records happens on a separate thread, the records go through the
+ * {@link MarketWriter} like any other shop write. The job pauses while the
+ * writer is backed up.</p>
+ *
+ * <p>The chunk list and position are saved regularly, so a job that was
+ * cancelled or interrupted by a restart continues where it stopped when it is
+ * started again for the same world. The shops found per chunk are kept per
+ * world to know which ones disappeared.</p>
+ */
+public final class MarketResync {
+
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    private static final int CHECKPOINT_INTERVAL = 256;
+    private static final int MAX_PENDING = 1000;
+
+    private static MarketResync current;
+
+    /**
+     * The state of a shop read on the main thread
+     */
+    private record ShopSnapshot(MarketWriter.ShopKey key, Sign sign, ItemStack item, ItemDescriptor descriptor,
+                                boolean admin, UUID ownerUuid, Integer stock) {}
+
+    private final CommandSender sender;
+    private final String worldName;
+    private final boolean stored;
+    private final long[] chunks;
+    private final Map<Long, Set<MarketWriter.ShopKey>> registry;
+    private final Map<String, ItemStack> parsedItems = new HashMap<>();
+    private final ThreadPoolExecutor worker;
+
+    private int cursor;
+    private long shopsFound;
+    private long shopsRemoved;
+    private int lastReported;
+    private BukkitTask task;
+
+    private MarketResync(CommandSender sender, String worldName, boolean stored, long[] chunks, int cursor,
+                         long shopsFound, long shopsRemoved, Map<Long, Set<MarketWriter.ShopKey>> registry) {
+        this.sender = sender;
+        this.worldName = worldName;
+        this.stored = stored;
+        this.chunks = chunks;
+        this.cursor = cursor;
+        this.shopsFound = shopsFound;
+        this.shopsRemoved = shopsRemoved;
+        this.registry = registry;
+        this.lastReported = progress();
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "ChestShop market resync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a resync of a world, or resume the interrupted one of that world
+     *
+     * @param sender The sender to report the progress to
+     * @param world  The world to scan
+     * @param stored Whether chunks which aren't loaded should be loaded and scanned too
+     */
+    public static void start(CommandSender sender, World world, boolean stored) {
+        if (!MarketHook.enabled()) {
+            Messages.MARKET_RESYNC_UNAVAILABLE.send(sender);
+            return;
+        }
+        if (current != null) {
+            Messages.MARKET_RESYNC_RUNNING.send(sender, "world", current.worldName, "progress", String.valueOf(current.progress()));
+            return;
+        }
+
+        MarketResync job = null;
+        try {
+            job = resume(sender, world, stored);
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to resume the market resync, starting over", e);
+        }
+        if (job == null) {
+            long[] chunks = stored ? storedChunks(world) : loadedChunks(world);
+            job = new MarketResync(sender, world.getName(), stored, chunks, 0, 0, 0, loadRegistry(world.getName()));
+            Messages.MARKET_RESYNC_STARTED.send(sender, "world", world.getName(), "chunks", String.valueOf(chunks.length));
+        } else {
+            Messages.MARKET_RESYNC_RESUMED.send(sender, "world", world.getName(), "progress", String.valueOf(job.progress()));
+        }
+
+        current = job;
+        job.task = Bukkit.getScheduler().runTaskTimer(ChestShop.getPlugin(), job::tick, 1, 1);
+    }
+
+    /**
+     * Stop the running resync, keeping its progress so it can be resumed
+     *
+     * @param sender The sender who cancelled it, or null when the plugin is disabled
+     */
+    public static void cancel(CommandSender sender) {
+        if (current == null) {
+            if (sender != null) {
+                Messages.MARKET_RESYNC_NOT_RUNNING.send(sender);
+            }
+            return;
+        }
+        MarketResync job = current;
+        current = null;
+        job.task.cancel();
+        job.checkpoint();
+        // When disabling, the queued shops have to reach the writer before it is closed
+        job.shutdownWorker(sender == null);
+        if (sender != null) {
+            Messages.MARKET_RESYNC_CANCELLED.send(sender, "world", job.worldName, "progress", String.valueOf(job.progress()));
+        }
+    }
+
+    /**
+     * Report the progress of the running resync
+     */
+    public static void status(CommandSender sender) {
+        if (current == null) {
+            Messages.MARKET_RESYNC_NOT_RUNNING.send(sender);
+            return;
+        }
+        current.report(sender);
+    }
+
+    private void tick() {
+        MarketWriter writer = MarketHook.writer();
+        if (writer == null) {
+            cancel(null);
+            return;
+        }
+        if (writer.getPendingShops() > MAX_PENDING || worker.getQueue().size() > MAX_PENDING) {
+            // Let the writer catch up first
+            return;
+        }
+
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            cancel(sender);
+            return;
+        }
+
+        for (int i = 0; i < Properties.MARKET_RESYNC_CHUNKS_PER_TICK && cursor < chunks.length; i++) {
+            long chunkKey = chunks[cursor++];
+            try {
+                scan(world, writer, chunkKey);
+            } catch (RuntimeException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to resync market shops in chunk "
+                        + chunkX(chunkKey) + ", " + chunkZ(chunkKey) + " of " + worldName, e);
+            }
+            if (cursor % CHECKPOINT_INTERVAL == 0) {
+                checkpoint();
+            }
+        }
+
+        int progress = progress();
+        if (progress / 10 > lastReported / 10) {
+            lastReported = progress;
+            report(sender);
+        }
+
+        if (cursor >= chunks.length) {
+            current = null;
+            task.cancel();
+            Map<Long, Set<MarketWriter.ShopKey>> registryCopy = copyRegistry();
+            worker.execute(() -> {
+                saveRegistry(worldName, registryCopy);
+                stateFile().delete();
+            });
+            shutdownWorker(false);
+            if (isOnline(sender)) {
+                Messages.MARKET_RESYNC_FINISHED.send(sender, "world", worldName,
+                        "shops", String.valueOf(shopsFound), "removed", String.valueOf(shopsRemoved));
+            }
+            ChestShop.getBukkitLogger().info("Market resync of " + worldName + " finished: " + shopsFound
+                    + " shop(s) found, " + shopsRemoved + " removed.");
+        }
+    }
+
+    private void scan(World world, MarketWriter writer, long chunkKey) {
+        int x = chunkX(chunkKey);
+        int z = chunkZ(chunkKey);
+        boolean loaded = world.isChunkLoaded(x, z);
+        if (!loaded && (!stored || !world.isChunkGenerated(x, z))) {
+            return;
+        }
+
+        Chunk chunk = world.getChunkAt(x, z);
+        List<ShopSnapshot> shops = new ArrayList<>();
+        for (BlockState state : chunk.getTileEntities()) {
+            if (state instanceof Sign sign && ChestShopSign.isValid(sign)) {
+                ShopSnapshot shop = snapshot(sign);
+                if (shop != null) {
+                    shops.add(shop);
+                }
+            }
+        }
+        if (!loaded) {
+            world.unloadChunkRequest(x, z);
+        }
+
+        Set<MarketWriter.ShopKey> found = new HashSet<>();
+        for (ShopSnapshot shop : shops) {
+            found.add(shop.key());
+        }
+        Set<MarketWriter.ShopKey> previous = found.isEmpty() ? registry.remove(chunkKey) : registry.put(chunkKey, found);
+        if (previous != null) {
+            for (MarketWriter.ShopKey key : previous) {
+                if (!found.contains(key)) {
+                    writer.deactivateShop(key);
+                    shopsRemoved++;
+                }
+            }
+        }
+        shopsFound += shops.size();
+
+        if (!shops.isEmpty()) {
+            worker.execute(() -> {
+                for (ShopSnapshot shop : shops) {
+                    try {
+                        MarketRecords.Owner owner = MarketRecords.ownerFromUuid(shop.ownerUuid(), shop.admin());
+                        writer.upsertShop(shop.key(), MarketRecords.shop(shop.sign(), shop.item(), shop.descriptor(),
+                                owner, shop.stock()));
+                    } catch (Throwable t) {
+                        ChestShop.getBukkitLogger().log(Level.FINE, "Unable to resync market shop at " + shop.key(), t);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Read everything about a shop that needs the main thread
+     *
+     * @return The snapshot or null if the shop's item or owner can't be resolved
+     */
+    private ShopSnapshot snapshot(Sign sign) {
+        String itemName = ChestShopSign.getItem(sign);
+        ItemStack item = itemName != null ? parsedItems.computeIfAbsent(itemName, MaterialUtil::getItem) : null;
+        if (item == null) {
+            return null;
+        }
+
+        boolean admin = ChestShopSign.isAdminShop(sign);
+        UUID ownerUuid = null;
+        Integer stock = null;
+        if (!admin) {
+            String owner = ChestShopSign.getOwner(sign);
+            if (ChestShopSign.isBusinessAccount(owner)) {
+                ownerUuid = new UUID(MarketRecords.BUSINESS_UUID_MSB, ChestShopSign.getBusinessAccountId(owner));
+            } else {
+                Account account = ChestShop.callEvent(new AccountQueryEvent(owner)).getAccount();
+                if (account == null) {
+                    return null;
+                }
+                ownerUuid = account.getUuid();
+            }
+            Container container = uBlock.findConnectedContainer(sign);
+            stock = container != null ? MarketRecords.stockOf(item, container.getInventory()) : 0;
+        }
+        return new ShopSnapshot(MarketWriter.ShopKey.of(sign.getLocation()), sign, item, MarketRecords.describe(item),
+                admin, ownerUuid, stock);
+    }
+
+    private int progress() {
+        return chunks.length == 0 ? 100 : (int) (cursor * 100L / chunks.length);
+    }
+
+    private void report(CommandSender target) {
+        if (isOnline(target)) {
+            Messages.MARKET_RESYNC_PROGRESS.send(target, "world", worldName, "progress", String.valueOf(progress()),
+                    "chunk", String.valueOf(cursor), "chunks", String.valueOf(chunks.length),
+                    "shops", String.valueOf(shopsFound), "removed", String.valueOf(shopsRemoved));
+        }
+    }
+
+    private static boolean isOnline(CommandSender sender) {
+        return sender != null && (!(sender instanceof Player) || ((Player) sender).isOnline());
+    }
+
+    private void shutdownWorker(boolean wait) {
+        worker.shutdown();
+        if (wait) {
+            try {
+                worker.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    // ── chunk lists ──
+
+    private static long chunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int chunkZ(long key) {
+        return (int) key;
+    }
+
+    private static long[] loadedChunks(World world) {
+        Chunk[] loaded = world.getLoadedChunks();
+        long[] chunks = new long[loaded.length];
+        for (int i = 0; i < loaded.length; i++) {
+            chunks[i] = chunkKey(loaded[i].getX(), loaded[i].getZ());
+        }
+        return chunks;
+    }
+
+    /**
+     * @return All chunks covered by the region files of the world
+     */
+    private static long[] storedChunks(World world) {
+        File regionFolder;
+        switch (world.getEnvironment()) {
+            case NETHER:
+                regionFolder = new File(world.getWorldFolder(), "DIM-1/region");
+                break;
+            case THE_END:
+                regionFolder = new File(world.getWorldFolder(), "DIM1/region");
+                break;
+            default:
+                regionFolder = new File(world.getWorldFolder(), "region");
+        }
+
+        List<Long> chunks = new ArrayList<>();
+        File[] regions = regionFolder.listFiles();
+        if (regions != null) {
+            for (File region : regions) {
+                Matcher matcher = REGION_FILE.matcher(region.getName());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int regionX = Integer.parseInt(matcher.group(1));
+                int regionZ = Integer.parseInt(matcher.group(2));
+                for (int x = 0; x < 32; x++) {
+                    for (int z = 0; z < 32; z++) {
+                        chunks.add(chunkKey(regionX * 32 + x, regionZ * 32 + z));
+                    }
+                }
+            }
+        }
+        chunks.sort(null);
+        long[] result = new long[chunks.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chunks.get(i);
+        }
+        return result;
+    }
+
+    // ── persistence ──
+
+    private static File stateFile() {
+        return new File(ChestShop.getFolder(), "market-resync.dat");
+    }
+
+    private static File registryFile(String world) {
+        return new File(ChestShop.getFolder(), "market-resync-" + world + ".shops");
+    }
+
+    /**
+     * Save the position of the job and the shops found so far, off the main thread
+     */
+    private void checkpoint() {
+        int position = cursor;
+        long found = shopsFound;
+        long removed = shopsRemoved;
+        Map<Long, Set<MarketWriter.ShopKey>> registryCopy = copyRegistry();
+        worker.execute(() -> {
+            saveRegistry(worldName, registryCopy);
+            File file = stateFile();
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp.toPath()))) {
+                out.writeUTF(worldName);
+                out.writeBoolean(stored);
+                out.writeInt(position);
+                out.writeLong(found);
+                out.writeLong(removed);
+                out.writeInt(chunks.length);
+                for (long chunk : chunks) {
+                    out.writeLong(chunk);
+                }
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to save the market resync progress", e);
+                return;
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to save the market resync progress", e);
+            }
+        });
+    }
+
+    /**
+     * @return The saved job of the world, or null if there is none for that world and mode
+     */
+    private static MarketResync resume(CommandSender sender, World world, boolean stored) throws IOException {
+        File file = stateFile();
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            String worldName = in.readUTF();
+            boolean savedStored = in.readBoolean();
+            if (!worldName.equals(world.getName()) || savedStored != stored) {
+                return null;
+            }
+            int cursor = in.readInt();
+            long found = in.readLong();
+            long removed = in.readLong();
+            long[] chunks = new long[in.readInt()];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = in.readLong();
+            }
+            return new MarketResync(sender, worldName, stored, chunks, Math.min(cursor, chunks.length), found, removed,
+                    loadRegistry(worldName));
+        }
+    }
+
+    private Map<Long, Set<MarketWriter.ShopKey>> copyRegistry() {
+        Map<Long, Set<MarketWriter.ShopKey>> copy = new HashMap<>();
+        for (Map.Entry<Long, Set<MarketWriter.ShopKey>> entry : registry.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static Map<Long, Set<MarketWriter.ShopKey>> loadRegistry(String world) {
+        Map<Long, Set<MarketWriter.ShopKey>> registry = new HashMap<>();
+        File file = registryFile(world);
+        if (!file.exists()) {
+            return registry;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3) {
+                    continue;
+                }
+                try {
+                    int x = Integer.parseInt(parts[0]);
+                    int y = Integer.parseInt(parts[1]);
+                    int z = Integer.parseInt(parts[2]);
+                    registry.computeIfAbsent(chunkKey(x >> 4, z >> 4), k -> new HashSet<>())
+                            .add(new MarketWriter.ShopKey(world, x, y, z));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to load the market shops of " + world + ", removed shops won't be detected", e);
+        }
+        return registry;
+    }
+
+    private static void saveRegistry(String world, Map<Long, Set<MarketWriter.ShopKey>> registry) {
+        File file = registryFile(world);
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Set<MarketWriter.ShopKey> keys : registry.values()) {
+                for (MarketWriter.ShopKey key : keys) {
+                    writer.write(key.x() + " " + key.y() + " " + key.z() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to save the market shops of " + world, e);
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to save the market shops of " + world, e);
+        }
+    }
+}
@@ -0,0 +1,686 @@
+package com.Acrobot.ChestShop.Market;
+
+import com.Acrobot.ChestShop.ChestShop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local spool for market writes.
+ *
+ * <p>Entries are appended to numbered segment files in the spool folder and a
+ * background replayer hands them to a {@link Sink} in the order they were
+ * appended. A sink failing with a connection problem is retried with an increasing
+ * delay, the entry is only dropped from the spool once the sink accepted it. An
+ * entry that keeps failing for any other reason, or that the sink can't write at
+ * all, is moved to the {@code dead-letter} file so it doesn't hold up the rest of
+ * the spool. The segment files are forced to disk in batches on a fixed interval
+ * instead of on every append.</p>
+ *
+ * <p>Entry layout: {@code length (int) | crc32 (int) | type (byte) | id (short + UTF-8) | data}.
+ * The length and CRC cover everything after the CRC. A torn entry at the end of
+ * the newest segment is cut off when the spool is opened. The replay position is
+ * kept in a small {@code cursor} file which is forced to disk after every entry.
+ * An entry whose write went through right before a crash is still written again
+ * after the restart, the sink has to recognise it by its unique key (e.g. the
+ * transaction id of a sale). The id of an entry is only passed back to the sink,
+ * e.g. to find out which entry was written.</p>
+ */
+public final class MarketSpool {
+
+    /**
+     * Receives the entries of the spool in order
+     */
+    interface Sink {
+        /**
+         * @param type The type the entry was appended with
+         * @param id   The id the entry was appended with, or null
+         * @param data The payload
+         * @throws UnwritableEntryException if the entry can never be written
+         * @throws Exception if the entry couldn't be written, it is retried later in that case
+         */
+        void write(byte type, String id, byte[] data) throws Exception;
+    }
+
+    /**
+     * Thrown by a {@link Sink} for an entry which can't be written no matter how often it's retried
+     */
+    static final class UnwritableEntryException extends Exception {
+        UnwritableEntryException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DEAD_LETTER_FILE = "dead-letter";
+    private static final int HEADER_SIZE = 8;
+    /** How often an entry is tried before it's moved to the dead letter file, unless the failure is a connection problem */
+    private static final int DEAD_LETTER_ATTEMPTS = 3;
+    private static final long MIN_RETRY_DELAY = 500;
+    private static final long MAX_RETRY_DELAY = 30000;
+
+    private static final class Entry {
+        private final byte type;
+        private final String id;
+        private final byte[] data;
+        private final long end;
+
+        private Entry(byte type, String id, byte[] data, long end) {
+            this.type = type;
+            this.id = id;
+            this.data = data;
+            this.end = end;
+        }
+    }
+
+    private final File folder;
+    private final Sink sink;
+    private final long segmentSize;
+    private final long fsyncInterval;
+
+    private final Object signal = new Object();
+
+    // Guarded by this
+    private FileChannel activeChannel;
+    private long activeIndex;
+    private long activeSize;
+    private boolean dirty;
+    private boolean closed;
+
+    // Only used by the replayer thread
+    private FileChannel readChannel;
+    private long readIndex;
+    private long readOffset;
+    private RandomAccessFile cursor;
+
+    private ScheduledExecutorService fsyncExecutor;
+    private Thread replayer;
+    private volatile boolean running;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong corrupted = new AtomicLong();
+    private volatile long lastReplay = 0;
+    private volatile String lastError = null;
+    private volatile boolean retrying = false;
+
+    MarketSpool(File folder, Sink sink, long segmentSize, long fsyncIntervalMillis) {
+        this.folder = folder;
+        this.sink = sink;
+        this.segmentSize = Math.max(HEADER_SIZE * 2, segmentSize);
+        this.fsyncInterval = Math.max(1, fsyncIntervalMillis);
+    }
+
+    /**
+     * Recover the spool from disk and start the replayer
+     *
+     * @throws IOException if the spool folder or its files couldn't be opened
+     */
+    synchronized void open() throws IOException {
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Unable to create the spool folder " + folder);
+        }
+
+        // Every write to the cursor goes to the disk before the next entry is replayed
+        cursor = new RandomAccessFile(new File(folder, "cursor"), "rwd");
+        List<Long> segments = listSegments();
+        if (cursor.length() >= 16) {
+            readIndex = cursor.readLong();
+            readOffset = cursor.readLong();
+        } else {
+            readIndex = segments.isEmpty() ? 0 : segments.get(0);
+            readOffset = 0;
+        }
+
+        for (long index : segments) {
+            if (index < readIndex) {
+                segmentFile(index).delete();
+            }
+        }
+        segments.removeIf(index -> index < readIndex);
+
+        if (segments.isEmpty()) {
+            activeIndex = readIndex;
+            readOffset = 0;
+        } else {
+            activeIndex = segments.get(segments.size() - 1);
+            if (segments.get(0) != readIndex) {
+                // The segment we were reading is gone, continue with the oldest one that is left
+                readIndex = segments.get(0);
+                readOffset = 0;
+            }
+        }
+
+        File active = segmentFile(activeIndex);
+        activeChannel = FileChannel.open(active.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = scan(activeChannel, 0, activeChannel.size(), null);
+        if (valid < activeChannel.size()) {
+            ChestShop.getBukkitLogger().warning("Cut off " + (activeChannel.size() - valid) + " bytes of an incomplete entry from the market spool.");
+            activeChannel.truncate(valid);
+            activeChannel.force(true);
+        }
+        activeSize = valid;
+        activeChannel.position(activeSize);
+        readOffset = Math.min(readOffset, readIndex == activeIndex ? activeSize : Long.MAX_VALUE);
+        writeCursor();
+
+        long recovered = 0;
+        for (long index : segments) {
+            if (index == activeIndex) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentFile(index).toPath(), StandardOpenOption.READ)) {
+                AtomicLong count = new AtomicLong();
+                scan(channel, index == readIndex ? readOffset : 0, channel.size(), count);
+                recovered += count.get();
+            }
+        }
+        AtomicLong count = new AtomicLong();
+        scan(activeChannel, readIndex == activeIndex ? readOffset : 0, activeSize, count);
+        recovered += count.get();
+        pending.set(recovered);
+        if (recovered > 0) {
+            ChestShop.getBukkitLogger().info("Replaying " + recovered + " spooled market record(s).");
+        }
+
+        running = true;
+        fsyncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ChestShop market spool fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fsyncExecutor.scheduleWithFixedDelay(this::sync, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS);
+        replayer = new Thread(this::replay, "ChestShop market spool replayer");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    /**
+     * Append an entry to the spool. The entry is written to the segment file
+     * right away and forced to disk with the next fsync batch.
+     *
+     * @param type The type of the entry, passed to the sink
+     * @param id   An id which is passed back to the sink, or null
+     * @param data The payload
+     * @throws IOException if the entry couldn't be written, it isn't spooled in that case
+     */
+    void append(byte type, String id, byte[] data) throws IOException {
+        ByteBuffer buffer = encode(type, id, data);
+        int length = buffer.remaining() - HEADER_SIZE;
+
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("The market spool is closed");
+            }
+            if (activeSize > 0 && activeSize + buffer.remaining() > segmentSize) {
+                roll();
+            }
+            while (buffer.hasRemaining()) {
+                activeChannel.write(buffer);
+            }
+            activeSize += HEADER_SIZE + length;
+            dirty = true;
+        }
+        appended.incrementAndGet();
+        pending.incrementAndGet();
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    private static ByteBuffer encode(byte type, String id, byte[] data) {
+        byte[] idBytes = id != null ? id.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = 1 + 2 + idBytes.length + data.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putShort((short) idBytes.length);
+        buffer.put(idBytes);
+        buffer.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private void roll() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        activeIndex++;
+        activeChannel = FileChannel.open(segmentFile(activeIndex).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = activeChannel.size();
+        activeChannel.position(activeSize);
+        dirty = false;
+    }
+
+    private synchronized void sync() {
+        if (!dirty || closed) {
+            return;
+        }
+        try {
+            activeChannel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to sync the market spool", e);
+        }
+    }
+
+    /**
+     * @return The number of readable bytes of the given segment, or -1 if it isn't written to anymore
+     */
+    private synchronized long readLimit(long index) {
+        return index == activeIndex ? activeSize : -1;
+    }
+
+    private void replay() {
+        long delay = MIN_RETRY_DELAY;
+        int attempts = 0;
+        while (running) {
+            Entry entry;
+            try {
+                entry = next();
+            } catch (IOException e) {
+                lastError = e.getMessage();
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to read the market spool", e);
+                pause(MAX_RETRY_DELAY);
+                continue;
+            }
+
+            if (entry == null) {
+                synchronized (signal) {
+                    if (running && readLimit(readIndex) == readOffset) {
+                        try {
+                            signal.wait(1000);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                continue;
+            }
+
+            try {
+                sink.write(entry.type, entry.id, entry.data);
+            } catch (Throwable t) {
+                retries.incrementAndGet();
+                lastError = t.getClass().getSimpleName() + (t.getMessage() != null ? ": " + t.getMessage() : "");
+                boolean connection = isConnectionProblem(t);
+                attempts++;
+                if (!connection && (t instanceof UnwritableEntryException || attempts >= DEAD_LETTER_ATTEMPTS)
+                        && deadLetter(entry, attempts, t)) {
+                    attempts = 0;
+                    advance(entry);
+                    continue;
+                }
+                if (!retrying) {
+                    ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to write to the market database, "
+                            + "records are kept in the spool and retried", t);
+                }
+                retrying = true;
+                if (connection) {
+                    pause(delay);
+                    delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+                } else {
+                    pause(MIN_RETRY_DELAY);
+                }
+                continue;
+            }
+
+            if (retrying) {
+                ChestShop.getBukkitLogger().info("The market database is reachable again, replaying " + pending.get() + " spooled record(s).");
+                retrying = false;
+            }
+            delay = MIN_RETRY_DELAY;
+            attempts = 0;
+            replayed.incrementAndGet();
+            lastReplay = System.currentTimeMillis();
+            advance(entry);
+        }
+    }
+
+    /**
+     * Whether a failure is caused by the database being unreachable or overloaded,
+     * in which case the entry itself is fine and just has to wait
+     */
+    private static boolean isConnectionProblem(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof TimeoutException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                    && ((SQLException) cause).getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Append an entry that can't be written to the dead letter file, in the same format as the segments
+     *
+     * @return Whether the entry was moved, it stays in the spool otherwise
+     */
+    private boolean deadLetter(Entry entry, int attempts, Throwable error) {
+        ByteBuffer buffer = encode(entry.type, entry.id, entry.data);
+        try (FileChannel channel = FileChannel.open(new File(folder, DEAD_LETTER_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to write to the market spool dead letter file", e);
+            return false;
+        }
+        deadLettered.incrementAndGet();
+        ChestShop.getBukkitLogger().log(Level.WARNING, "Moved a market record of type " + entry.type
+                + " to the dead letter file after " + attempts + " failed attempt(s)", error);
+        return true;
+    }
+
+    private void pause(long millis) {
+        synchronized (signal) {
+            try {
+                signal.wait(millis);
+            } catch (InterruptedException ignored) {
+                running = false;
+            }
+        }
+    }
+
+    private void advance(Entry entry) {
+        readOffset = entry.end;
+        pending.decrementAndGet();
+        try {
+            writeCursor();
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to update the market spool cursor", e);
+        }
+    }
+
+    /**
+     * Read the entry at the replay position, moving on to the next segment when the current one is done
+     *
+     * @return The entry or null if there is nothing to replay right now
+     */
+    private Entry next() throws IOException {
+        while (true) {
+            long limit = readLimit(readIndex);
+            if (readChannel == null) {
+                File file = segmentFile(readIndex);
+                if (!file.exists()) {
+                    if (limit >= 0) {
+                        return null;
+                    }
+                    nextSegment();
+                    continue;
+                }
+                readChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            long end = limit >= 0 ? limit : readChannel.size();
+
+            if (readOffset + HEADER_SIZE > end) {
+                if (limit >= 0) {
+                    return null;
+                }
+                nextSegment();
+                continue;
+            }
+
+            Entry entry = read(readChannel, readOffset, end);
+            if (entry == null) {
+                corrupted.incrementAndGet();
+                ChestShop.getBukkitLogger().warning("Skipping the rest of market spool segment " + readIndex + ", it is corrupted at " + readOffset);
+                readOffset = end;
+                writeCursor();
+                continue;
+            }
+            return entry;
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        segmentFile(readIndex).delete();
+        readIndex++;
+        readOffset = 0;
+        writeCursor();
+    }
+
+    private void writeCursor() throws IOException {
+        byte[] position = ByteBuffer.allocate(16).putLong(readIndex).putLong(readOffset).array();
+        cursor.seek(0);
+        cursor.write(position);
+    }
+
+    /**
+     * Read one entry and check its CRC
+     *
+     * @return The entry or null if it is incomplete or corrupted
+     */
+    private static Entry read(FileChannel channel, long offset, long end) throws IOException {
+        if (offset + HEADER_SIZE > end) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, offset);
+        header.flip();
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length < 3 || offset + HEADER_SIZE + length > end) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(channel, body, offset + HEADER_SIZE);
+        CRC32 check = new CRC32();
+        check.update(body.array(), 0, length);
+        if ((int) check.getValue() != crc) {
+            return null;
+        }
+
+        body.flip();
+        byte type = body.get();
+        int idLength = body.getShort() & 0xFFFF;
+        if (idLength > body.remaining()) {
+            return null;
+        }
+        byte[] id = new byte[idLength];
+        body.get(id);
+        byte[] data = new byte[body.remaining()];
+        body.get(data);
+        return new Entry(type, idLength > 0 ? new String(id, StandardCharsets.UTF_8) : null, data, offset + HEADER_SIZE + length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of a market spool segment");
+            }
+        }
+    }
+
+    /**
+     * @return The offset after the last valid entry in the range
+     */
+    private static long scan(FileChannel channel, long offset, long end, AtomicLong count) throws IOException {
+        Entry entry;
+        while ((entry = read(channel, offset, end)) != null) {
+            offset = entry.end;
+            if (count != null) {
+                count.incrementAndGet();
+            }
+        }
+        return offset;
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    segments.add(Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private File segmentFile(long index) {
+        return new File(folder, String.format("%020d", index) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Stop accepting entries, give the replayer some time to catch up and close the spool.
+     * Whatever wasn't replayed yet stays in the spool for the next start.
+     *
+     * @param drainMillis How long to wait for the replayer
+     */
+    void close(long drainMillis) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+
+        long deadline = System.currentTimeMillis() + drainMillis;
+        while (pending.get() > 0 && !retrying && System.currentTimeMillis() < deadline) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        running = false;
+        if (fsyncExecutor != null) {
+            fsyncExecutor.shutdown();
+        }
+        if (replayer != null) {
+            replayer.interrupt();
+            try {
+                replayer.join(5000);
+            } catch (InterruptedException ignored) {}
+        }
+
+        synchronized (this) {
+            try {
+                activeChannel.force(true);
+                activeChannel.close();
+                if (readChannel != null) {
+                    readChannel.close();
+                }
+                cursor.close();
+            } catch (IOException e) {
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to close the market spool", e);
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries which weren't replayed yet
+     */
+    public long getPending() {
+        return Math.max(0, pending.get());
+    }
+
+    /**
+     * @return The number of segment files on disk
+     */
+    public int getSegments() {
+        return listSegments().size();
+    }
+
+    /**
+     * @return The size of all segment files on disk, in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return The number of entries which were moved to the dead letter file
+     */
+    public long getDeadLettered() {
+        return deadLettered.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getCorrupted() {
+        return corrupted.get();
+    }
+
+    /**
+     * @return Whether the last write to the sink failed and is being retried
+     */
+    public boolean isRetrying() {
+        return retrying;
+    }
+
+    /**
+     * @return The time of the last successful replay in epoch milliseconds, 0 if there was none
+     */
+    public long getLastReplay() {
+        return lastReplay;
+    }
+
+    /**
+     * @return The last error of the sink, or null
+     */
+    public String getLastError() {
+        return lastError;
+    }
+}
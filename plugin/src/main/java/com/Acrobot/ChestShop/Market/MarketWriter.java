@@ -0,0 +1,551 @@
+package com.Acrobot.ChestShop.Market;
+
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Configuration.Properties;
+import net.democracycraft.treasury.api.MarketApi;
+import net.democracycraft.treasury.api.market.ChestShopSaleRecord;
+import net.democracycraft.treasury.api.market.ChestShopShopRecord;
+import org.bukkit.Location;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Writes market records to the {@link MarketApi} off the main thread.
+ *
+ * <p>Sales are appended to a bounded queue and written in batches. Shop writes
+ * are coalesced per shop location so that only the latest state is written:
+ * a full upsert, the latest stock count, or the deactivation of the shop. When
+ * the sale queue is full new sales are dropped and counted rather than
+ * blocking the main thread.</p>
+ *
+ * <p>The writer remembers what it last sent for every shop. An upsert whose
+ * shop didn't change apart from its stock is sent as a stock update, and one
+ * that didn't change at all is skipped. Full records are only sent for new
+ * shops and when the item, owner, prices or batch size changed.</p>
+ *
+ * <p>With a {@link MarketSpool} sales are appended to the spool right away and
+ * the coalesced shop writes are appended on every flush. The spool's replayer
+ * is then the only one talking to the {@link MarketApi}, so records survive an
+ * unreachable market database as well as a restart. The in-memory path is only
+ * used when the spool can't be written to.</p>
+ */
+public final class MarketWriter {
+
+    record ShopKey(String world, int x, int y, int z) {
+        static ShopKey of(Location location) {
+            return new ShopKey(location.getWorld() != null ? location.getWorld().getName() : null,
+                    location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+    }
+
+    /**
+     * The latest not yet written state of one shop
+     */
+    private static final class ShopWrite {
+        private MarketRecords.ShopUpsert upsert;
+        private Integer stock;
+        private boolean deactivate;
+    }
+
+    /**
+     * What was last written for a shop
+     */
+    private record SentShop(MarketRecords.ShopState state, Integer stock) {}
+
+    /**
+     * The spooled form of a stock update
+     */
+    record ShopStock(String world, int x, int y, int z, int stock) {}
+
+    static final byte SPOOL_SALE = 1;
+    static final byte SPOOL_SHOP = 2;
+    static final byte SPOOL_STOCK = 3;
+    static final byte SPOOL_DEACTIVATE = 4;
+
+    /**
+     * A queued sale and the fingerprint of its item
+     */
+    private record PendingSale(ChestShopSaleRecord sale, String item) {}
+
+    /**
+     * What to remember once a spooled record was written
+     *
+     * @param shop  The shop the record belongs to, or null
+     * @param sent  The full state of the shop which the record writes, or null
+     * @param stock The stock of the shop which the record writes, or null
+     * @param item  The fingerprint of the item whose data the record carries, or null
+     */
+    private record Spooled(ShopKey shop, SentShop sent, Integer stock, String item) {
+        private Spooled withoutShop() {
+            return new Spooled(null, null, null, item);
+        }
+    }
+
+    private static final int BATCH_SIZE = 256;
+
+    private final MarketApi market;
+    private final ItemCatalogue catalogue;
+    private final BlockingQueue<PendingSale> sales;
+    private final Map<ShopKey, ShopWrite> shops = new LinkedHashMap<>();
+    /** What was last written for the most recently used shops */
+    private final Map<ShopKey, SentShop> sentShops = Collections.synchronizedMap(
+            new LinkedHashMap<ShopKey, SentShop>(Properties.CACHE_SIZE * 10 / 9, 0.7f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ShopKey, SentShop> eldest) {
+                    return size() > Properties.CACHE_SIZE;
+                }
+            });
+    private final ScheduledExecutorService executor;
+    private final MarketSpool spool;
+    private final Object writeLock = new Object();
+
+    /** Prefix of the spool entry ids of this writer, entries of earlier runs aren't tracked */
+    private final String session = Long.toString(System.currentTimeMillis(), 36);
+    private long spoolSequence = 0;
+    /** Spooled records which weren't written yet, by the sequence number in their entry id */
+    private final ConcurrentSkipListMap<Long, Spooled> unconfirmed = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong salesWritten = new AtomicLong();
+    private final AtomicLong salesDropped = new AtomicLong();
+    private final AtomicLong shopWrites = new AtomicLong();
+    private final AtomicLong shopWritesCoalesced = new AtomicLong();
+    private final AtomicLong shopWritesSkipped = new AtomicLong();
+    private final AtomicLong stockOnlyWrites = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastFlushNanos = 0;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    MarketWriter(MarketApi market, ItemCatalogue catalogue, int queueSize, long flushIntervalMillis,
+                 File spoolFolder, long segmentSize, long fsyncIntervalMillis) {
+        this.market = market;
+        this.catalogue = catalogue;
+        this.sales = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.spool = spoolFolder != null ? openSpool(spoolFolder, segmentSize, fsyncIntervalMillis) : null;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ChestShop market writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private MarketSpool openSpool(File folder, long segmentSize, long fsyncIntervalMillis) {
+        try {
+            MarketRecordCodec.validate(ChestShopSaleRecord.class);
+            MarketRecordCodec.validate(ChestShopShopRecord.class);
+            MarketSpool spool = new MarketSpool(folder, this::replay, segmentSize, fsyncIntervalMillis);
+            spool.open();
+            return spool;
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to open the market spool, market records are only kept in memory", e);
+            return null;
+        }
+    }
+
+    /**
+     * Write a spooled entry to the market database
+     *
+     * @throws MarketSpool.UnwritableEntryException if the entry can't be decoded
+     */
+    private void replay(byte type, String id, byte[] data) throws MarketSpool.UnwritableEntryException {
+        Record decoded;
+        try {
+            switch (type) {
+                case SPOOL_SALE:
+                    decoded = MarketRecordCodec.decode(ChestShopSaleRecord.class, data);
+                    break;
+                case SPOOL_SHOP:
+                    decoded = MarketRecordCodec.decode(ChestShopShopRecord.class, data);
+                    break;
+                case SPOOL_STOCK:
+                    decoded = MarketRecordCodec.decode(ShopStock.class, data);
+                    break;
+                case SPOOL_DEACTIVATE:
+                    decoded = MarketRecordCodec.decode(ShopKey.class, data);
+                    break;
+                default:
+                    throw new IOException("Unknown entry type " + type);
+            }
+        } catch (IOException e) {
+            // Retrying won't make it readable, the spool moves it to its dead letter file
+            throw new MarketSpool.UnwritableEntryException("Unable to decode spooled market record of type " + type, e);
+        }
+
+        if (decoded instanceof ChestShopSaleRecord sale) {
+            market.recordSale(sale);
+            salesWritten.incrementAndGet();
+        } else if (decoded instanceof ChestShopShopRecord shop) {
+            market.upsertShop(shop);
+            shopWrites.incrementAndGet();
+        } else if (decoded instanceof ShopStock stock) {
+            market.updateShopStock(stock.world(), stock.x(), stock.y(), stock.z(), stock.stock());
+            shopWrites.incrementAndGet();
+        } else if (decoded instanceof ShopKey key) {
+            market.deactivateShop(key.world(), key.x(), key.y(), key.z());
+            shopWrites.incrementAndGet();
+        }
+        written(id);
+    }
+
+    /**
+     * A spooled record was written to the market database
+     *
+     * @param id The id of its spool entry
+     */
+    private void written(String id) {
+        if (id == null || !id.startsWith(session + ":")) {
+            return;
+        }
+        long sequence = Long.parseLong(id.substring(session.length() + 1));
+        Spooled spooled;
+        synchronized (sentShops) {
+            spooled = unconfirmed.remove(sequence);
+            // Entries are replayed in order, so older ones were moved to the dead letter file
+            unconfirmed.headMap(sequence).clear();
+            if (spooled != null && spooled.shop() != null) {
+                if (spooled.sent() != null) {
+                    sentShops.put(spooled.shop(), spooled.sent());
+                } else if (spooled.stock() != null) {
+                    sentShops.computeIfPresent(spooled.shop(), (key, sent) -> new SentShop(sent.state(), spooled.stock()));
+                }
+            }
+        }
+        if (spooled != null) {
+            confirm(spooled.item());
+        }
+    }
+
+    /**
+     * Forget what was written for a shop, including spooled records of it which weren't written yet
+     *
+     * @param key The shop, or null for all shops
+     */
+    private void forgetSentShops(ShopKey key) {
+        synchronized (sentShops) {
+            if (key != null) {
+                sentShops.remove(key);
+            } else {
+                sentShops.clear();
+            }
+            unconfirmed.replaceAll((sequence, spooled) -> key == null || key.equals(spooled.shop()) ? spooled.withoutShop() : spooled);
+        }
+    }
+
+    /**
+     * Forget what was written for all shops, so that their next update is written in full
+     */
+    void resetSentShops() {
+        forgetSentShops(null);
+    }
+
+    /**
+     * Spool a record
+     *
+     * @param spooled What to remember once the record was written, or null
+     * @return Whether the record was spooled
+     */
+    private boolean spool(byte type, Record record, Spooled spooled) {
+        if (spool == null) {
+            return false;
+        }
+        try {
+            byte[] data = MarketRecordCodec.encode(record);
+            if (spooled == null) {
+                spool.append(type, null, data);
+                return true;
+            }
+            synchronized (unconfirmed) {
+                // Numbered in the order of the spool
+                long sequence = ++spoolSequence;
+                unconfirmed.put(sequence, spooled);
+                try {
+                    spool.append(type, session + ":" + sequence, data);
+                } catch (IOException e) {
+                    unconfirmed.remove(sequence);
+                    throw e;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            failed("spool entry", e);
+            // Writes of earlier spooled records may be confirmed after the direct writes that follow
+            forgetSentShops(null);
+            return false;
+        }
+    }
+
+    /**
+     * Queue a sale to be written
+     *
+     * @param sale The sale
+     * @param item The fingerprint of the sold item, or null
+     * @return false if the queue was full and the sale got dropped
+     */
+    boolean recordSale(ChestShopSaleRecord sale, String item) {
+        if (!closed && spool(SPOOL_SALE, sale, item != null ? new Spooled(null, null, null, item) : null)) {
+            return true;
+        }
+        if (closed || !sales.offer(new PendingSale(sale, item))) {
+            salesDropped.incrementAndGet();
+            return false;
+        }
+        if (sales.size() >= BATCH_SIZE && flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queue the full state of a shop, replacing any pending write of that shop
+     *
+     * Only the parts which changed since the shop was last written are sent.
+     */
+    void upsertShop(ShopKey key, MarketRecords.ShopUpsert shop) {
+        updateShop(key, write -> {
+            write.upsert = shop;
+            write.stock = null;
+            write.deactivate = false;
+        });
+    }
+
+    /**
+     * Queue the stock of a shop, replacing any pending stock update of that shop
+     */
+    void updateShopStock(ShopKey key, int stock) {
+        updateShop(key, write -> {
+            if (!write.deactivate) {
+                write.stock = stock;
+            }
+        });
+    }
+
+    /**
+     * Queue the deactivation of a shop, replacing any pending write of that shop
+     */
+    void deactivateShop(ShopKey key) {
+        updateShop(key, write -> {
+            write.upsert = null;
+            write.stock = null;
+            write.deactivate = true;
+        });
+    }
+
+    private void updateShop(ShopKey key, Consumer<ShopWrite> update) {
+        if (closed) {
+            return;
+        }
+        synchronized (shops) {
+            ShopWrite write = shops.get(key);
+            if (write == null) {
+                write = new ShopWrite();
+                shops.put(key, write);
+            } else {
+                shopWritesCoalesced.incrementAndGet();
+            }
+            update.accept(write);
+        }
+    }
+
+    /**
+     * Write everything that is queued
+     */
+    void flush() {
+        synchronized (writeLock) {
+            flushScheduled.set(false);
+            long start = System.nanoTime();
+
+            List<PendingSale> batch = new ArrayList<>(BATCH_SIZE);
+            while (sales.drainTo(batch, BATCH_SIZE) > 0) {
+                for (PendingSale pending : batch) {
+                    try {
+                        market.recordSale(pending.sale());
+                        salesWritten.incrementAndGet();
+                        confirm(pending.item());
+                    } catch (Throwable t) {
+                        failed("sale", t);
+                    }
+                }
+                batch.clear();
+            }
+
+            Map<ShopKey, ShopWrite> pending;
+            synchronized (shops) {
+                pending = new LinkedHashMap<>(shops);
+                shops.clear();
+            }
+            for (Map.Entry<ShopKey, ShopWrite> entry : pending.entrySet()) {
+                try {
+                    writeShop(entry.getKey(), entry.getValue());
+                } catch (Throwable t) {
+                    failed("shop", t);
+                }
+            }
+
+            if (catalogue != null) {
+                catalogue.flush();
+            }
+            lastFlushNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Write the parts of a shop which changed since it was last written
+     */
+    private void writeShop(ShopKey key, ShopWrite write) {
+        if (write.deactivate) {
+            forgetSentShops(key);
+            if (!spool(SPOOL_DEACTIVATE, key, null)) {
+                market.deactivateShop(key.world(), key.x(), key.y(), key.z());
+                shopWrites.incrementAndGet();
+            }
+            return;
+        }
+
+        SentShop sent = sentShops.get(key);
+        boolean written = false;
+        if (write.upsert != null && (sent == null || !sent.state().equals(write.upsert.state()))) {
+            String item = write.upsert.item();
+            SentShop upserted = new SentShop(write.upsert.state(), write.upsert.stock());
+            if (!spool(SPOOL_SHOP, write.upsert.record(), new Spooled(key, upserted, null, item))) {
+                market.upsertShop(write.upsert.record());
+                shopWrites.incrementAndGet();
+                sentShops.put(key, upserted);
+                confirm(item);
+            }
+            sent = upserted;
+            written = true;
+        }
+
+        // A stock update queued after the upsert is newer than the stock in it
+        Integer stock = write.stock != null ? write.stock : write.upsert != null ? write.upsert.stock() : null;
+        if (stock != null && (sent == null || !stock.equals(sent.stock()))) {
+            if (!spool(SPOOL_STOCK, new ShopStock(key.world(), key.x(), key.y(), key.z(), stock), new Spooled(key, null, stock, null))) {
+                market.updateShopStock(key.world(), key.x(), key.y(), key.z(), stock);
+                shopWrites.incrementAndGet();
+                sentShops.computeIfPresent(key, (k, s) -> new SentShop(s.state(), stock));
+            }
+            if (!written) {
+                stockOnlyWrites.incrementAndGet();
+            }
+            written = true;
+        }
+
+        if (!written) {
+            shopWritesSkipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * A record with the data of the item was written
+     */
+    private void confirm(String item) {
+        if (catalogue != null) {
+            catalogue.confirm(item);
+        }
+    }
+
+    private void failed(String type, Throwable t) {
+        // Analytics only, a failing market database must never affect trading
+        if (failures.incrementAndGet() % 100 == 1) {
+            ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to write " + type + " to the market database ("
+                    + failures.get() + " failed writes so far)", t);
+        }
+    }
+
+    /**
+     * Stop accepting records and write out everything that is still queued.
+     * Spooled records which couldn't be replayed in time are replayed on the next start.
+     */
+    void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(15, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {}
+        flush();
+        if (spool != null) {
+            spool.close(5000);
+        }
+    }
+
+    /**
+     * @return The spool of this writer, or null if records are only queued in memory
+     */
+    public MarketSpool getSpool() {
+        return spool;
+    }
+
+    public int getQueuedSales() {
+        return sales.size();
+    }
+
+    public int getRemainingCapacity() {
+        return sales.remainingCapacity();
+    }
+
+    public int getPendingShops() {
+        synchronized (shops) {
+            return shops.size();
+        }
+    }
+
+    public long getSalesWritten() {
+        return salesWritten.get();
+    }
+
+    public long getSalesDropped() {
+        return salesDropped.get();
+    }
+
+    public long getShopWrites() {
+        return shopWrites.get();
+    }
+
+    public long getShopWritesCoalesced() {
+        return shopWritesCoalesced.get();
+    }
+
+    /**
+     * @return The number of shop writes that weren't sent because nothing changed
+     */
+    public long getShopWritesSkipped() {
+        return shopWritesSkipped.get();
+    }
+
+    /**
+     * @return The number of shop upserts which were sent as a stock update
+     */
+    public long getStockOnlyWrites() {
+        return stockOnlyWrites.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+}
@@ -5,6 +5,7 @@ import com.Acrobot.Breeze.Utils.Encoding.Base64;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Database.DaoCreator;
 import com.Acrobot.ChestShop.Database.Item;
+import com.Acrobot.ChestShop.Jfr.ItemDatabaseLookup;
 import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.stmt.SelectArg;
@@ -157,12 +158,16 @@ public class ItemDatabase {
             }
             String code = Base64.encodeObject(dumped);
 
+            ItemDatabaseLookup recording = ItemDatabaseLookup.start();
             Item itemEntity = itemDao.queryBuilder().where().eq("code", new SelectArg(code)).queryForFirst();
+            boolean found = itemEntity != null;
             if (itemEntity == null) {
                 itemEntity = new Item(code);
                 itemDao.create(itemEntity);
             }
-            return Base62.encode(itemEntity.getId());
+            String itemCode = Base62.encode(itemEntity.getId());
+            recording.finish("code", itemCode, found);
+            return itemCode;
         } catch (SQLException | IOException e) {
             ChestShop.getBukkitLogger().log(Level.SEVERE, "Unable to get code of item " + item, e);
         }
@@ -182,7 +187,9 @@ public class ItemDatabase {
 
         int id = Base62.decode(code);
         try {
+            ItemDatabaseLookup recording = ItemDatabaseLookup.start();
             Item item = itemDao.queryBuilder().where().eq("id", new SelectArg(id)).queryForFirst();
+            recording.finish("item", code, item != null);
 
             if (item == null) {
                 return null;
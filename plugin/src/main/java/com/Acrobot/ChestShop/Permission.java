@@ -63,6 +63,12 @@ public enum Permission {
     }
 
     public static boolean has(CommandSender sender, Permission permission) {
+        if (sender instanceof Player && (permission == ADMIN || permission == MOD || permission == ADMIN_SHOP)) {
+            PermissionSnapshot snapshot = PermissionSnapshot.get((Player) sender);
+            if (snapshot != null) {
+                return snapshot.has(permission);
+            }
+        }
         return has(sender, permission.permission);
     }
 
@@ -75,6 +81,14 @@ public enum Permission {
     }
 
     public static boolean otherName(Player player, Permission base, String name) {
+        PermissionSnapshot snapshot = PermissionSnapshot.get(player);
+        if (snapshot != null) {
+            return snapshot.otherName(player, base, name);
+        }
+        return checkOtherName(player, base, name);
+    }
+
+    static boolean checkOtherName(Player player, Permission base, String name) {
         boolean hasBase = base != OTHER_NAME && otherName(player, OTHER_NAME, name);
         if (hasBase || has(player, base + ".*")) {
             return !hasPermissionSetFalse(player, base+ "." + name) && !hasPermissionSetFalse(player, base + "." + name.toLowerCase(Locale.ROOT));
@@ -0,0 +1,151 @@
+package com.Acrobot.ChestShop;
+
+import com.Acrobot.ChestShop.Configuration.Properties;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The permissions of a player which are checked on every shop use, looked up once and
+ * then read from fields. A snapshot is dropped when the player leaves or changes worlds,
+ * when the server sends the player a new command list (which happens when a player is
+ * opped or deopped and when permission plugins recalculate permissions), on reloads and
+ * after {@link Properties#PERMISSION_CACHE_TIME} seconds.
+ */
+public final class PermissionSnapshot {
+    /** How many other name checks to remember per player */
+    private static final int MAX_OTHER_NAMES = 64;
+
+    private static final Map<UUID, PermissionSnapshot> snapshots = new ConcurrentHashMap<>();
+    private static volatile List<String> discountGroups = Collections.emptyList();
+
+    private final long createdAt;
+    private final boolean admin;
+    private final boolean mod;
+    private final boolean adminShop;
+    private final String discountGroup;
+    private final Map<String, Boolean> otherNames = new ConcurrentHashMap<>();
+
+    private PermissionSnapshot(Player player, long createdAt) {
+        this.createdAt = createdAt;
+        this.admin = Permission.has(player, Permission.ADMIN.toString());
+        this.mod = Permission.has(player, Permission.MOD.toString());
+        this.adminShop = Permission.has(player, Permission.ADMIN_SHOP.toString());
+        this.discountGroup = findDiscountGroup(player);
+    }
+
+    /**
+     * Get the snapshot of a player's permissions, creating it if there is none or it is too old
+     *
+     * @param player The player
+     * @return The snapshot, or null if permissions shouldn't be cached
+     */
+    public static PermissionSnapshot get(Player player) {
+        if (Properties.PERMISSION_CACHE_TIME <= 0) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        PermissionSnapshot snapshot = snapshots.get(player.getUniqueId());
+        if (snapshot == null || now - snapshot.createdAt >= TimeUnit.SECONDS.toNanos(Properties.PERMISSION_CACHE_TIME)) {
+            snapshot = new PermissionSnapshot(player, now);
+            if (player.isOnline()) {
+                snapshots.put(player.getUniqueId(), snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forget the snapshot of a player, e.g. after changing their permissions
+     *
+     * @param player The player
+     */
+    public static void invalidate(Player player) {
+        snapshots.remove(player.getUniqueId());
+    }
+
+    /**
+     * Forget the snapshots of all players
+     */
+    public static void invalidateAll() {
+        snapshots.clear();
+    }
+
+    /**
+     * Set the groups which give a discount, in the order they are checked in
+     *
+     * @param groups The names of the discount groups
+     */
+    public static void setDiscountGroups(Collection<String> groups) {
+        discountGroups = Collections.unmodifiableList(new ArrayList<>(groups));
+        snapshots.clear();
+    }
+
+    /**
+     * Get the first discount group the player has the permission of, without using a snapshot
+     *
+     * @param player The player
+     * @return The name of the discount group, or null if the player has none
+     */
+    public static String findDiscountGroup(Player player) {
+        for (String group : discountGroups) {
+            if (Permission.has(player, Permission.DISCOUNT + group)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param permission One of {@link Permission#ADMIN}, {@link Permission#MOD} or {@link Permission#ADMIN_SHOP}
+     * @return Whether the player had the permission
+     * @throws IllegalArgumentException if the permission isn't part of snapshots
+     */
+    public boolean has(Permission permission) {
+        switch (permission) {
+            case ADMIN:
+                return admin;
+            case MOD:
+                return mod;
+            case ADMIN_SHOP:
+                return adminShop;
+            default:
+                throw new IllegalArgumentException(permission + " is not part of permission snapshots");
+        }
+    }
+
+    /**
+     * @return The discount group of the player, or null if the player has none
+     */
+    public String getDiscountGroup() {
+        return discountGroup;
+    }
+
+    /**
+     * Check whether the player may use another name, remembering the result
+     *
+     * @param player The player this snapshot is of
+     * @param base   The base permission that allows using other names
+     * @param name   The name to check
+     * @return Whether the player can use the name
+     */
+    public boolean otherName(Player player, Permission base, String name) {
+        String key = base + "." + name;
+        Boolean allowed = otherNames.get(key);
+        if (allowed == null) {
+            allowed = Permission.checkOtherName(player, base, name);
+            if (otherNames.size() < MAX_OTHER_NAMES) {
+                otherNames.put(key, allowed);
+            }
+        }
+        return allowed;
+    }
+}
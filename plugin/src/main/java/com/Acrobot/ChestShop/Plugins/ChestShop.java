@@ -1,5 +1,6 @@
 package com.Acrobot.ChestShop.Plugins;
 
+import com.Acrobot.ChestShop.Economy.Economy;
 import com.Acrobot.ChestShop.Events.ChestShopReloadEvent;
 import com.Acrobot.ChestShop.Events.Protection.ProtectionCheckEvent;
 import com.Acrobot.ChestShop.Permission;
@@ -23,6 +24,7 @@ public class ChestShop implements Listener {
     @EventHandler
     public static void onReload(ChestShopReloadEvent event) {
         com.Acrobot.ChestShop.ChestShop.getPlugin().loadConfig();
+        Economy.resetFormatCache();
     }
 
     @EventHandler
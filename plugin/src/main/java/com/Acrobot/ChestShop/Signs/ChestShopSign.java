@@ -11,10 +11,10 @@ import com.Acrobot.ChestShop.Database.Account;
 import com.Acrobot.ChestShop.Events.AccountAccessEvent;
 import com.Acrobot.ChestShop.Events.AccountQueryEvent;
 import com.Acrobot.ChestShop.Events.SignValidationEvent;
+import com.Acrobot.ChestShop.Jfr.SignValidation;
 import com.Acrobot.ChestShop.Permission;
 import com.Acrobot.ChestShop.UUIDs.NameManager;
 import com.Acrobot.ChestShop.Utils.uBlock;
-import org.bukkit.Bukkit;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Chest;
@@ -93,7 +93,10 @@ public class ChestShopSign {
     }
 
     public static boolean isValid(Sign sign) {
-        return isValid(sign.getLines());
+        SignValidation recording = SignValidation.start();
+        boolean valid = isValid(sign.getLines());
+        recording.finish(sign, valid);
+        return valid;
     }
 
     public static boolean isValid(String[] lines) {
@@ -187,7 +190,7 @@ public class ChestShopSign {
         if (name == null || name.isEmpty()) return false;
 
         AccountQueryEvent accountQueryEvent = new AccountQueryEvent(name);
-        Bukkit.getPluginManager().callEvent(accountQueryEvent);
+        ChestShop.callEvent(accountQueryEvent);
         Account account = accountQueryEvent.getAccount();
         if (account == null) {
             return player.getName().equalsIgnoreCase(name);
@@ -197,7 +200,7 @@ public class ChestShopSign {
         // Delegate to AccountAccessEvent so TreasuryListener can check membership/ownership.
         if (isBusinessAccount(name)) {
             AccountAccessEvent accessEvent = new AccountAccessEvent(player, account);
-            Bukkit.getPluginManager().callEvent(accessEvent);
+            ChestShop.callEvent(accessEvent);
             return accessEvent.canAccess();
         }
 
@@ -10,6 +10,7 @@ import com.Acrobot.ChestShop.Database.Account;
 import com.Acrobot.ChestShop.Database.DaoCreator;
 import com.Acrobot.ChestShop.Events.AccountAccessEvent;
 import com.Acrobot.ChestShop.Events.AccountQueryEvent;
+import com.Acrobot.ChestShop.Jfr.AccountDatabaseQuery;
 import com.Acrobot.ChestShop.Permission;
 import com.Acrobot.ChestShop.Signs.ChestShopSign;
 import com.google.common.base.Charsets;
@@ -25,9 +26,13 @@ import org.bukkit.event.Listener;
 
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
@@ -50,6 +55,17 @@ public class NameManager implements Listener {
     private static Account serverEconomyAccount;
     private static int uuidVersion = -1;
 
+    /**
+     * @return The account caches by their name, to report their hit rates
+     */
+    public static Map<String, SimpleCache<?, ?>> getCaches() {
+        Map<String, SimpleCache<?, ?>> caches = new LinkedHashMap<>();
+        caches.put("account_uuid", uuidToAccount);
+        caches.put("account_name", usernameToAccount);
+        caches.put("account_short_name", shortToAccount);
+        return caches;
+    }
+
     public static int getAccountCount() {
         try {
             return NumberUtil.toInt(accounts.queryBuilder().countOf() - 1);
@@ -103,7 +119,9 @@ public class NameManager implements Listener {
             synchronized (accountsLock) {
                 return uuidToAccount.get(uuid, () -> {
                     try {
+                        AccountDatabaseQuery recording = AccountDatabaseQuery.start();
                         Account account = accounts.queryBuilder().orderBy("lastSeen", false).where().eq("uuid", new SelectArg(uuid)).queryForFirst();
+                        recording.finish("uuid", uuid, account != null);
                         if (account != null) {
                             account.setUuid(uuid); // HOW IS IT EVEN POSSIBLE THAT UUID IS NOT SET EVEN IF WE HAVE FOUND THE PLAYER?!
                             shortToAccount.put(account.getShortName(), account);
@@ -135,7 +153,9 @@ public class NameManager implements Listener {
             synchronized (accountsLock) {
                 return usernameToAccount.get(fullName, () -> {
                     try {
+                        AccountDatabaseQuery recording = AccountDatabaseQuery.start();
                         Account account = accounts.queryBuilder().orderBy("lastSeen", false).where().eq("name", new SelectArg(fullName)).queryForFirst();
+                        recording.finish("name", fullName, account != null);
                         if (account != null) {
                             account.setName(fullName); // HOW IS IT EVEN POSSIBLE THAT THE NAME IS NOT SET EVEN IF WE HAVE FOUND THE PLAYER?!
                             shortToAccount.put(account.getShortName(), account);
@@ -177,7 +197,9 @@ public class NameManager implements Listener {
             synchronized (accountsLock) {
                 account = shortToAccount.get(shortName, () -> {
                     try {
+                        AccountDatabaseQuery recording = AccountDatabaseQuery.start();
                         Account a = accounts.queryBuilder().where().eq("shortName", new SelectArg(shortName)).queryForFirst();
+                        recording.finish("shortName", shortName, a != null);
                         if (a != null) {
                             a.setShortName(shortName); // HOW IS IT EVEN POSSIBLE THAT THE NAME IS NOT SET EVEN IF WE HAVE FOUND THE PLAYER?!
                             return a;
@@ -233,7 +255,9 @@ public class NameManager implements Listener {
         Account latestAccount = null;
         synchronized (accountsLock) {
             try {
+                AccountDatabaseQuery recording = AccountDatabaseQuery.start();
                 latestAccount = accounts.queryBuilder().where().eq("uuid", new SelectArg(uuid)).and().eq("name", new SelectArg(player.getName())).queryForFirst();
+                recording.finish("uuid and name", player.getName(), latestAccount != null);
             } catch (SQLException e) {
                 ChestShop.getBukkitLogger().log(Level.WARNING, "Error while searching for latest account of " + player.getName() + "/" + uuid + ":", e);
             }
@@ -265,7 +289,9 @@ public class NameManager implements Listener {
      * @throws SQLException if there was an error updating the account
      */
     public static void storeAccount(Account account) throws SQLException {
+        AccountDatabaseQuery recording = AccountDatabaseQuery.start();
         accounts.createOrUpdate(account);
+        recording.finish("store", account.getName(), true);
     }
 
     /**
@@ -291,6 +317,25 @@ public class NameManager implements Listener {
     }
 
     public static boolean canUseName(Player player, Permission base, String name) {
+        return canUseName(player, base, name, () -> {
+            AccountQueryEvent queryEvent = new AccountQueryEvent(name);
+            ChestShop.callEvent(queryEvent);
+            return queryEvent.getAccount();
+        }, account -> ChestShop.callEvent(new AccountAccessEvent(player, account)).canAccess());
+    }
+
+    /**
+     * Check whether a player can use a name on a shop with the account lookups provided by the caller.
+     * This allows a caller which already resolved the account of the name to reuse it.
+     *
+     * @param player        The player to check
+     * @param base          The base permission that allows using other names
+     * @param name          The name to check
+     * @param account       Supplies the account of the name, only called if no permission allows using it
+     * @param accountAccess Checks whether the player can access the account
+     * @return Whether the player can use the name
+     */
+    public static boolean canUseName(Player player, Permission base, String name, Supplier<Account> account, Predicate<Account> accountAccess) {
         if (ChestShopSign.isAdminShop(name)) {
             if (Permission.has(player, Permission.ADMIN_SHOP)) {
                 return true;
@@ -314,10 +359,8 @@ public class NameManager implements Listener {
             }
         }
 
-        AccountQueryEvent queryEvent = new AccountQueryEvent(name);
-        ChestShop.callEvent(queryEvent);
-        Account account = queryEvent.getAccount();
-        if (account == null) {
+        Account nameAccount = account.get();
+        if (nameAccount == null) {
             // There is no account by the provided name, but it matches the player name
             // Return true as they specified their own name and a new account should get created
             if (player.getName().equalsIgnoreCase(name)) {
@@ -326,12 +369,10 @@ public class NameManager implements Listener {
             ChestShop.logDebug(player.getName() + " cannot use the name " + name + " for a shop as no account with that name exists");
             return false;
         }
-        if (!isBusinessAccount && !account.getName().equalsIgnoreCase(name) && Permission.otherName(player, base, account.getName())) {
+        if (!isBusinessAccount && !nameAccount.getName().equalsIgnoreCase(name) && Permission.otherName(player, base, nameAccount.getName())) {
             return true;
         }
-        AccountAccessEvent event = new AccountAccessEvent(player, account);
-        ChestShop.callEvent(event);
-        return event.canAccess();
+        return accountAccess.test(nameAccount);
     }
 
     @EventHandler
@@ -0,0 +1,223 @@
+package com.Acrobot.ChestShop.Utils;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import com.Acrobot.ChestShop.Listeners.Economy.EconomyAdapter;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * Calls events which only ChestShop listens to without going through the plugin manager.
+ * The handler methods of such events are called through generated lambdas instead of the
+ * reflective executors of the server. Events with handlers of other plugins, asynchronous
+ * events and events called outside the main thread are passed on to the plugin manager.
+ * Handlers which were registered with an executor of their own (like the timing executors
+ * of economy adapters) are always called through that executor.
+ *
+ * <p>The handlers of an event are looked up once per handler list and looked up again
+ * when the handlers of that list change.</p>
+ */
+public class EventDispatcher {
+    private final Plugin plugin;
+    private final PluginManager pluginManager;
+    private final BooleanSupplier primaryThread;
+    private final Predicate<EventExecutor> serverExecutor;
+
+    /** Only accessed from the main thread */
+    private final Map<HandlerList, Route> routes = new IdentityHashMap<>();
+
+    public EventDispatcher(Plugin plugin) {
+        // The executors the server creates for event handler methods aren't loaded by the plugin
+        this(plugin, plugin.getServer().getPluginManager(), plugin.getServer()::isPrimaryThread,
+                executor -> executor.getClass().getClassLoader() != plugin.getClass().getClassLoader());
+    }
+
+    /**
+     * @param plugin         The plugin whose handlers are called directly
+     * @param pluginManager  The plugin manager to pass other events to
+     * @param primaryThread  Whether the current thread is the main thread
+     * @param serverExecutor Whether an executor is one the server created for an event handler method
+     */
+    public EventDispatcher(Plugin plugin, PluginManager pluginManager, BooleanSupplier primaryThread, Predicate<EventExecutor> serverExecutor) {
+        this.plugin = plugin;
+        this.pluginManager = pluginManager;
+        this.primaryThread = primaryThread;
+        this.serverExecutor = serverExecutor;
+    }
+
+    /**
+     * Call an event
+     *
+     * @param event The event to call
+     * @return The called event
+     */
+    public <E extends Event> E call(E event) {
+        if (event.isAsynchronous() || !primaryThread.getAsBoolean()) {
+            pluginManager.callEvent(event);
+            return event;
+        }
+
+        HandlerList handlers = event.getHandlers();
+        RegisteredListener[] listeners = handlers.getRegisteredListeners();
+        Route route = routes.get(handlers);
+        if (route == null || route.listeners != listeners) {
+            // The handler list bakes a new array whenever its handlers change
+            route = new Route(listeners, createStages(listeners, event.getClass()));
+            routes.put(handlers, route);
+        }
+
+        if (route.stages == null) {
+            pluginManager.callEvent(event);
+            return event;
+        }
+
+        for (Stage stage : route.stages) {
+            if (!stage.registration.getPlugin().isEnabled()) {
+                continue;
+            }
+            try {
+                stage.call(event);
+            } catch (Throwable ex) {
+                plugin.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + stage.registration.getListener().getClass().getName(), ex);
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Create the stages which call the handlers directly
+     *
+     * @param listeners  The registered handlers of the event
+     * @param eventClass The class of the event
+     * @return The stages, or null if the event has handlers of other plugins
+     */
+    private Stage[] createStages(RegisteredListener[] listeners, Class<? extends Event> eventClass) {
+        Stage[] stages = new Stage[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].getPlugin() != plugin) {
+                return null;
+            }
+            stages[i] = createStage(listeners[i], eventClass);
+        }
+        return stages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stage createStage(RegisteredListener registration, Class<? extends Event> eventClass) {
+        Listener listener = registration.getListener();
+        EventExecutor executor = getExecutor(registration);
+        if (listener instanceof EconomyAdapter || executor == null || !serverExecutor.test(executor)) {
+            // The executor does more than calling the handler method
+            return new Stage(registration, null, null);
+        }
+
+        Method handler = findHandler(listener.getClass(), registration, eventClass);
+        if (handler == null) {
+            return new Stage(registration, null, null);
+        }
+
+        try {
+            Class<?> type = handler.getParameterTypes()[0];
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(handler.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(handler);
+            if (Modifier.isStatic(handler.getModifiers())) {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(Consumer.class),
+                        MethodType.methodType(void.class, Object.class),
+                        handle, MethodType.methodType(void.class, type));
+                Consumer<Object> consumer = (Consumer<Object>) site.getTarget().invoke();
+                return new Stage(registration, type, (target, event) -> consumer.accept(event));
+            }
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    handle, MethodType.methodType(void.class, handler.getDeclaringClass(), type));
+            return new Stage(registration, type, (BiConsumer<Object, Object>) site.getTarget().invoke());
+        } catch (Throwable e) {
+            // Let the server's executor call it
+            return new Stage(registration, null, null);
+        }
+    }
+
+    /**
+     * Get the executor of a registration, the API doesn't expose it on every server
+     *
+     * @return The executor, or null if it couldn't be read
+     */
+    private static EventExecutor getExecutor(RegisteredListener registration) {
+        try {
+            Field field = RegisteredListener.class.getDeclaredField("executor");
+            field.setAccessible(true);
+            return (EventExecutor) field.get(registration);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Find the handler method a registration was created for
+     *
+     * @return The method, or null if it isn't unambiguous which method it was
+     */
+    private static Method findHandler(Class<?> listenerClass, RegisteredListener registration, Class<? extends Event> eventClass) {
+        Set<Method> methods = new LinkedHashSet<>(Arrays.asList(listenerClass.getMethods()));
+        methods.addAll(Arrays.asList(listenerClass.getDeclaredMethods()));
+
+        List<Method> candidates = new ArrayList<>();
+        for (Method method : methods) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            if (annotation == null || method.isBridge() || method.isSynthetic() || method.getParameterCount() != 1) {
+                continue;
+            }
+            if (annotation.priority() == registration.getPriority()
+                    && annotation.ignoreCancelled() == registration.isIgnoringCancelled()
+                    && method.getParameterTypes()[0].isAssignableFrom(eventClass)) {
+                candidates.add(method);
+            }
+        }
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+
+    private record Route(RegisteredListener[] listeners, Stage[] stages) {}
+
+    private record Stage(RegisteredListener registration, Class<?> type, BiConsumer<Object, Object> handler) {
+        void call(Event event) throws Throwable {
+            if (handler == null) {
+                registration.callEvent(event);
+                return;
+            }
+            if (registration.isIgnoringCancelled() && event instanceof Cancellable && ((Cancellable) event).isCancelled()) {
+                return;
+            }
+            if (type.isInstance(event)) {
+                handler.accept(registration.getListener(), event);
+            }
+        }
+    }
+}
@@ -5,7 +5,6 @@ import com.Acrobot.Breeze.Utils.MaterialUtil;
 import com.Acrobot.ChestShop.ChestShop;
 import com.Acrobot.ChestShop.Events.ItemParseEvent;
 import com.Acrobot.ChestShop.Events.ItemStringQueryEvent;
-import org.bukkit.Bukkit;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
@@ -77,7 +76,7 @@ public class ItemUtil {
             }
 
             ItemParseEvent parseEvent = new ItemParseEvent(code);
-            Bukkit.getPluginManager().callEvent(parseEvent);
+            ChestShop.callEvent(parseEvent);
             ItemStack codeItem = parseEvent.getItem();
             if (!MaterialUtil.equals(itemStack, codeItem)) {
                 throw new IllegalArgumentException("Cannot generate code for item " + itemStack
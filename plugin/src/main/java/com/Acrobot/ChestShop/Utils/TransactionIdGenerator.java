@@ -0,0 +1,130 @@
+package com.Acrobot.ChestShop.Utils;
+
+import com.Acrobot.ChestShop.ChestShop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Generates transaction ids that are unique across servers and restarts.
+ *
+ * <p>An id is the server's node id followed by a monotonic counter, e.g.
+ * {@code 3f9c2a1b-1042}. The counter is persisted in blocks: on start and
+ * whenever a block runs out the end of the next block is written to disk, so
+ * generating an id never touches the disk and a restart skips at most one
+ * block instead of reusing ids.</p>
+ */
+public class TransactionIdGenerator {
+    private static final long BLOCK_SIZE = 1000;
+
+    private static TransactionIdGenerator instance = new TransactionIdGenerator(null,
+            UUID.randomUUID().toString().substring(0, 8), 0);
+
+    private final File file;
+    private final String nodeId;
+    private long next;
+    private long reservedUntil;
+
+    private TransactionIdGenerator(File file, String nodeId, long next) {
+        this.file = file;
+        this.nodeId = nodeId;
+        this.next = next;
+        this.reservedUntil = file == null ? Long.MAX_VALUE : next;
+    }
+
+    /**
+     * Load the node id and counter from a file, creating a new node id if the file doesn't exist yet
+     *
+     * @param file The file to persist the state in
+     * @return The generator
+     * @throws IOException if the file can't be read or written
+     */
+    public static TransactionIdGenerator load(File file) throws IOException {
+        Properties properties = new Properties();
+        if (file.exists()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+
+        String nodeId = properties.getProperty("node");
+        if (nodeId == null || nodeId.isEmpty()) {
+            nodeId = UUID.randomUUID().toString().substring(0, 8);
+        }
+        long next;
+        try {
+            next = Long.parseLong(properties.getProperty("next", "0"));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid transaction counter in " + file, e);
+        }
+
+        TransactionIdGenerator generator = new TransactionIdGenerator(file, nodeId, next);
+        generator.reserve();
+        return generator;
+    }
+
+    /**
+     * Load the generator used by {@link #nextId()}. Until this is called ids use a random, not persisted node id.
+     *
+     * @param file The file to persist the state in
+     */
+    public static void init(File file) {
+        try {
+            instance = load(file);
+        } catch (IOException e) {
+            ChestShop.getBukkitLogger().log(Level.SEVERE, "Unable to load " + file.getName() + ", transaction ids won't survive restarts!", e);
+        }
+    }
+
+    /**
+     * @return A new unique transaction id
+     */
+    public static String nextId() {
+        return instance.next();
+    }
+
+    /**
+     * @return A new unique transaction id
+     */
+    public synchronized String next() {
+        if (next >= reservedUntil) {
+            try {
+                reserve();
+            } catch (IOException e) {
+                // Keep counting, ids are only at risk if the server restarts before the next successful write
+                ChestShop.getBukkitLogger().log(Level.WARNING, "Unable to persist the transaction counter", e);
+                reservedUntil = next + BLOCK_SIZE;
+            }
+        }
+        return nodeId + "-" + next++;
+    }
+
+    /**
+     * @return The id of this server
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void reserve() throws IOException {
+        long until = next + BLOCK_SIZE;
+        Properties properties = new Properties();
+        properties.setProperty("node", nodeId);
+        properties.setProperty("next", String.valueOf(until));
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, "ChestShop transaction ids, do not edit or copy to other servers");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        reservedUntil = until;
+    }
+}
@@ -0,0 +1,310 @@
+package com.Acrobot.ChestShop.Utils;
+
+import com.Acrobot.Breeze.Collection.RollingLatencyHistogram;
+import com.Acrobot.ChestShop.Signs.ChestShopSign;
+import org.bukkit.Location;
+import org.bukkit.block.Sign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long each stage of a shop transaction takes. A transaction is started
+ * by {@link #begin()} when a player starts a trade at a shop sign and is recorded by
+ * {@link #finish(Sign)}, or dropped by {@link #abort()} if the trade ended early.
+ * Stages measured in between with {@link #start()} and {@link #stop(Stage, long)} may
+ * be nested, the time of a nested stage is not counted for the stage around it.
+ *
+ * <p>Work which is deferred to a later tick is wrapped with {@link #deferred(Stage, Runnable)},
+ * its stage is measured whenever it runs. Only handing it over is counted for the transaction,
+ * as the {@link Stage#DEFERRED} stage.</p>
+ *
+ * <p>While profiling is disabled every method only reads a single flag.</p>
+ */
+public final class TransactionProfiler {
+
+    public enum Stage {
+        SIGN_PARSE,
+        ACCOUNT_RESOLUTION,
+        PROTECTION,
+        PRE_TRANSACTION,
+        ECONOMY,
+        ITEMS,
+        STOCK_COUNTER,
+        MARKET,
+        LOGGING,
+        MESSAGES,
+        DEFERRED,
+        OTHER_LISTENERS,
+        TOTAL;
+
+        public String getDisplayName() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+    }
+
+    /**
+     * The timings of a shop, measured from the click on the sign until all transaction listeners ran
+     */
+    public static class ShopTimings {
+        private final String location;
+        private final String owner;
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        private ShopTimings(String location, String owner) {
+            this.location = location;
+            this.owner = owner;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+    private static final class Trade {
+        private boolean active = false;
+        private long start;
+        private final long[] nanos = new long[STAGES.length];
+        private final boolean[] measured = new boolean[STAGES.length];
+        /** The time spent in nested stages for each nesting level */
+        private final long[] nested = new long[MAX_DEPTH];
+        private int depth = 0;
+    }
+
+    public static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    public static final int SLICES = 90;
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final int MAX_DEPTH = 16;
+    private static final int MAX_SHOPS = 1000;
+
+    private static final ThreadLocal<Trade> trades = ThreadLocal.withInitial(Trade::new);
+    private static final Map<String, ShopTimings> shops = new HashMap<>();
+
+    /** Only created once profiling gets enabled */
+    private static volatile RollingLatencyHistogram[] histograms = null;
+    private static volatile boolean enabled = false;
+
+    private TransactionProfiler() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && histograms == null) {
+            RollingLatencyHistogram[] created = new RollingLatencyHistogram[STAGES.length];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new RollingLatencyHistogram(SLICE_NANOS, SLICES, System::nanoTime);
+            }
+            histograms = created;
+        }
+        TransactionProfiler.enabled = enabled;
+    }
+
+    /**
+     * Start measuring a transaction on the current thread
+     */
+    public static void begin() {
+        if (!enabled) {
+            return;
+        }
+        Trade trade = trades.get();
+        trade.active = true;
+        trade.depth = 0;
+        trade.nested[0] = 0;
+        Arrays.fill(trade.nanos, 0);
+        Arrays.fill(trade.measured, false);
+        trade.start = System.nanoTime();
+    }
+
+    /**
+     * Start measuring a stage of the current transaction
+     *
+     * @return The start time to pass to {@link #stop(Stage, long)}, 0 if nothing is measured
+     */
+    public static long start() {
+        if (!enabled) {
+            return 0;
+        }
+        Trade trade = trades.get();
+        if (!trade.active || trade.depth == MAX_DEPTH - 1) {
+            return 0;
+        }
+        trade.nested[++trade.depth] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Stop measuring a stage of the current transaction
+     *
+     * @param stage The stage
+     * @param start The time returned by {@link #start()}
+     */
+    public static void stop(Stage stage, long start) {
+        if (start == 0) {
+            return;
+        }
+        Trade trade = trades.get();
+        if (trade.depth == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        trade.nanos[stage.ordinal()] += elapsed - trade.nested[trade.depth];
+        trade.measured[stage.ordinal()] = true;
+        trade.depth--;
+        trade.nested[trade.depth] += elapsed;
+    }
+
+    /**
+     * Measure work which may run after the current transaction was recorded
+     *
+     * @param stage The stage of the work
+     * @param work  The work
+     * @return The work, measured as the stage when it runs
+     */
+    public static Runnable deferred(Stage stage, Runnable work) {
+        if (!enabled) {
+            return work;
+        }
+        return () -> {
+            if (trades.get().active) {
+                // Ran right away, so it is part of the transaction
+                long time = start();
+                try {
+                    work.run();
+                } finally {
+                    stop(stage, time);
+                }
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                work.run();
+            } finally {
+                RollingLatencyHistogram[] histograms = TransactionProfiler.histograms;
+                if (histograms != null) {
+                    histograms[stage.ordinal()].record(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    /**
+     * Record the stages of the current transaction
+     *
+     * @param sign The sign of the shop the transaction happened at
+     */
+    public static void finish(Sign sign) {
+        if (!enabled) {
+            return;
+        }
+        Trade trade = trades.get();
+        if (!trade.active) {
+            return;
+        }
+        trade.active = false;
+        long total = System.nanoTime() - trade.start;
+        RollingLatencyHistogram[] histograms = TransactionProfiler.histograms;
+        for (int i = 0; i < STAGES.length; i++) {
+            if (trade.measured[i]) {
+                histograms[i].record(trade.nanos[i]);
+            }
+        }
+        histograms[Stage.TOTAL.ordinal()].record(total);
+        recordShop(sign, total);
+    }
+
+    /**
+     * Stop measuring the current transaction without recording it, if it wasn't recorded yet
+     */
+    public static void abort() {
+        if (!enabled) {
+            return;
+        }
+        trades.get().active = false;
+    }
+
+    private static void recordShop(Sign sign, long nanos) {
+        Location location = sign.getLocation();
+        String key = location.getWorld().getName() + " " + location.getBlockX() + " " + location.getBlockY() + " " + location.getBlockZ();
+        synchronized (shops) {
+            ShopTimings timings = shops.get(key);
+            if (timings == null) {
+                if (shops.size() >= MAX_SHOPS) {
+                    // Make room by forgetting the fastest shop
+                    shops.values().stream()
+                            .min(Comparator.comparingLong(ShopTimings::getMeanNanos))
+                            .ifPresent(fastest -> shops.remove(fastest.location));
+                }
+                timings = new ShopTimings(key, ChestShopSign.getOwner(sign));
+                shops.put(key, timings);
+            }
+            timings.count++;
+            timings.totalNanos += nanos;
+            timings.maxNanos = Math.max(timings.maxNanos, nanos);
+        }
+    }
+
+    /**
+     * @param stage The stage
+     * @return The durations of the stage of the last {@link #SLICES} slices, or null if profiling was never enabled
+     */
+    public static RollingLatencyHistogram getHistogram(Stage stage) {
+        RollingLatencyHistogram[] histograms = TransactionProfiler.histograms;
+        return histograms != null ? histograms[stage.ordinal()] : null;
+    }
+
+    /**
+     * Get the shops with the slowest transactions on average
+     *
+     * @param amount How many shops to return
+     * @return The slowest shops, slowest first
+     */
+    public static List<ShopTimings> getSlowestShops(int amount) {
+        synchronized (shops) {
+            List<ShopTimings> slowest = new ArrayList<>(shops.values());
+            slowest.sort(Comparator.comparingLong(ShopTimings::getMeanNanos).reversed());
+            return new ArrayList<>(slowest.subList(0, Math.min(amount, slowest.size())));
+        }
+    }
+
+    /**
+     * Forget all measured timings
+     */
+    public static void reset() {
+        RollingLatencyHistogram[] histograms = TransactionProfiler.histograms;
+        if (histograms != null) {
+            for (RollingLatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+        }
+        synchronized (shops) {
+            shops.clear();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.Acrobot.ChestShop.Utils;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queue for work which doesn't have to happen in the same tick as the transaction
+ * that caused it. The queue is drained once per tick for a limited time, so a burst
+ * of transactions spreads its follow-up work over the next ticks.
+ *
+ * <p>Work submitted with a key replaces work with the same key which didn't run yet,
+ * while keeping its place in the queue. That way a sign which is traded with many
+ * times in one tick only gets updated once.</p>
+ */
+public class WorkScheduler {
+
+    /**
+     * Key of work that refreshes something, e.g. the stock counter of a container
+     */
+    public static final class Key {
+        private final String type;
+        private final Object target;
+
+        private Key(String type, Object target) {
+            this.type = type;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type.equals(other.type) && Objects.equals(target, other.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(target);
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + target;
+        }
+    }
+
+    private static final class Work {
+        private final Key key;
+        private Runnable runnable;
+
+        private Work(Key key, Runnable runnable) {
+            this.key = key;
+            this.runnable = runnable;
+        }
+    }
+
+    private final ArrayDeque<Work> queue = new ArrayDeque<>();
+    private final Map<Key, Work> pendingByKey = new HashMap<>();
+    private final LongSupplier clock;
+    private final int maxPending;
+    private final Logger logger;
+
+    private long executed = 0;
+    private long coalesced = 0;
+
+    /**
+     * @param clock      The source of the current time in nanoseconds
+     * @param maxPending How much work may wait before new work is refused
+     * @param logger     The logger to report failing work to
+     */
+    public WorkScheduler(LongSupplier clock, int maxPending, Logger logger) {
+        this.clock = clock;
+        this.maxPending = maxPending;
+        this.logger = logger;
+    }
+
+    /**
+     * @param type   What the work does
+     * @param target What the work is done to
+     * @return The key for work of that type on that target
+     */
+    public static Key key(String type, Object target) {
+        return new Key(type, target);
+    }
+
+    /**
+     * Queue work
+     *
+     * @param key      The key of the work, or null if it should never replace other work
+     * @param runnable The work
+     * @return false if too much work is waiting already, the caller should do the work itself
+     */
+    public synchronized boolean submit(Key key, Runnable runnable) {
+        if (key != null) {
+            Work pending = pendingByKey.get(key);
+            if (pending != null) {
+                pending.runnable = runnable;
+                coalesced++;
+                return true;
+            }
+        }
+        if (queue.size() >= maxPending) {
+            return false;
+        }
+        Work work = new Work(key, runnable);
+        queue.add(work);
+        if (key != null) {
+            pendingByKey.put(key, work);
+        }
+        return true;
+    }
+
+    /**
+     * Run queued work until the queue is empty or the budget is used up. At least one
+     * piece of work is run, so the queue keeps moving even if single pieces take longer
+     * than the budget.
+     *
+     * @param budgetNanos How long to run work for in nanoseconds
+     * @return How much work was run
+     */
+    public int drain(long budgetNanos) {
+        long start = clock.getAsLong();
+        int ran = 0;
+        do {
+            Work work = poll();
+            if (work == null) {
+                break;
+            }
+            run(work);
+            ran++;
+        } while (clock.getAsLong() - start < budgetNanos);
+        return ran;
+    }
+
+    /**
+     * Run all queued work, including work queued while running
+     */
+    public void drainAll() {
+        Work work;
+        while ((work = poll()) != null) {
+            run(work);
+        }
+    }
+
+    private synchronized Work poll() {
+        Work work = queue.poll();
+        if (work != null && work.key != null) {
+            pendingByKey.remove(work.key);
+        }
+        return work;
+    }
+
+    private void run(Work work) {
+        try {
+            work.runnable.run();
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Could not run deferred work" + (work.key != null ? " (" + work.key + ")" : ""), t);
+        }
+        synchronized (this) {
+            executed++;
+        }
+    }
+
+    /**
+     * @return How much work is waiting
+     */
+    public synchronized int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * @return How much work was run so far
+     */
+    public synchronized long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * @return How often work replaced waiting work with the same key
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+}
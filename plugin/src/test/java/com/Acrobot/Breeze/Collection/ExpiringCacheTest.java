@@ -0,0 +1,100 @@
+package com.Acrobot.Breeze.Collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringCacheTest {
+    private static final long MILLISECOND = 1_000_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MILLISECOND);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private String load(String value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    @Test
+    void keepsValuesUntilTheyExpire() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 10, now::get);
+
+        assertThat(cache.get("a", () -> load("first"))).isEqualTo("first");
+        now.addAndGet(99 * MILLISECOND);
+        assertThat(cache.get("a", () -> load("second"))).isEqualTo("first");
+        now.addAndGet(MILLISECOND);
+        assertThat(cache.get("a", () -> load("second"))).isEqualTo("second");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void cachesNull() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 10, now::get);
+
+        assertThat(cache.get("a", () -> load(null))).isNull();
+        assertThat(cache.get("a", () -> load("value"))).isNull();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void onlyCachesValuesWhichMatchTheFilter() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 10, now::get);
+
+        assertThat(cache.get("a", () -> load("denied"), "allowed"::equals)).isEqualTo("denied");
+        assertThat(cache.get("a", () -> load("allowed"), "allowed"::equals)).isEqualTo("allowed");
+        assertThat(cache.get("a", () -> load("denied"), "allowed"::equals)).isEqualTo("allowed");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void doesNotCacheWithoutTime() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(0, 10, now::get);
+
+        cache.get("a", () -> load("first"));
+        cache.get("a", () -> load("first"));
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidatesKeys() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 10, now::get);
+        cache.get("a", () -> "a");
+        cache.get("ab", () -> "ab");
+        cache.get("b", () -> "b");
+
+        cache.invalidate("b");
+        assertThat(cache.size()).isEqualTo(2);
+        cache.invalidateIf(key -> key.startsWith("a"));
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void removesExpiredValuesWhenFull() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100, 3, now::get);
+        cache.get(1, () -> 1);
+        cache.get(2, () -> 2);
+        now.addAndGet(50 * MILLISECOND);
+        cache.get(3, () -> 3);
+        now.addAndGet(60 * MILLISECOND);
+
+        cache.get(4, () -> 4);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(3, () -> Integer.valueOf(load("0")))).isEqualTo(3);
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void clearsEverythingWhenFullOfValidValues() {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100, 3, now::get);
+        for (int i = 0; i < 4; i++) {
+            int value = i;
+            cache.get(value, () -> value);
+        }
+
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.Acrobot.Breeze.Collection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMeanNanos()).isZero();
+        assertThat(histogram.getPercentileNanos(99)).isZero();
+    }
+
+    @Test
+    void percentilesAreUpperBoundsOfTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(3_000); // 3 µs -> bucket below 4 µs
+        }
+        histogram.record(1_000_000); // 1 ms -> bucket below 1024 µs
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.getPercentileNanos(50)).isEqualTo(4_000);
+        assertThat(histogram.getPercentileNanos(99)).isEqualTo(4_000);
+        assertThat(histogram.getPercentileNanos(100)).isEqualTo(1_024_000);
+    }
+
+    @Test
+    void percentileIsNeverBelowTheRecordedValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {0, 999, 1_000, 1_500, 65_000, 2_000_000, 750_000_000};
+        for (long value : values) {
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(value);
+            assertThat(single.getPercentileNanos(50)).isGreaterThanOrEqualTo(value - value % 1000);
+            histogram.record(value);
+        }
+        assertThat(histogram.getPercentileNanos(100)).isGreaterThanOrEqualTo(750_000_000);
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000);
+        histogram.reset();
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getPercentileNanos(50)).isZero();
+    }
+}
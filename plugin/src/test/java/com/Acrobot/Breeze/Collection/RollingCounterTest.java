@@ -0,0 +1,69 @@
+package com.Acrobot.Breeze.Collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingCounterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(1000 * SECOND);
+    private final RollingCounter counter = new RollingCounter(10 * SECOND, 6, now::get);
+
+    @Test
+    void emptyCounterIsZero() {
+        assertThat(counter.getSum(60 * SECOND)).isZero();
+        assertThat(counter.getTotal()).isZero();
+    }
+
+    @Test
+    void onlySumsWhatWasAddedInsideTheWindow() {
+        counter.add(5);
+        now.addAndGet(50 * SECOND);
+        counter.increment();
+        counter.add(2);
+
+        assertThat(counter.getSum(10 * SECOND)).isEqualTo(3);
+        assertThat(counter.getSum(60 * SECOND)).isEqualTo(8);
+    }
+
+    @Test
+    void forgetsSlicesOnceTheyLeaveTheWindow() {
+        counter.add(5);
+        now.addAndGet(60 * SECOND);
+        counter.add(1);
+
+        assertThat(counter.getSum(60 * SECOND)).isEqualTo(1);
+        now.addAndGet(60 * SECOND);
+        assertThat(counter.getSum(60 * SECOND)).isZero();
+    }
+
+    @Test
+    void totalKeepsEverything() {
+        counter.add(5);
+        now.addAndGet(120 * SECOND);
+        counter.add(1);
+
+        assertThat(counter.getTotal()).isEqualTo(6);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    counter.increment();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(counter.getSum(60 * SECOND)).isEqualTo(40_000);
+    }
+}
@@ -0,0 +1,61 @@
+package com.Acrobot.Breeze.Collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingLatencyHistogramTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(1000 * SECOND);
+    private final RollingLatencyHistogram histogram = new RollingLatencyHistogram(10 * SECOND, 6, now::get);
+
+    @Test
+    void emptyHistogramReportsZero() {
+        assertThat(histogram.getCount(60 * SECOND)).isZero();
+        assertThat(histogram.getPercentileNanos(99, 60 * SECOND)).isZero();
+    }
+
+    @Test
+    void onlyCountsDurationsInsideTheWindow() {
+        histogram.record(1_000_000); // 1 ms, 50 seconds ago
+        now.addAndGet(50 * SECOND);
+        for (int i = 0; i < 9; i++) {
+            histogram.record(3_000); // 3 µs
+        }
+
+        assertThat(histogram.getCount(10 * SECOND)).isEqualTo(9);
+        assertThat(histogram.getPercentileNanos(100, 10 * SECOND)).isEqualTo(4_000);
+        assertThat(histogram.getCount(60 * SECOND)).isEqualTo(10);
+        assertThat(histogram.getPercentileNanos(100, 60 * SECOND)).isEqualTo(1_024_000);
+    }
+
+    @Test
+    void reusesSlicesOnceTheyLeaveTheWindow() {
+        histogram.record(3_000);
+        now.addAndGet(60 * SECOND);
+        histogram.record(3_000);
+
+        assertThat(histogram.getCount(60 * SECOND)).isEqualTo(1);
+        now.addAndGet(60 * SECOND);
+        assertThat(histogram.getCount(60 * SECOND)).isZero();
+    }
+
+    @Test
+    void windowIsLimitedToTheKeptSlices() {
+        histogram.record(3_000);
+        now.addAndGet(50 * SECOND);
+        histogram.record(3_000);
+
+        assertThat(histogram.getCount(3600 * SECOND)).isEqualTo(2);
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        histogram.record(5_000);
+        histogram.reset();
+        assertThat(histogram.getCount(60 * SECOND)).isZero();
+    }
+}
@@ -75,6 +75,17 @@ class SimpleCacheTest {
         assertThat(cache.contains("k")).isFalse();
     }
 
+    @Test
+    void getWithLoader_countsHitsAndMisses() throws ExecutionException {
+        SimpleCache<String, Integer> cache = new SimpleCache<>(8);
+        cache.get("k", () -> 1);
+        cache.get("k", () -> 2);
+        cache.get("k", () -> 3);
+
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
     @Test
     void getWithLoader_wrapsLoaderExceptionInExecutionException() {
         SimpleCache<String, Integer> cache = new SimpleCache<>(8);
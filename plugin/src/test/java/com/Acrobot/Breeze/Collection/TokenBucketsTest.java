@@ -0,0 +1,87 @@
+package com.Acrobot.Breeze.Collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketsTest {
+    private static final long MILLISECOND = 1_000_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MILLISECOND);
+
+    @Test
+    void allowsABurstThenOneTokenPerInterval() {
+        TokenBuckets<String> buckets = new TokenBuckets<>(3, 250 * MILLISECOND, now::get);
+
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isFalse();
+
+        now.addAndGet(249 * MILLISECOND);
+        assertThat(buckets.tryAcquire("a")).isFalse();
+        now.addAndGet(MILLISECOND);
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isFalse();
+    }
+
+    @Test
+    void refusedAttemptsDoNotUseTokens() {
+        TokenBuckets<String> buckets = new TokenBuckets<>(1, 100 * MILLISECOND, now::get);
+
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        for (int i = 0; i < 10; i++) {
+            assertThat(buckets.tryAcquire("a")).isFalse();
+        }
+        now.addAndGet(100 * MILLISECOND);
+        assertThat(buckets.tryAcquire("a")).isTrue();
+    }
+
+    @Test
+    void checkingDoesNotUseTokens() {
+        TokenBuckets<String> buckets = new TokenBuckets<>(2, 100 * MILLISECOND, now::get);
+
+        assertThat(buckets.canAcquire("a")).isTrue();
+        assertThat(buckets.canAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.canAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.canAcquire("a")).isFalse();
+        now.addAndGet(100 * MILLISECOND);
+        assertThat(buckets.canAcquire("a")).isTrue();
+        assertThat(buckets.size()).isEqualTo(1);
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        TokenBuckets<String> buckets = new TokenBuckets<>(1, 100 * MILLISECOND, now::get);
+
+        assertThat(buckets.tryAcquire("a")).isTrue();
+        assertThat(buckets.tryAcquire("b")).isTrue();
+        assertThat(buckets.tryAcquire("a")).isFalse();
+    }
+
+    @Test
+    void idleBucketsAreForgotten() {
+        TokenBuckets<Integer> buckets = new TokenBuckets<>(1, 100 * MILLISECOND, now::get);
+        for (int i = 0; i < 1000; i++) {
+            buckets.tryAcquire(i);
+        }
+        now.addAndGet(100 * MILLISECOND);
+        for (int i = 0; i < 100; i++) {
+            buckets.tryAcquire(-1);
+        }
+
+        assertThat(buckets.size()).isLessThan(1000);
+    }
+
+    @Test
+    void zeroIntervalNeverLimits() {
+        TokenBuckets<String> buckets = new TokenBuckets<>(1, 0, now::get);
+        for (int i = 0; i < 100; i++) {
+            assertThat(buckets.tryAcquire("a")).isTrue();
+        }
+    }
+}
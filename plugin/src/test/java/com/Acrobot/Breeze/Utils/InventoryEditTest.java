@@ -0,0 +1,161 @@
+package com.Acrobot.Breeze.Utils;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryEditTest {
+
+    /**
+     * Helper: a mocked stack which keeps track of its amount, can be cloned
+     * and is similar to every other stack of the same material.
+     */
+    private static ItemStack stack(Material type, int amount) {
+        ItemStack stack = mock(ItemStack.class);
+        int[] current = {amount};
+        lenient().when(stack.getType()).thenReturn(type);
+        lenient().when(stack.getAmount()).thenAnswer(invocation -> current[0]);
+        lenient().doAnswer(invocation -> {
+            current[0] = invocation.getArgument(0);
+            return null;
+        }).when(stack).setAmount(anyInt());
+        lenient().when(stack.getMaxStackSize()).thenReturn(64);
+        lenient().when(stack.isSimilar(any())).thenAnswer(invocation -> {
+            ItemStack other = invocation.getArgument(0);
+            return other != null && other.getType() == type;
+        });
+        lenient().when(stack.clone()).thenAnswer(invocation -> stack(type, current[0]));
+        return stack;
+    }
+
+    /**
+     * Helper: a mocked inventory with the given contents, of which the first
+     * {@code storageSize} slots are storage slots.
+     */
+    private static Inventory inventory(int storageSize, ItemStack... contents) {
+        Inventory inventory = mock(Inventory.class);
+        lenient().when(inventory.getContents()).thenAnswer(invocation -> contents.clone());
+        lenient().when(inventory.getStorageContents()).thenAnswer(invocation -> Arrays.copyOf(contents, storageSize));
+        return inventory;
+    }
+
+    @Test
+    void add_writesNothingBeforeApply() {
+        ItemStack partial = stack(Material.STONE, 60);
+        Inventory inventory = inventory(2, partial, null);
+
+        new InventoryEdit(inventory).add(stack(Material.STONE, 1), 3, 0);
+
+        verify(inventory, never()).setItem(anyInt(), any());
+        assertThat(partial.getAmount()).isEqualTo(60);
+    }
+
+    @Test
+    void add_writesOnlyTheFilledSlot() {
+        Inventory inventory = inventory(4, stack(Material.DIRT, 5), stack(Material.STONE, 60), null, null);
+        InventoryEdit edit = new InventoryEdit(inventory);
+
+        assertThat(edit.add(stack(Material.STONE, 1), 3, 0)).isZero();
+        assertThat(edit.apply()).isEqualTo(1);
+
+        ArgumentCaptor<ItemStack> written = ArgumentCaptor.forClass(ItemStack.class);
+        verify(inventory, times(1)).setItem(eq(1), written.capture());
+        verify(inventory, times(1)).setItem(anyInt(), any());
+        assertThat(written.getValue().getAmount()).isEqualTo(63);
+    }
+
+    @Test
+    void add_fillsStacksBeforeEmptySlots() {
+        Inventory inventory = inventory(3, null, stack(Material.STONE, 60), null);
+        InventoryEdit edit = new InventoryEdit(inventory);
+
+        assertThat(edit.add(stack(Material.STONE, 1), 10, 0)).isZero();
+        assertThat(edit.apply()).isEqualTo(2);
+
+        verify(inventory).setItem(eq(1), any());
+        verify(inventory).setItem(eq(0), any());
+        verify(inventory, never()).setItem(eq(2), any());
+    }
+
+    @Test
+    void add_neverFillsExtraSlots() {
+        Inventory inventory = inventory(1, stack(Material.STONE, 64), null);
+        InventoryEdit edit = new InventoryEdit(inventory);
+
+        assertThat(edit.add(stack(Material.STONE, 1), 5, 0)).isEqualTo(5);
+        assertThat(edit.apply()).isZero();
+
+        verify(inventory, never()).setItem(anyInt(), any());
+    }
+
+    @Test
+    void remove_clearsEmptiedSlots() {
+        Inventory inventory = inventory(3, stack(Material.STONE, 10), stack(Material.DIRT, 5), stack(Material.STONE, 10));
+        InventoryEdit edit = new InventoryEdit(inventory);
+
+        assertThat(edit.remove(stack(Material.STONE, 1), 15)).isZero();
+        assertThat(edit.apply()).isEqualTo(2);
+
+        ArgumentCaptor<ItemStack> written = ArgumentCaptor.forClass(ItemStack.class);
+        verify(inventory).setItem(eq(0), isNull());
+        verify(inventory).setItem(eq(2), written.capture());
+        verify(inventory, never()).setItem(eq(1), any());
+        assertThat(written.getValue().getAmount()).isEqualTo(5);
+    }
+
+    @Test
+    void apply_skipsSlotsThatEndUpUnchanged() {
+        Inventory inventory = inventory(2, stack(Material.STONE, 10), null);
+        InventoryEdit edit = new InventoryEdit(inventory);
+
+        edit.remove(stack(Material.STONE, 1), 4);
+        edit.add(stack(Material.STONE, 1), 4, 0);
+
+        assertThat(edit.apply()).isZero();
+        verify(inventory, never()).setItem(anyInt(), any());
+    }
+
+    @Test
+    void transfer_writesOnlyChangedSlotsOfBothInventories() {
+        Inventory source = inventory(4, stack(Material.STONE, 64), stack(Material.STONE, 64), stack(Material.DIRT, 64), null);
+        Inventory target = inventory(4, stack(Material.DIRT, 1), null, null, null);
+
+        int leftOver = InventoryUtil.transfer(new ItemStack[]{stack(Material.STONE, 64), stack(Material.STONE, 10)}, source, target, 0);
+
+        assertThat(leftOver).isZero();
+        verify(source, times(2)).setItem(anyInt(), any());
+        verify(target, times(2)).setItem(anyInt(), any());
+    }
+
+    @Test
+    void transfer_keepsWhatDoesNotFitInTheSource() {
+        Inventory source = inventory(2, stack(Material.STONE, 20), null);
+        Inventory target = inventory(1, stack(Material.STONE, 60));
+
+        int leftOver = InventoryUtil.transfer(new ItemStack[]{stack(Material.STONE, 20)}, source, target, 0);
+
+        assertThat(leftOver).isEqualTo(16);
+        ArgumentCaptor<ItemStack> written = ArgumentCaptor.forClass(ItemStack.class);
+        verify(source).setItem(eq(0), written.capture());
+        verify(source, times(1)).setItem(anyInt(), any());
+        assertThat(written.getValue().getAmount()).isEqualTo(16);
+    }
+}
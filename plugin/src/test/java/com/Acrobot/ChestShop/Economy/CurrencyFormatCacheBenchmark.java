@@ -0,0 +1,68 @@
+package com.Acrobot.ChestShop.Economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares formatting the prices of a burst of transaction messages with and without the
+ * {@link CurrencyFormatCache}. This is not part of the normal test run, use
+ * {@code mvn test -Dtest=CurrencyFormatCacheBenchmark} to run it.
+ */
+class CurrencyFormatCacheBenchmark {
+
+    /**
+     * Simulates a burst of transaction messages: a handful of shop prices, each
+     * formatted for the client, the owner and the log. Prints the time per format
+     * with and without the cache and checks that the economy is only asked once per price.
+     */
+    @Test
+    void messageHeavyTransactionBurst() {
+        BigDecimal[] prices = new BigDecimal[32];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = BigDecimal.valueOf(i * 125 + 99, 2);
+        }
+        int formats = 200_000;
+
+        AtomicInteger uncachedCalls = new AtomicInteger();
+        CurrencyFormatCache uncached = new CurrencyFormatCache(0, amount -> {
+            uncachedCalls.incrementAndGet();
+            return slowFormat(amount);
+        });
+        AtomicInteger cachedCalls = new AtomicInteger();
+        CurrencyFormatCache cached = new CurrencyFormatCache(1000, amount -> {
+            cachedCalls.incrementAndGet();
+            return slowFormat(amount);
+        });
+
+        long uncachedNanos = run(uncached, prices, formats);
+        long cachedNanos = run(cached, prices, formats);
+
+        System.out.printf("CurrencyFormatCache burst: %d formats, uncached %d ns/op, cached %d ns/op%n",
+                formats, uncachedNanos / formats, cachedNanos / formats);
+
+        assertThat(uncachedCalls.get()).isEqualTo(formats);
+        assertThat(cachedCalls.get()).isEqualTo(prices.length);
+    }
+
+    private static long run(CurrencyFormatCache cache, BigDecimal[] prices, int formats) {
+        long start = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < formats; i++) {
+            length += cache.format(prices[i % prices.length]).length();
+        }
+        assertThat(length).isPositive();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Roughly what an economy plugin does: build a pattern, format and decorate the amount
+     */
+    private static String slowFormat(BigDecimal amount) {
+        java.text.DecimalFormat format = new java.text.DecimalFormat("#,##0.00");
+        return "\u00a7a$" + format.format(amount) + "\u00a7r";
+    }
+}
@@ -0,0 +1,56 @@
+package com.Acrobot.ChestShop.Economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CurrencyFormatCacheTest {
+
+    @Test
+    void format_callsFormatterOncePerAmount() {
+        AtomicInteger calls = new AtomicInteger();
+        CurrencyFormatCache cache = new CurrencyFormatCache(16, amount -> {
+            calls.incrementAndGet();
+            return "$" + amount.toPlainString();
+        });
+
+        assertThat(cache.format(new BigDecimal("1.50"))).isEqualTo("$1.50");
+        assertThat(cache.format(new BigDecimal("1.50"))).isEqualTo("$1.50");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void format_keepsAmountsWithDifferentScalesApart() {
+        CurrencyFormatCache cache = new CurrencyFormatCache(16, amount -> "$" + amount.toPlainString());
+
+        assertThat(cache.format(new BigDecimal("5"))).isEqualTo("$5");
+        assertThat(cache.format(new BigDecimal("5.00"))).isEqualTo("$5.00");
+        assertThat(cache.format(new BigDecimal("5"))).isEqualTo("$5");
+    }
+
+    @Test
+    void format_doesNotCacheUnhandledAmounts() {
+        AtomicInteger calls = new AtomicInteger();
+        CurrencyFormatCache cache = new CurrencyFormatCache(16, amount -> {
+            calls.incrementAndGet();
+            return "";
+        });
+
+        assertThat(cache.format(BigDecimal.TEN)).isEmpty();
+        assertThat(cache.format(BigDecimal.TEN)).isEmpty();
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void clear_forgetsFormattedAmounts() {
+        AtomicInteger calls = new AtomicInteger();
+        CurrencyFormatCache cache = new CurrencyFormatCache(16, amount -> "v" + calls.incrementAndGet());
+
+        assertThat(cache.format(BigDecimal.ONE)).isEqualTo("v1");
+        cache.clear();
+        assertThat(cache.format(BigDecimal.ONE)).isEqualTo("v2");
+    }
+}
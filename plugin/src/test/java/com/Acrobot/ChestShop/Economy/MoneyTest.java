@@ -0,0 +1,122 @@
+package com.Acrobot.ChestShop.Economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyTest {
+    private static final int RUNS = 100_000;
+    private static final int SCALE = 2;
+
+    /** How prices of partial transactions were calculated with BigDecimals */
+    private static BigDecimal oldShare(BigDecimal price, int part, int whole) {
+        BigDecimal pricePerItem = price.divide(BigDecimal.valueOf(whole), MathContext.DECIMAL128);
+        return pricePerItem.multiply(new BigDecimal(part)).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    /** How the amount of affordable items was calculated with BigDecimals */
+    private static long oldCountAffordable(BigDecimal wallet, BigDecimal price, int whole) {
+        BigDecimal pricePerItem = price.divide(BigDecimal.valueOf(whole), MathContext.DECIMAL128);
+        return wallet.divide(pricePerItem, 0, RoundingMode.FLOOR).longValueExact();
+    }
+
+    private static BigDecimal randomPrice(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return BigDecimal.valueOf(random.nextInt(100), SCALE);
+            case 1:
+                return BigDecimal.valueOf(random.nextInt(100_000), SCALE);
+            default:
+                return BigDecimal.valueOf(random.nextLong() & 0xFFFFFFFFFFL, SCALE);
+        }
+    }
+
+    @Test
+    void share_roundsLikeBigDecimalDivision() {
+        Random random = new Random(47);
+        for (int i = 0; i < RUNS; i++) {
+            BigDecimal price = randomPrice(random);
+            int whole = 1 + random.nextInt(random.nextBoolean() ? 64 : 3456);
+            int part = random.nextInt(whole + 1);
+
+            BigDecimal expected = oldShare(price, part, whole);
+            BigDecimal actual = Money.of(price, SCALE).share(part, whole, SCALE).toBigDecimal();
+
+            BigDecimal exact = price.multiply(BigDecimal.valueOf(part)).movePointRight(SCALE);
+            boolean tie = exact.multiply(BigDecimal.valueOf(2)).remainder(BigDecimal.valueOf(whole)).signum() == 0
+                    && exact.remainder(BigDecimal.valueOf(whole)).signum() != 0;
+            if (tie) {
+                // Exactly half way between two units, DECIMAL128 sometimes rounded the price per item down
+                assertThat(actual).isEqualTo(price.multiply(BigDecimal.valueOf(part)).divide(BigDecimal.valueOf(whole), SCALE, RoundingMode.HALF_UP));
+                assertThat(actual.subtract(expected).abs()).isLessThanOrEqualTo(BigDecimal.valueOf(1, SCALE));
+            } else {
+                assertThat(actual).as("%s * %d / %d", price, part, whole).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void countAffordable_matchesBigDecimalDivision() {
+        Random random = new Random(4747);
+        for (int i = 0; i < RUNS; i++) {
+            BigDecimal price = randomPrice(random);
+            if (price.signum() == 0) {
+                continue;
+            }
+            int whole = 1 + random.nextInt(3456);
+            BigDecimal wallet = BigDecimal.valueOf(random.nextInt(1_000_000), SCALE);
+
+            long actual = Money.of(wallet, SCALE).countAffordable(Money.of(price, SCALE), whole);
+            long exact = wallet.multiply(BigDecimal.valueOf(whole)).divide(price, 0, RoundingMode.FLOOR).longValueExact();
+
+            assertThat(actual).as("%s / (%s / %d)", wallet, price, whole).isEqualTo(exact);
+            // The rounded price per item could make the old division come up one item short
+            assertThat(actual - oldCountAffordable(wallet, price, whole)).isBetween(0L, 1L);
+        }
+    }
+
+    @Test
+    void of_keepsAllDecimalPlaces() {
+        Money money = Money.of(new BigDecimal("0.125"), SCALE);
+
+        assertThat(money.getUnits()).isEqualTo(125);
+        assertThat(money.getScale()).isEqualTo(3);
+        assertThat(money.toBigDecimal()).isEqualByComparingTo("0.125");
+        assertThat(money.share(1, 1, SCALE).toBigDecimal()).isEqualTo(new BigDecimal("0.13"));
+    }
+
+    @Test
+    void of_usesMinimumScale() {
+        Money money = Money.of(new BigDecimal("5"), SCALE);
+
+        assertThat(money.getUnits()).isEqualTo(500);
+        assertThat(money.toBigDecimal()).isEqualTo(new BigDecimal("5.00"));
+    }
+
+    @Test
+    void share_fallsBackOnOverflow() {
+        BigDecimal price = BigDecimal.valueOf(Long.MAX_VALUE / 10, SCALE);
+
+        BigDecimal actual = Money.of(price, SCALE).share(3, 7, SCALE).toBigDecimal();
+
+        assertThat(actual).isEqualTo(price.multiply(BigDecimal.valueOf(3)).divide(BigDecimal.valueOf(7), SCALE, RoundingMode.HALF_UP));
+    }
+
+    @Test
+    void countAffordable_freeItemsAreAlwaysAffordable() {
+        assertThat(Money.ofUnits(0, SCALE).countAffordable(Money.ofUnits(0, SCALE), 64)).isEqualTo(Long.MAX_VALUE);
+        assertThat(Money.ofUnits(0, SCALE).countAffordable(Money.ofUnits(100, SCALE), 64)).isZero();
+    }
+
+    @Test
+    void equals_ignoresScale() {
+        assertThat(Money.ofUnits(150, 2)).isEqualTo(Money.ofUnits(1500, 3));
+        assertThat(Money.ofUnits(150, 2)).hasSameHashCodeAs(Money.ofUnits(1500, 3));
+        assertThat(Money.ofUnits(150, 2)).isLessThan(Money.ofUnits(1501, 3));
+    }
+}
@@ -0,0 +1,93 @@
+package com.Acrobot.ChestShop.Listeners.Economy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(20, 100 * MS, 0.5, 1000 * MS, now::get);
+
+    @Test
+    void staysClosedWhileHealthy() {
+        for (int i = 0; i < 100; i++) {
+            breaker.record(5 * MS, false);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void opensOnHighLatency() {
+        for (int i = 0; i < 20; i++) {
+            breaker.record(500 * MS, false);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.getTrips()).isEqualTo(1);
+    }
+
+    @Test
+    void opensOnHighErrorRate() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(MS, i % 2 == 0);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void needsMinimumCallsBeforeOpening() {
+        for (int i = 0; i < 9; i++) {
+            breaker.record(MS, true);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void recoversAfterCooldownAndHealthyProbes() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(MS, true);
+        }
+        now.addAndGet(999 * MS);
+        assertThat(breaker.allowRequest()).isFalse();
+
+        now.addAndGet(MS);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        for (int i = 0; i < 5; i++) {
+            breaker.record(MS, false);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void reopensOnBadProbe() {
+        for (int i = 0; i < 10; i++) {
+            breaker.record(MS, true);
+        }
+        now.addAndGet(1000 * MS);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.record(MS, true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.getTrips()).isEqualTo(2);
+    }
+
+    @Test
+    void disabledBreakerNeverOpens() {
+        CircuitBreaker disabled = new CircuitBreaker(20, 0, 0, 1000 * MS, now::get);
+        for (int i = 0; i < 100; i++) {
+            disabled.record(10_000 * MS, true);
+        }
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.allowRequest()).isTrue();
+    }
+}
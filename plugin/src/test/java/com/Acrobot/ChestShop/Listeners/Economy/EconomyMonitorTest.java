@@ -0,0 +1,137 @@
+package com.Acrobot.ChestShop.Listeners.Economy;
+
+import com.Acrobot.ChestShop.ChestShop;
+import com.Acrobot.ChestShop.Events.Economy.CurrencyCheckEvent;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EconomyMonitorTest {
+
+    /**
+     * Answers checks like the economy adapters do, leaving checks which were already answered alone
+     */
+    public static class Adapter implements Listener {
+        @EventHandler
+        public void onCurrencyCheck(CurrencyCheckEvent event) {
+            if (event.hasEnough()) {
+                return;
+            }
+            event.hasEnough(true);
+            event.setHandled(true);
+        }
+    }
+
+    /**
+     * Catches the failure of the economy plugin like the adapters do and reports it instead
+     */
+    public static class Swallowing implements Listener {
+        @EventHandler
+        public void onCurrencyCheck(CurrencyCheckEvent event) {
+            try {
+                throw new IllegalStateException("economy is down");
+            } catch (IllegalStateException e) {
+                EconomyMonitor.markFailed(event);
+            }
+        }
+    }
+
+    public static class Failing implements Listener {
+        @EventHandler
+        public void onCurrencyCheck(CurrencyCheckEvent event) {
+            throw new IllegalStateException("economy is down");
+        }
+    }
+
+    @BeforeAll
+    static void setUpLogger() throws Exception {
+        // Opening the breaker logs a warning
+        Field logger = ChestShop.class.getDeclaredField("logger");
+        logger.setAccessible(true);
+        if (logger.get(null) == null) {
+            logger.set(null, Logger.getLogger("ChestShop"));
+        }
+    }
+
+    @BeforeEach
+    @AfterEach
+    void resetBreaker() {
+        EconomyMonitor.onReload(null);
+    }
+
+    private static EventExecutor executor(Listener listener, EconomyMonitor.Operation operation) throws NoSuchMethodException {
+        return EconomyMonitor.createExecutor(listener.getClass().getMethod("onCurrencyCheck", CurrencyCheckEvent.class),
+                CurrencyCheckEvent.class, operation);
+    }
+
+    private static CurrencyCheckEvent check() {
+        return new CurrencyCheckEvent(BigDecimal.TEN, UUID.randomUUID(), null);
+    }
+
+    @Test
+    void preAnsweredEventsAreNotFailures() throws Exception {
+        EconomyMonitor.Operation operation = new EconomyMonitor.Operation();
+        EventExecutor executor = executor(new Adapter(), operation);
+
+        for (int i = 0; i < 100; i++) {
+            CurrencyCheckEvent event = check();
+            event.hasEnough(true);
+            executor.execute(new Adapter(), event);
+            assertThat(event.wasHandled()).isFalse();
+        }
+
+        assertThat(operation.getErrors()).isZero();
+        assertThat(operation.getLatency().getCount()).isZero();
+        assertThat(EconomyMonitor.getBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void handledEventsAreMeasured() throws Exception {
+        EconomyMonitor.Operation operation = new EconomyMonitor.Operation();
+
+        executor(new Adapter(), operation).execute(new Adapter(), check());
+
+        assertThat(operation.getErrors()).isZero();
+        assertThat(operation.getLatency().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void exceptionsAreFailures() throws Exception {
+        EconomyMonitor.Operation operation = new EconomyMonitor.Operation();
+        EventExecutor executor = executor(new Failing(), operation);
+
+        assertThatThrownBy(() -> executor.execute(new Failing(), check())).isInstanceOf(EventException.class);
+
+        assertThat(operation.getErrors()).isEqualTo(1);
+        assertThat(operation.getLatency().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void reportedFailuresOpenTheBreaker() throws Exception {
+        EconomyMonitor.Operation operation = new EconomyMonitor.Operation();
+        EventExecutor executor = executor(new Swallowing(), operation);
+
+        for (int i = 0; i < 20; i++) {
+            CurrencyCheckEvent event = check();
+            executor.execute(new Swallowing(), event);
+            assertThat(event.wasHandled()).isFalse();
+        }
+
+        assertThat(operation.getErrors()).isEqualTo(20);
+        assertThat(operation.getLatency().getCount()).isEqualTo(20);
+        assertThat(EconomyMonitor.getBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
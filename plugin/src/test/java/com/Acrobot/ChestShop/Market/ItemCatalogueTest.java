@@ -0,0 +1,49 @@
+package com.Acrobot.ChestShop.Market;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemCatalogueTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void itemsWithoutDataAreAlwaysKnown() throws Exception {
+        ItemCatalogue catalogue = new ItemCatalogue(new File(folder, "items.txt"));
+        assertThat(catalogue.isKnown(null)).isTrue();
+        catalogue.close();
+    }
+
+    @Test
+    void onlyConfirmedItemsAreKnown() throws Exception {
+        ItemCatalogue catalogue = new ItemCatalogue(new File(folder, "items.txt"));
+        assertThat(catalogue.isKnown("abc")).isFalse();
+
+        catalogue.confirm("abc");
+        catalogue.confirm("abc");
+        assertThat(catalogue.isKnown("abc")).isTrue();
+        assertThat(catalogue.isKnown("def")).isFalse();
+        assertThat(catalogue.size()).isEqualTo(1);
+        catalogue.close();
+    }
+
+    @Test
+    void confirmedItemsSurviveRestarts() throws Exception {
+        File file = new File(folder, "items.txt");
+        ItemCatalogue catalogue = new ItemCatalogue(file);
+        catalogue.confirm("abc");
+        catalogue.confirm("def");
+        catalogue.close();
+
+        ItemCatalogue reloaded = new ItemCatalogue(file);
+        assertThat(reloaded.isKnown("abc")).isTrue();
+        assertThat(reloaded.isKnown("def")).isTrue();
+        assertThat(reloaded.size()).isEqualTo(2);
+        reloaded.close();
+    }
+}
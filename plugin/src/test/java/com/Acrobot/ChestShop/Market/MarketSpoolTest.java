@@ -0,0 +1,240 @@
+package com.Acrobot.ChestShop.Market;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarketSpoolTest {
+
+    record Sample(String name, int amount, Long total, boolean admin, BigDecimal price, UUID owner, Integer stock) {}
+
+    @TempDir
+    File folder;
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private MarketSpool spool;
+
+    @AfterEach
+    void close() {
+        if (spool != null) {
+            spool.close(0);
+        }
+    }
+
+    private MarketSpool open(MarketSpool.Sink sink, long segmentSize) throws Exception {
+        spool = new MarketSpool(folder, sink, segmentSize, 10);
+        spool.open();
+        return spool;
+    }
+
+    private void recording(byte type, String id, byte[] data) {
+        written.add(new String(data, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void awaitReplayed(MarketSpool spool) throws InterruptedException {
+        for (int i = 0; i < 500 && spool.getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(spool.getPending()).isZero();
+    }
+
+    @Test
+    void replaysInOrder() throws Exception {
+        open(this::recording, 1024 * 1024);
+        for (int i = 0; i < 100; i++) {
+            spool.append((byte) 1, "tx-" + i, bytes("record " + i));
+        }
+
+        awaitReplayed(spool);
+        assertThat(written).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(written.get(i)).isEqualTo("record " + i);
+        }
+    }
+
+    @Test
+    void writesEntriesWithTheSameIdAgain() throws Exception {
+        open(this::recording, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+        spool.append((byte) 1, "tx-1", bytes("first again"));
+
+        awaitReplayed(spool);
+        // Deduplicating is up to the sink, which knows the unique key of the record
+        assertThat(written).containsExactly("first", "first again");
+    }
+
+    @Test
+    void passesIdsBackToTheSink() throws Exception {
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        open((type, id, data) -> ids.add(id), 1024 * 1024);
+        spool.append((byte) 1, "run:1", bytes("first"));
+        spool.append((byte) 1, null, bytes("second"));
+
+        awaitReplayed(spool);
+        assertThat(ids).containsExactly("run:1", null);
+    }
+
+    @Test
+    void movesUnwritableEntriesToTheDeadLetterFile() throws Exception {
+        open((type, id, data) -> {
+            if (new String(data, StandardCharsets.UTF_8).equals("poison")) {
+                throw new MarketSpool.UnwritableEntryException("can't decode", null);
+            }
+            recording(type, id, data);
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("poison"));
+        spool.append((byte) 1, "tx-2", bytes("second"));
+
+        awaitReplayed(spool);
+        assertThat(written).containsExactly("second");
+        assertThat(spool.getDeadLettered()).isEqualTo(1);
+        assertThat(new File(folder, "dead-letter")).isNotEmpty();
+    }
+
+    @Test
+    void movesEntriesWhichKeepFailingToTheDeadLetterFile() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        open((type, id, data) -> {
+            if (new String(data, StandardCharsets.UTF_8).equals("poison")) {
+                attempts.incrementAndGet();
+                throw new SQLIntegrityConstraintViolationException("duplicate shop");
+            }
+            recording(type, id, data);
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("poison"));
+        spool.append((byte) 1, "tx-2", bytes("second"));
+
+        awaitReplayed(spool);
+        assertThat(written).containsExactly("second");
+        assertThat(attempts).hasValue(3);
+        assertThat(spool.getDeadLettered()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsRetryingWhileTheDatabaseIsUnreachable() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        open((type, id, data) -> {
+            if (attempts.incrementAndGet() < 4) {
+                throw new IllegalStateException(new SQLTransientConnectionException("pool exhausted"));
+            }
+            recording(type, id, data);
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+
+        for (int i = 0; i < 1000 && spool.getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(written).containsExactly("first");
+        assertThat(spool.getDeadLettered()).isZero();
+    }
+
+    @Test
+    void continuesAfterTheLastReplayedEntryOnRestart() throws Exception {
+        open(this::recording, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+        awaitReplayed(spool);
+        spool.close(0);
+
+        written.clear();
+        open(this::recording, 1024 * 1024);
+        spool.append((byte) 1, "tx-2", bytes("second"));
+        awaitReplayed(spool);
+        assertThat(written).containsExactly("second");
+    }
+
+    @Test
+    void retriesUntilTheSinkAcceptsTheEntry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        open((type, id, data) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("database down");
+            }
+            recording(type, id, data);
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+        spool.append((byte) 1, "tx-2", bytes("second"));
+
+        for (int i = 0; i < 500 && spool.getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(written).containsExactly("first", "second");
+        assertThat(spool.getRetries()).isEqualTo(2);
+        assertThat(spool.isRetrying()).isFalse();
+    }
+
+    @Test
+    void keepsEntriesAcrossRestarts() throws Exception {
+        open((type, id, data) -> {
+            throw new IllegalStateException("database down");
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+        spool.append((byte) 1, "tx-2", bytes("second"));
+        spool.close(0);
+
+        open(this::recording, 1024 * 1024);
+        awaitReplayed(spool);
+        assertThat(written).containsExactly("first", "second");
+    }
+
+    @Test
+    void cutsOffTornEntryOnOpen() throws Exception {
+        open((type, id, data) -> {
+            throw new IllegalStateException("database down");
+        }, 1024 * 1024);
+        spool.append((byte) 1, "tx-1", bytes("first"));
+        spool.close(0);
+
+        File[] segments = folder.listFiles((dir, name) -> name.endsWith(".seg"));
+        assertThat(segments).hasSize(1);
+        try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+            long length = file.length();
+            file.seek(length);
+            // Half of the next entry's header, as if the server died during the write
+            file.writeInt(42);
+        }
+
+        open(this::recording, 1024 * 1024);
+        spool.append((byte) 1, "tx-2", bytes("second"));
+        awaitReplayed(spool);
+        assertThat(written).containsExactly("first", "second");
+    }
+
+    @Test
+    void rollsAndRemovesReplayedSegments() throws Exception {
+        open(this::recording, 256);
+        for (int i = 0; i < 50; i++) {
+            spool.append((byte) 1, "tx-" + i, bytes("record " + i));
+        }
+        awaitReplayed(spool);
+        assertThat(written).hasSize(50);
+        assertThat(spool.getSegments()).isEqualTo(1);
+    }
+
+    @Test
+    void codecRoundTripsRecords() throws Exception {
+        Sample sample = new Sample("Stone \u00a7a", 64, null, true, new BigDecimal("12.3400"), UUID.randomUUID(), 17);
+        MarketRecordCodec.validate(Sample.class);
+
+        Sample decoded = MarketRecordCodec.decode(Sample.class, MarketRecordCodec.encode(sample));
+        assertThat(decoded).isEqualTo(sample);
+        assertThat(decoded.price().scale()).isEqualTo(4);
+    }
+}
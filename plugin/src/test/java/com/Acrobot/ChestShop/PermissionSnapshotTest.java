@@ -0,0 +1,107 @@
+package com.Acrobot.ChestShop;
+
+import com.Acrobot.ChestShop.Configuration.Properties;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PermissionSnapshotTest {
+
+    @Mock private Player player;
+
+    private int cacheTime;
+
+    @BeforeEach
+    void setUp() {
+        cacheTime = Properties.PERMISSION_CACHE_TIME;
+        Properties.PERMISSION_CACHE_TIME = 10;
+        PermissionSnapshot.setDiscountGroups(Arrays.asList("gold", "silver"));
+
+        lenient().when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        lenient().when(player.isOnline()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Properties.PERMISSION_CACHE_TIME = cacheTime;
+        PermissionSnapshot.setDiscountGroups(Collections.emptyList());
+    }
+
+    @Test
+    void has_looksUpAdminOnce() {
+        lenient().when(player.hasPermission("ChestShop.admin")).thenReturn(true);
+
+        assertThat(Permission.has(player, Permission.ADMIN)).isTrue();
+        assertThat(Permission.has(player, Permission.ADMIN)).isTrue();
+        assertThat(Permission.has(player, Permission.ADMIN)).isTrue();
+
+        verify(player, times(1)).hasPermission("ChestShop.admin");
+    }
+
+    @Test
+    void invalidate_looksPermissionsUpAgain() {
+        Permission.has(player, Permission.MOD);
+        PermissionSnapshot.invalidate(player);
+        Permission.has(player, Permission.MOD);
+
+        verify(player, times(2)).hasPermission("ChestShop.mod");
+    }
+
+    @Test
+    void get_returnsNullWhenCachingIsOff() {
+        Properties.PERMISSION_CACHE_TIME = 0;
+
+        assertThat(PermissionSnapshot.get(player)).isNull();
+        Permission.has(player, Permission.ADMIN);
+        Permission.has(player, Permission.ADMIN);
+
+        verify(player, times(2)).hasPermission("ChestShop.admin");
+    }
+
+    @Test
+    void get_doesNotKeepSnapshotsOfOfflinePlayers() {
+        lenient().when(player.isOnline()).thenReturn(false);
+
+        Permission.has(player, Permission.ADMIN_SHOP);
+        Permission.has(player, Permission.ADMIN_SHOP);
+
+        verify(player, times(2)).hasPermission("ChestShop.adminshop");
+    }
+
+    @Test
+    void getDiscountGroup_isFirstGrantedGroup() {
+        lenient().when(player.hasPermission("ChestShop.discount.silver")).thenReturn(true);
+
+        assertThat(PermissionSnapshot.get(player).getDiscountGroup()).isEqualTo("silver");
+    }
+
+    @Test
+    void getDiscountGroup_isNullWithoutGroup() {
+        assertThat(PermissionSnapshot.get(player).getDiscountGroup()).isNull();
+    }
+
+    @Test
+    void otherName_remembersResult() {
+        lenient().when(player.hasPermission("ChestShop.name.Steve")).thenReturn(true);
+
+        assertThat(Permission.otherName(player, "Steve")).isTrue();
+        assertThat(Permission.otherName(player, "Steve")).isTrue();
+        assertThat(Permission.otherName(player, "Alex")).isFalse();
+
+        verify(player, times(1)).hasPermission("ChestShop.name.Steve");
+    }
+}
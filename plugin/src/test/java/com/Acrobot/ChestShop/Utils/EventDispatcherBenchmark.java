@@ -0,0 +1,73 @@
+package com.Acrobot.ChestShop.Utils;
+
+import org.bukkit.Server;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.SimplePluginManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Compares calling the events of a trade through the server's plugin manager with calling
+ * them through the {@link EventDispatcher}. This is not part of the normal test run, use
+ * {@code mvn test -Dtest=EventDispatcherBenchmark} to run it.
+ */
+class EventDispatcherBenchmark {
+    /** Roughly the amount of events a single trade calls */
+    private static final int EVENTS_PER_TRADE = 12;
+    private static final int TRADES = 200_000;
+    private static final int ROUNDS = 5;
+
+    @AfterEach
+    void tearDown() {
+        HandlerList.unregisterAll();
+    }
+
+    @Test
+    void perTradeOverhead() {
+        Server server = mock(Server.class, withSettings().stubOnly());
+        when(server.isPrimaryThread()).thenReturn(true);
+        Plugin plugin = mock(Plugin.class, withSettings().stubOnly());
+        when(plugin.isEnabled()).thenReturn(true);
+
+        SimplePluginManager pluginManager = new SimplePluginManager(server, mock(SimpleCommandMap.class));
+        EventDispatcher dispatcher = new EventDispatcher(plugin, pluginManager, server::isPrimaryThread,
+                executor -> executor instanceof EventDispatcherTest.ReflectiveExecutor);
+        EventDispatcherTest.register(new EventDispatcherTest.Stages(), plugin);
+
+        long bukkit = Long.MAX_VALUE;
+        long direct = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            bukkit = Math.min(bukkit, measure(pluginManager::callEvent));
+            direct = Math.min(direct, measure(dispatcher::call));
+        }
+
+        System.out.printf("Plugin manager: %d ns per trade, dispatcher: %d ns per trade, %d ns saved per trade%n",
+                bukkit, direct, bukkit - direct);
+        assertThat(dispatcher.call(new EventDispatcherTest.TradeEvent()).calls).hasSize(4);
+    }
+
+    private static long measure(Consumer<Event> caller) {
+        int calls = 0;
+        long start = System.nanoTime();
+        for (int trade = 0; trade < TRADES; trade++) {
+            for (int i = 0; i < EVENTS_PER_TRADE; i++) {
+                EventDispatcherTest.TradeEvent event = new EventDispatcherTest.TradeEvent();
+                caller.accept(event);
+                calls += event.calls.size();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        assertThat(calls).isEqualTo(TRADES * EVENTS_PER_TRADE * 4);
+        return nanos / TRADES;
+    }
+}
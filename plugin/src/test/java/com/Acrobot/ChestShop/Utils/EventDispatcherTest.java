@@ -0,0 +1,245 @@
+package com.Acrobot.ChestShop.Utils;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class EventDispatcherTest {
+
+    static class TradeEvent extends Event implements Cancellable {
+        private static final HandlerList handlers = new HandlerList();
+        final List<String> calls = new ArrayList<>();
+        private boolean cancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setCancelled(boolean cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public HandlerList getHandlers() {
+            return handlers;
+        }
+
+        public static HandlerList getHandlerList() {
+            return handlers;
+        }
+    }
+
+    static class Stages implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onMonitor(TradeEvent event) {
+            event.calls.add("monitor");
+        }
+
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onLowest(TradeEvent event) {
+            event.calls.add("lowest");
+        }
+
+        @EventHandler(ignoreCancelled = true)
+        public void onNormal(TradeEvent event) {
+            event.calls.add("normal");
+        }
+
+        @EventHandler(priority = EventPriority.LOW)
+        public static void onLow(TradeEvent event) {
+            event.calls.add("low");
+        }
+    }
+
+    static class Canceller implements Listener {
+        @EventHandler(priority = EventPriority.LOW)
+        private void onTrade(TradeEvent event) {
+            event.setCancelled(true);
+        }
+    }
+
+    static class Failing implements Listener {
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onTrade(TradeEvent event) {
+            throw new IllegalStateException("broken stage");
+        }
+    }
+
+    static class Other implements Listener {
+        @EventHandler
+        public void onTrade(TradeEvent event) {
+            event.calls.add("other");
+        }
+    }
+
+    /**
+     * Stands in for the executors the server creates for event handler methods
+     */
+    static class ReflectiveExecutor implements EventExecutor {
+        private final Method method;
+
+        ReflectiveExecutor(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public void execute(Listener target, Event event) throws EventException {
+            try {
+                if (TradeEvent.class.isAssignableFrom(event.getClass())) {
+                    method.invoke(target, event);
+                }
+            } catch (InvocationTargetException e) {
+                throw new EventException(e.getCause());
+            } catch (Throwable t) {
+                throw new EventException(t);
+            }
+        }
+    }
+
+    @Mock private Plugin chestShop;
+    @Mock private Plugin otherPlugin;
+    @Mock private PluginManager pluginManager;
+
+    private boolean primaryThread = true;
+    private EventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(chestShop.isEnabled()).thenReturn(true);
+        lenient().when(otherPlugin.isEnabled()).thenReturn(true);
+        lenient().when(chestShop.getLogger()).thenReturn(Logger.getLogger("ChestShop"));
+        dispatcher = new EventDispatcher(chestShop, pluginManager, () -> primaryThread, executor -> executor instanceof ReflectiveExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        HandlerList.unregisterAll();
+    }
+
+    /**
+     * Register the handlers of a listener the way the server's plugin loader does
+     */
+    static void register(Listener listener, Plugin plugin) {
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            if (annotation == null) {
+                continue;
+            }
+            method.setAccessible(true);
+            TradeEvent.getHandlerList().register(new RegisteredListener(listener, new ReflectiveExecutor(method), annotation.priority(), plugin, annotation.ignoreCancelled()));
+        }
+    }
+
+    @Test
+    void callsOwnHandlersDirectlyInPriorityOrder() {
+        register(new Stages(), chestShop);
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.calls).containsExactly("lowest", "low", "normal", "monitor");
+        verify(pluginManager, never()).callEvent(event);
+    }
+
+    @Test
+    void skipsHandlersIgnoringCancelledEvents() {
+        register(new Stages(), chestShop);
+        register(new Canceller(), chestShop);
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.isCancelled()).isTrue();
+        assertThat(event.calls).containsExactly("lowest", "low", "monitor");
+    }
+
+    @Test
+    void keepsCallingHandlersAfterAFailure() {
+        register(new Failing(), chestShop);
+        register(new Stages(), chestShop);
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.calls).containsExactly("lowest", "low", "normal", "monitor");
+    }
+
+    @Test
+    void callsHandlersWithCustomExecutorsThroughTheirExecutor() {
+        register(new Stages(), chestShop);
+        List<String> wrapped = new ArrayList<>();
+        Other other = new Other();
+        EventExecutor timing = (target, event) -> {
+            wrapped.add("before");
+            ((Other) target).onTrade((TradeEvent) event);
+            wrapped.add("after");
+        };
+        TradeEvent.getHandlerList().register(new RegisteredListener(other, timing, EventPriority.NORMAL, chestShop, false));
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(wrapped).containsExactly("before", "after");
+        assertThat(event.calls).contains("other");
+        assertThat(event.calls).containsSubsequence("lowest", "low", "monitor");
+        verify(pluginManager, never()).callEvent(event);
+    }
+
+    @Test
+    void passesEventsWithForeignHandlersToThePluginManager() {
+        register(new Stages(), chestShop);
+        register(new Other(), otherPlugin);
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.calls).isEmpty();
+        verify(pluginManager).callEvent(event);
+    }
+
+    @Test
+    void noticesHandlersRegisteredLater() {
+        register(new Stages(), chestShop);
+        assertThat(dispatcher.call(new TradeEvent()).calls).hasSize(4);
+
+        register(new Other(), otherPlugin);
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.calls).isEmpty();
+        verify(pluginManager).callEvent(event);
+    }
+
+    @Test
+    void passesEventsOutsideTheMainThreadToThePluginManager() {
+        register(new Stages(), chestShop);
+        primaryThread = false;
+
+        TradeEvent event = dispatcher.call(new TradeEvent());
+
+        assertThat(event.calls).isEmpty();
+        verify(pluginManager).callEvent(event);
+    }
+}
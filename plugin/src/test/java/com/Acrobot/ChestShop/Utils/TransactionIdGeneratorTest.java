@@ -0,0 +1,66 @@
+package com.Acrobot.ChestShop.Utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionIdGeneratorTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    void idsAreUniqueAndPrefixedWithNodeId() throws Exception {
+        TransactionIdGenerator generator = TransactionIdGenerator.load(new File(folder, "ids.properties"));
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            String id = generator.next();
+            assertThat(id).startsWith(generator.getNodeId() + "-");
+            ids.add(id);
+        }
+        assertThat(ids).hasSize(5000);
+    }
+
+    @Test
+    void counterIsMonotonic() throws Exception {
+        TransactionIdGenerator generator = TransactionIdGenerator.load(new File(folder, "ids.properties"));
+
+        long previous = -1;
+        for (int i = 0; i < 2500; i++) {
+            long counter = counterOf(generator.next());
+            assertThat(counter).isGreaterThan(previous);
+            previous = counter;
+        }
+    }
+
+    @Test
+    void restartKeepsNodeIdAndNeverReusesIds() throws Exception {
+        File file = new File(folder, "ids.properties");
+        TransactionIdGenerator first = TransactionIdGenerator.load(file);
+        long last = 0;
+        for (int i = 0; i < 1500; i++) {
+            last = counterOf(first.next());
+        }
+
+        TransactionIdGenerator second = TransactionIdGenerator.load(file);
+        assertThat(second.getNodeId()).isEqualTo(first.getNodeId());
+        assertThat(counterOf(second.next())).isGreaterThan(last);
+    }
+
+    @Test
+    void differentFilesGetDifferentNodeIds() throws Exception {
+        TransactionIdGenerator a = TransactionIdGenerator.load(new File(folder, "a.properties"));
+        TransactionIdGenerator b = TransactionIdGenerator.load(new File(folder, "b.properties"));
+        assertThat(a.getNodeId()).isNotEqualTo(b.getNodeId());
+    }
+
+    private static long counterOf(String id) {
+        return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+    }
+}
@@ -0,0 +1,44 @@
+package com.Acrobot.ChestShop.Utils;
+
+import com.Acrobot.ChestShop.Utils.TransactionProfiler.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionProfilerTest {
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+    @BeforeEach
+    void enable() {
+        TransactionProfiler.setEnabled(true);
+        TransactionProfiler.reset();
+    }
+
+    @AfterEach
+    void disable() {
+        TransactionProfiler.abort();
+        TransactionProfiler.setEnabled(false);
+    }
+
+    @Test
+    void deferredWorkIsPartOfTheRunningTrade() {
+        TransactionProfiler.begin();
+        TransactionProfiler.deferred(Stage.LOGGING, () -> {}).run();
+
+        assertThat(TransactionProfiler.getHistogram(Stage.LOGGING).getCount(WINDOW)).isZero();
+    }
+
+    @Test
+    void deferredWorkAfterAnAbortedTradeIsRecordedOnItsOwn() {
+        TransactionProfiler.begin();
+        TransactionProfiler.abort();
+        TransactionProfiler.deferred(Stage.LOGGING, () -> {}).run();
+
+        assertThat(TransactionProfiler.getHistogram(Stage.LOGGING).getCount(WINDOW)).isEqualTo(1);
+        assertThat(TransactionProfiler.getHistogram(Stage.TOTAL).getCount(WINDOW)).isZero();
+    }
+}
@@ -0,0 +1,84 @@
+package com.Acrobot.ChestShop.Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkSchedulerTest {
+    private final AtomicLong now = new AtomicLong();
+    private final WorkScheduler scheduler = new WorkScheduler(now::get, 3, Logger.getAnonymousLogger());
+    private final List<String> ran = new ArrayList<>();
+
+    @Test
+    void runsWorkInOrder() {
+        scheduler.submit(null, () -> ran.add("a"));
+        scheduler.submit(null, () -> ran.add("b"));
+
+        assertThat(scheduler.drain(1_000)).isEqualTo(2);
+        assertThat(ran).containsExactly("a", "b");
+        assertThat(scheduler.getExecuted()).isEqualTo(2);
+    }
+
+    @Test
+    void workWithTheSameKeyIsReplacedInPlace() {
+        scheduler.submit(WorkScheduler.key("counter", "sign"), () -> ran.add("old"));
+        scheduler.submit(null, () -> ran.add("other"));
+        scheduler.submit(WorkScheduler.key("counter", "sign"), () -> ran.add("new"));
+
+        scheduler.drainAll();
+        assertThat(ran).containsExactly("new", "other");
+        assertThat(scheduler.getCoalesced()).isEqualTo(1);
+    }
+
+    @Test
+    void stopsWhenTheBudgetIsUsedButAlwaysRunsOnce() {
+        for (int i = 0; i < 3; i++) {
+            String name = String.valueOf(i);
+            scheduler.submit(null, () -> {
+                ran.add(name);
+                now.addAndGet(2_000_000);
+            });
+        }
+
+        assertThat(scheduler.drain(1_000_000)).isEqualTo(1);
+        assertThat(scheduler.drain(5_000_000)).isEqualTo(2);
+        assertThat(ran).containsExactly("0", "1", "2");
+    }
+
+    @Test
+    void refusesNewWorkWhenFull() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(scheduler.submit(WorkScheduler.key("work", i), () -> {})).isTrue();
+        }
+
+        assertThat(scheduler.submit(null, () -> {})).isFalse();
+        assertThat(scheduler.submit(WorkScheduler.key("work", 1), () -> {})).isTrue();
+        assertThat(scheduler.getPending()).isEqualTo(3);
+    }
+
+    @Test
+    void failingWorkDoesNotStopTheQueue() {
+        scheduler.submit(null, () -> {
+            throw new IllegalStateException("broken");
+        });
+        scheduler.submit(null, () -> ran.add("after"));
+
+        scheduler.drainAll();
+        assertThat(ran).containsExactly("after");
+    }
+
+    @Test
+    void keyIsFreedOnceTheWorkRan() {
+        scheduler.submit(WorkScheduler.key("counter", "sign"), () -> ran.add("first"));
+        scheduler.drainAll();
+        scheduler.submit(WorkScheduler.key("counter", "sign"), () -> ran.add("second"));
+        scheduler.drainAll();
+
+        assertThat(ran).containsExactly("first", "second");
+    }
+}